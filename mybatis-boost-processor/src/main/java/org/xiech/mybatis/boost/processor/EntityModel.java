@@ -0,0 +1,55 @@
+package org.xiech.mybatis.boost.processor;
+
+import org.xiech.mybatis.boost.bean.TableDesc;
+
+import javax.lang.model.element.TypeElement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 编译期生成的实体类映射信息，TableDesc里面的Class类型的属性在编译期无法获取，单独使用类名记录
+ *
+ * @author xiech
+ * @date 2020-08-10 11:20
+ */
+class EntityModel {
+    private final TypeElement typeElement;
+    private final TableDesc tableDesc;
+    /**
+     * 属性名 -> 外键关联的目标对象的类名
+     */
+    private final Map<String, String> foreignBeanClasses = new HashMap<>();
+    /**
+     * 属性名 -> TypeHandler的类名
+     */
+    private final Map<String, String> typeHandlers = new HashMap<>();
+    /**
+     * 属性名 -> 属性的类型（基本类型为包装类，泛型为擦除后的类型），用于生成静态元模型
+     */
+    private final Map<String, String> propertyTypes = new HashMap<>();
+
+    EntityModel(TypeElement typeElement, TableDesc tableDesc) {
+        this.typeElement = typeElement;
+        this.tableDesc = tableDesc;
+    }
+
+    public TypeElement getTypeElement() {
+        return typeElement;
+    }
+
+    public TableDesc getTableDesc() {
+        return tableDesc;
+    }
+
+    public Map<String, String> getForeignBeanClasses() {
+        return foreignBeanClasses;
+    }
+
+    public Map<String, String> getTypeHandlers() {
+        return typeHandlers;
+    }
+
+    public Map<String, String> getPropertyTypes() {
+        return propertyTypes;
+    }
+}
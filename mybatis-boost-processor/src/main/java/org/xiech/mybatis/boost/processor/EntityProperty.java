@@ -0,0 +1,136 @@
+package org.xiech.mybatis.boost.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import java.beans.Introspector;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 编译期的实体类属性，按照java.beans.Introspector的规则从getter/setter方法解析
+ *
+ * @author xiech
+ * @date 2020-08-10 11:05
+ */
+class EntityProperty {
+    private static final String GET = "get";
+    private static final String IS = "is";
+    private static final String SET = "set";
+
+    private final String name;
+    private TypeMirror type;
+    private VariableElement field;
+
+    private EntityProperty(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TypeMirror getType() {
+        return type;
+    }
+
+    public VariableElement getField() {
+        return field;
+    }
+
+    /**
+     * 解析实体类（包含父类）的所有属性，按照属性名排序
+     *
+     * @param processingEnv
+     * @param typeElement
+     * @return
+     */
+    static Map<String, EntityProperty> resolve(ProcessingEnvironment processingEnv, TypeElement typeElement) {
+        Map<String, EntityProperty> properties = new TreeMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(typeElement))) {
+            if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)
+                    || ((TypeElement) method.getEnclosingElement()).getQualifiedName().contentEquals(Object.class.getName())) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            TypeMirror returnType = method.getReturnType();
+            String propertyName = null;
+            TypeMirror propertyType = null;
+            if (method.getParameters().isEmpty()) {
+                if (methodName.startsWith(GET) && methodName.length() > GET.length() && returnType.getKind() != TypeKind.VOID) {
+                    propertyName = methodName.substring(GET.length());
+                    propertyType = returnType;
+                } else if (methodName.startsWith(IS) && methodName.length() > IS.length() && returnType.getKind() == TypeKind.BOOLEAN) {
+                    propertyName = methodName.substring(IS.length());
+                    propertyType = returnType;
+                }
+            } else if (method.getParameters().size() == 1) {
+                if (methodName.startsWith(SET) && methodName.length() > SET.length() && returnType.getKind() == TypeKind.VOID) {
+                    propertyName = methodName.substring(SET.length());
+                    propertyType = method.getParameters().get(0).asType();
+                }
+            }
+            if (propertyName == null) {
+                continue;
+            }
+            propertyName = Introspector.decapitalize(propertyName);
+            EntityProperty property = properties.get(propertyName);
+            if (property == null) {
+                property = new EntityProperty(propertyName);
+                property.field = findField(typeElement, propertyName);
+                properties.put(propertyName, property);
+            }
+            if (property.type == null) {
+                property.type = propertyType;
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * 判断类型是否包含指定的属性，用于校验外键
+     *
+     * @param processingEnv
+     * @param type
+     * @param propertyName
+     * @return
+     */
+    static boolean hasProperty(ProcessingEnvironment processingEnv, TypeMirror type, String propertyName) {
+        if (type == null || type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        return resolve(processingEnv, (TypeElement) ((DeclaredType) type).asElement()).containsKey(propertyName);
+    }
+
+    /**
+     * 在类及其父类里面查找字段（包含private字段）
+     *
+     * @param typeElement
+     * @param fieldName
+     * @return
+     */
+    private static VariableElement findField(TypeElement typeElement, String fieldName) {
+        TypeElement current = typeElement;
+        while (current != null && !current.getQualifiedName().contentEquals(Object.class.getName())) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (field.getSimpleName().contentEquals(fieldName)) {
+                    return field;
+                }
+            }
+            TypeMirror superclass = current.getSuperclass();
+            if (superclass.getKind() != TypeKind.DECLARED) {
+                break;
+            }
+            Element superElement = ((DeclaredType) superclass).asElement();
+            current = (TypeElement) superElement;
+        }
+        return null;
+    }
+}
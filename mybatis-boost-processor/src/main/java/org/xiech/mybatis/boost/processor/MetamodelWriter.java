@@ -0,0 +1,87 @@
+package org.xiech.mybatis.boost.processor;
+
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+
+import java.util.Map;
+
+/**
+ * 生成实体类的静态元模型（例如User_），每个映射的属性生成一个MetaColumn常量
+ *
+ * @author xiech
+ * @date 2020-08-19 11:05
+ */
+class MetamodelWriter {
+    private static final String META_COLUMN = "org.xiech.mybatis.boost.bean.MetaColumn";
+
+    private final String packageName;
+    private final String simpleName;
+    private final String beanClassName;
+    private final EntityModel model;
+    private final StringBuilder out = new StringBuilder();
+
+    /**
+     * @param packageName   实体类所在的包
+     * @param simpleName    元模型的类名
+     * @param beanClassName 实体类在源码里面的类名（内部类为Outer.Inner）
+     * @param model
+     */
+    MetamodelWriter(String packageName, String simpleName, String beanClassName, EntityModel model) {
+        this.packageName = packageName;
+        this.simpleName = simpleName;
+        this.beanClassName = beanClassName;
+        this.model = model;
+    }
+
+    String write() {
+        if (!packageName.isEmpty()) {
+            line(0, "package " + packageName + ";");
+            line(0, "");
+        }
+        line(0, "/**");
+        line(0, " * " + beanClassName + "的静态元模型，由mybatis-boost-processor生成，请勿修改");
+        line(0, " */");
+        line(0, "@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        line(0, "public final class " + simpleName + " {");
+        Map<String, String> propertyTypes = model.getPropertyTypes();
+        for (TableColumnDesc column : model.getTableDesc().getColumns().values()) {
+            String fieldName = column.getFieldName();
+            line(0, "");
+            line(1, "/**");
+            line(1, " * " + column.getColumnName());
+            line(1, " */");
+            line(1, "public static final " + META_COLUMN + "<" + beanClassName + ", " + propertyTypes.get(fieldName) + "> "
+                    + constantName(fieldName) + " = new " + META_COLUMN + "<>(" + beanClassName + ".class, "
+                    + TableDescProviderWriter.literal(fieldName) + ");");
+        }
+        line(0, "");
+        line(1, "private " + simpleName + "() {");
+        line(1, "}");
+        line(0, "}");
+        return out.toString();
+    }
+
+    /**
+     * 属性名转换为常量名：userName -> USER_NAME，URL -> URL
+     *
+     * @param fieldName
+     * @return
+     */
+    static String constantName(String fieldName) {
+        StringBuilder sb = new StringBuilder(fieldName.length() + 4);
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (i > 0 && Character.isUpperCase(c) && !Character.isUpperCase(fieldName.charAt(i - 1))) {
+                sb.append('_');
+            }
+            sb.append(Character.toUpperCase(c));
+        }
+        return sb.toString();
+    }
+
+    private void line(int indent, String text) {
+        for (int i = 0; i < indent; i++) {
+            out.append("    ");
+        }
+        out.append(text).append('\n');
+    }
+}
@@ -0,0 +1,340 @@
+package org.xiech.mybatis.boost.processor;
+
+import org.xiech.mybatis.boost.annotation.Column;
+import org.xiech.mybatis.boost.annotation.GenerationType;
+import org.xiech.mybatis.boost.annotation.Id;
+import org.xiech.mybatis.boost.annotation.Table;
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.Reflections;
+import org.xiech.mybatis.boost.core.TableDescProvider;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译期读取@Table/@Column/@Id注解，生成TableDescProvider注册表（包含TableDesc、TableColumnDesc以及insert/update/select/delete语句），
+ * 运行时Reflections会优先使用该注册表，避免启动后第一次使用实体类时的反射解析。
+ * <p>
+ * 支持的参数：
+ * 1、mybatis.boost.columnNameStyle：字段命名规则，默认CAMELHUMP_AND_LOWERCASE，需与Reflections.init()一致
+ * 2、mybatis.boost.delimiter：表名、列名的分隔符，默认为空，需与Reflections.init()一致
+ * 3、mybatis.boost.registry：生成的注册表的类名，默认为第一个实体类所在包下的MybatisBoostTableDescProvider；
+ * 之后的轮次里面（例如其他注解处理器生成的）新的实体类生成单独的注册表，类名后面加上序号
+ * 4、mybatis.boost.metamodel：是否为每个实体类生成静态元模型（实体类名加下划线，例如User_），默认为true
+ *
+ * @author xiech
+ * @date 2020-08-10 10:30
+ */
+@SupportedAnnotationTypes("org.xiech.mybatis.boost.annotation.Table")
+@SupportedOptions({TableDescProcessor.OPTION_COLUMN_NAME_STYLE, TableDescProcessor.OPTION_DELIMITER, TableDescProcessor.OPTION_REGISTRY,
+        TableDescProcessor.OPTION_METAMODEL})
+public class TableDescProcessor extends AbstractProcessor {
+
+    public static final String OPTION_COLUMN_NAME_STYLE = "mybatis.boost.columnNameStyle";
+    public static final String OPTION_DELIMITER = "mybatis.boost.delimiter";
+    public static final String OPTION_REGISTRY = "mybatis.boost.registry";
+    public static final String OPTION_METAMODEL = "mybatis.boost.metamodel";
+
+    private static final String REGISTRY_SIMPLE_NAME = "MybatisBoostTableDescProvider";
+    private static final String SERVICE_FILE = "META-INF/services/" + TableDescProvider.class.getName();
+
+    /**
+     * 已经生成的注册表的类名，最后一轮写入META-INF/services
+     */
+    private final List<String> registries = new ArrayList<>();
+    /**
+     * 所有轮次里面找到的实体类，作为services文件的来源
+     */
+    private final List<Element> originatingElements = new ArrayList<>();
+    /**
+     * 第一个注册表的类名，之后轮次的注册表在后面加上序号
+     */
+    private String registryName;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        // 按照类名排序以保证生成的代码稳定
+        Map<String, TypeElement> entities = new TreeMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Table.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                TypeElement typeElement = (TypeElement) element;
+                entities.put(processingEnv.getElementUtils().getBinaryName(typeElement).toString(), typeElement);
+            }
+        }
+        // 源文件在找到实体类的这一轮生成，最后一轮生成的源文件不会再被处理，只在最后一轮写入services文件
+        if (!entities.isEmpty()) {
+            generate(entities);
+        }
+        if (roundEnv.processingOver() && !registries.isEmpty()) {
+            generateServiceFile();
+        }
+        return false;
+    }
+
+    /**
+     * 生成这一轮找到的实体类的注册表和静态元模型
+     *
+     * @param entities
+     */
+    private void generate(Map<String, TypeElement> entities) {
+        Reflections.DatabaseColumnNameStyle style = getColumnNameStyle();
+        String delimiter = getOption(OPTION_DELIMITER, "");
+
+        List<EntityModel> models = new ArrayList<>();
+        for (TypeElement typeElement : entities.values()) {
+            EntityModel model = resolveEntity(typeElement, style, delimiter);
+            if (model != null) {
+                models.add(model);
+            }
+        }
+
+        if (this.registryName == null) {
+            this.registryName = getOption(OPTION_REGISTRY, null);
+            if (this.registryName == null) {
+                String packageName = processingEnv.getElementUtils().getPackageOf(entities.values().iterator().next()).getQualifiedName().toString();
+                this.registryName = packageName.isEmpty() ? REGISTRY_SIMPLE_NAME : packageName + "." + REGISTRY_SIMPLE_NAME;
+            }
+        }
+        String registryName = this.registries.isEmpty() ? this.registryName : this.registryName + (this.registries.size() + 1);
+
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(registryName, entities.values().toArray(new Element[0]));
+            try (Writer writer = sourceFile.openWriter()) {
+                writer.write(new TableDescProviderWriter(registryName, style, delimiter, models).write());
+            }
+            this.registries.add(registryName);
+            this.originatingElements.addAll(entities.values());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "mybatis-boost: generate " + registryName + " error: " + e.getMessage());
+        }
+
+        if (Boolean.parseBoolean(getOption(OPTION_METAMODEL, "true"))) {
+            for (EntityModel model : models) {
+                generateMetamodel(model);
+            }
+        }
+    }
+
+    /**
+     * 把所有轮次生成的注册表写入META-INF/services，ServiceLoader会加载其中的每一个
+     */
+    private void generateServiceFile() {
+        try {
+            FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE,
+                    this.originatingElements.toArray(new Element[0]));
+            try (Writer writer = serviceFile.openWriter()) {
+                for (String registry : this.registries) {
+                    writer.write(registry);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "mybatis-boost: generate " + SERVICE_FILE + " error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 生成实体类的静态元模型，与实体类在同一个包下面，内部类的元模型名称为Outer_Inner_
+     *
+     * @param model
+     */
+    private void generateMetamodel(EntityModel model) {
+        TypeElement typeElement = model.getTypeElement();
+        String packageName = processingEnv.getElementUtils().getPackageOf(typeElement).getQualifiedName().toString();
+        String qualifiedName = typeElement.getQualifiedName().toString();
+        String nestedName = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        String simpleName = nestedName.replace('.', '_') + "_";
+        String metamodelName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(metamodelName, typeElement);
+            try (Writer writer = sourceFile.openWriter()) {
+                writer.write(new MetamodelWriter(packageName, simpleName, qualifiedName, model).write());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "mybatis-boost: generate " + metamodelName + " error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 静态元模型里面使用的属性类型：基本类型使用包装类，泛型使用擦除后的类型
+     *
+     * @param type
+     * @return
+     */
+    private String metamodelType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /**
+     * 按照Reflections.resolveTableDesc的规则生成实体类的TableDesc
+     *
+     * @param typeElement
+     * @param style
+     * @param delimiter
+     * @return
+     */
+    private EntityModel resolveEntity(TypeElement typeElement, Reflections.DatabaseColumnNameStyle style, String delimiter) {
+        Map<String, EntityProperty> properties = EntityProperty.resolve(processingEnv, typeElement);
+        if (properties.isEmpty()) {
+            return null;
+        }
+
+        TableDesc tableDesc = new TableDesc();
+        tableDesc.setBeanClassName(processingEnv.getElementUtils().getBinaryName(typeElement).toString());
+        tableDesc.setBeanName(typeElement.getSimpleName().toString());
+        Table tableAnnotation = typeElement.getAnnotation(Table.class);
+        tableDesc.setTableName(!tableAnnotation.name().trim().isEmpty()
+                ? tableAnnotation.name() : Reflections.renameByStyle(tableDesc.getBeanName(), style));
+        tableDesc.setDelimiterTableName(Reflections.delimiter(tableDesc.getTableName(), delimiter));
+
+        EntityModel model = new EntityModel(typeElement, tableDesc);
+        for (String propertyName : Reflections.sortPropertyNames(properties.keySet())) {
+            EntityProperty property = properties.get(propertyName);
+            TableColumnDesc tableColumnDesc = resolveColumn(model, property, style, delimiter);
+            model.getPropertyTypes().put(propertyName, metamodelType(property.getType()));
+            tableDesc.getColumns().put(tableColumnDesc.getFieldName(), tableColumnDesc);
+            if (tableColumnDesc.isPrimaryKey()) {
+                tableDesc.setPrimaryKey(tableColumnDesc);
+            }
+        }
+        if (tableDesc.getPrimaryKey() == null) {
+            for (TableColumnDesc tableColumnDesc : tableDesc.getColumns().values()) {
+                if (Reflections.ID_DEFAULT.equalsIgnoreCase(tableColumnDesc.getFieldName())) {
+                    tableDesc.setPrimaryKey(tableColumnDesc);
+                    break;
+                }
+            }
+        }
+
+        tableDesc.setInsertSQL(Reflections.getInsertSQL(tableDesc));
+        tableDesc.setUpdateSQL(Reflections.getUpdateSQL(tableDesc));
+        tableDesc.setSelectSQL(Reflections.getSelectSQL(tableDesc));
+        tableDesc.setDeleteSQL(Reflections.getDeleteSQL(tableDesc));
+        return model;
+    }
+
+    private TableColumnDesc resolveColumn(EntityModel model, EntityProperty property,
+                                          Reflections.DatabaseColumnNameStyle style, String delimiter) {
+        TableColumnDesc tableColumnDesc = new TableColumnDesc();
+        tableColumnDesc.setTableDesc(model.getTableDesc());
+        tableColumnDesc.setFieldName(property.getName());
+
+        VariableElement field = property.getField();
+        Id idAnnotation = field == null ? null : field.getAnnotation(Id.class);
+        Column columnAnnotation = field == null ? null : field.getAnnotation(Column.class);
+        if (idAnnotation != null) {
+            tableColumnDesc.setPrimaryKey(true);
+            tableColumnDesc.setIdGenerationType(idAnnotation.generationType());
+            tableColumnDesc.setIdGenerator(idAnnotation.generator());
+        } else {
+            tableColumnDesc.setIdGenerationType(GenerationType.AUTO);
+        }
+        if (columnAnnotation != null) {
+            tableColumnDesc.setColumnName(!columnAnnotation.name().trim().isEmpty()
+                    ? columnAnnotation.name() : Reflections.renameByStyle(property.getName(), style));
+
+            // Class类型的注解属性在编译期只能通过AnnotationMirror读取
+            Map<String, AnnotationValue> values = getAnnotationValues(field, Column.class);
+            String foreignBeanClass = values.get("foreignBeanClass").getValue().toString();
+            if (!"void".equals(foreignBeanClass)) {
+                if (!EntityProperty.hasProperty(processingEnv, property.getType(), columnAnnotation.foreignBeanFieldName())) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "mybatis-boost: foreign bean field \""
+                            + columnAnnotation.foreignBeanFieldName() + "\" can`t find in " + property.getType(), field);
+                }
+                // 编译期拿不到Class对象，这里只是为了让Reflections按照外键的方式生成SQL
+                tableColumnDesc.setForeignBeanClass(Object.class);
+                tableColumnDesc.setForeignBeanFieldName(columnAnnotation.foreignBeanFieldName());
+                model.getForeignBeanClasses().put(property.getName(), foreignBeanClass);
+            }
+            model.getTypeHandlers().put(property.getName(), values.get("typeHandler").getValue().toString());
+
+            tableColumnDesc.setPrecision(columnAnnotation.precision());
+            tableColumnDesc.setScale(columnAnnotation.scale());
+            tableColumnDesc.setSigned(columnAnnotation.signed());
+            tableColumnDesc.setUnique(columnAnnotation.unique());
+            tableColumnDesc.setNullable(columnAnnotation.nullable());
+            tableColumnDesc.setInsertable(columnAnnotation.insertable());
+            tableColumnDesc.setUpdatable(columnAnnotation.updatable());
+            tableColumnDesc.setSearchable(columnAnnotation.searchable());
+            tableColumnDesc.setClob(columnAnnotation.isClob());
+            tableColumnDesc.setBlob(columnAnnotation.isBlob());
+            tableColumnDesc.setJdbcType(columnAnnotation.jdbcType());
+        } else {
+            tableColumnDesc.setColumnName(Reflections.renameByStyle(property.getName(), style));
+        }
+        tableColumnDesc.setDelimiterColumnName(Reflections.delimiter(tableColumnDesc.getColumnName(), delimiter));
+        return tableColumnDesc;
+    }
+
+    /**
+     * 读取注解的所有属性值（包含默认值）
+     *
+     * @param element
+     * @param annotationClass
+     * @return
+     */
+    private Map<String, AnnotationValue> getAnnotationValues(Element element, Class<?> annotationClass) {
+        Map<String, AnnotationValue> values = new LinkedHashMap<>();
+        for (AnnotationMirror annotationMirror : processingEnv.getElementUtils().getAllAnnotationMirrors(element)) {
+            TypeElement annotationElement = (TypeElement) annotationMirror.getAnnotationType().asElement();
+            if (annotationElement.getQualifiedName().contentEquals(annotationClass.getCanonicalName())) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                        : processingEnv.getElementUtils().getElementValuesWithDefaults(annotationMirror).entrySet()) {
+                    values.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+                }
+            }
+        }
+        return values;
+    }
+
+    private Reflections.DatabaseColumnNameStyle getColumnNameStyle() {
+        String style = getOption(OPTION_COLUMN_NAME_STYLE, null);
+        if (style == null) {
+            return Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE;
+        }
+        try {
+            return Reflections.DatabaseColumnNameStyle.valueOf(style.trim());
+        } catch (IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "mybatis-boost: unknown " + OPTION_COLUMN_NAME_STYLE + " \"" + style + "\"");
+            return Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE;
+        }
+    }
+
+    private String getOption(String name, String defaultValue) {
+        String value = processingEnv.getOptions().get(name);
+        return value == null ? defaultValue : value;
+    }
+}
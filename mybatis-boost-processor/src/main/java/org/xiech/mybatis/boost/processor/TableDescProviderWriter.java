@@ -0,0 +1,173 @@
+package org.xiech.mybatis.boost.processor;
+
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.Reflections;
+
+import java.util.List;
+
+/**
+ * 生成TableDescProvider注册表的java源码
+ *
+ * @author xiech
+ * @date 2020-08-10 11:32
+ */
+class TableDescProviderWriter {
+    private static final String TABLE_DESC = "org.xiech.mybatis.boost.bean.TableDesc";
+    private static final String TABLE_COLUMN_DESC = "org.xiech.mybatis.boost.bean.TableColumnDesc";
+    private static final String STYLE = "org.xiech.mybatis.boost.core.Reflections.DatabaseColumnNameStyle";
+
+    private final String registryName;
+    private final Reflections.DatabaseColumnNameStyle style;
+    private final String delimiter;
+    private final List<EntityModel> models;
+    private final StringBuilder out = new StringBuilder();
+
+    TableDescProviderWriter(String registryName, Reflections.DatabaseColumnNameStyle style, String delimiter, List<EntityModel> models) {
+        this.registryName = registryName;
+        this.style = style;
+        this.delimiter = delimiter;
+        this.models = models;
+    }
+
+    String write() {
+        int lastDot = registryName.lastIndexOf('.');
+        String simpleName = registryName.substring(lastDot + 1);
+        if (lastDot > 0) {
+            line(0, "package " + registryName.substring(0, lastDot) + ";");
+            line(0, "");
+        }
+        line(0, "/**");
+        line(0, " * 由mybatis-boost-processor生成的TableDesc注册表，请勿修改");
+        line(0, " */");
+        line(0, "public final class " + simpleName + " implements org.xiech.mybatis.boost.core.TableDescProvider {");
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public " + STYLE + " getDatabaseColumnNameStyle() {");
+        line(2, "return " + STYLE + "." + style.name() + ";");
+        line(1, "}");
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public String getDatabaseDelimiter() {");
+        line(2, "return " + literal(delimiter) + ";");
+        line(1, "}");
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public " + TABLE_DESC + " getTableDesc(Class<?> beanClass) {");
+        line(2, "switch (beanClass.getName()) {");
+        for (int i = 0; i < models.size(); i++) {
+            EntityModel model = models.get(i);
+            // 同名但是由其他ClassLoader加载的类不使用生成的TableDesc
+            line(3, "case " + literal(model.getTableDesc().getBeanClassName()) + ":");
+            line(4, "return beanClass == " + model.getTypeElement().getQualifiedName() + ".class ? tableDesc" + i + "() : null;");
+        }
+        line(3, "default:");
+        line(4, "return null;");
+        line(2, "}");
+        line(1, "}");
+        for (int i = 0; i < models.size(); i++) {
+            line(0, "");
+            writeTableDesc(i, models.get(i));
+        }
+        line(0, "}");
+        return out.toString();
+    }
+
+    private void writeTableDesc(int index, EntityModel model) {
+        TableDesc tableDesc = model.getTableDesc();
+        line(1, "@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        line(1, "private static " + TABLE_DESC + " tableDesc" + index + "() {");
+        line(2, TABLE_DESC + " tableDesc = new " + TABLE_DESC + "();");
+        line(2, "tableDesc.setBeanClassName(" + literal(tableDesc.getBeanClassName()) + ");");
+        line(2, "tableDesc.setBeanName(" + literal(tableDesc.getBeanName()) + ");");
+        line(2, "tableDesc.setTableName(" + literal(tableDesc.getTableName()) + ");");
+        line(2, "tableDesc.setDelimiterTableName(" + literal(tableDesc.getDelimiterTableName()) + ");");
+        line(2, "tableDesc.setInsertSQL(" + literal(tableDesc.getInsertSQL()) + ");");
+        line(2, "tableDesc.setUpdateSQL(" + literal(tableDesc.getUpdateSQL()) + ");");
+        line(2, "tableDesc.setSelectSQL(" + literal(tableDesc.getSelectSQL()) + ");");
+        line(2, "tableDesc.setDeleteSQL(" + literal(tableDesc.getDeleteSQL()) + ");");
+        line(2, TABLE_COLUMN_DESC + " column;");
+        for (TableColumnDesc column : tableDesc.getColumns().values()) {
+            String fieldName = column.getFieldName();
+            line(0, "");
+            line(2, "column = new " + TABLE_COLUMN_DESC + "();");
+            line(2, "column.setTableDesc(tableDesc);");
+            line(2, "column.setFieldName(" + literal(fieldName) + ");");
+            line(2, "column.setColumnName(" + literal(column.getColumnName()) + ");");
+            line(2, "column.setDelimiterColumnName(" + literal(column.getDelimiterColumnName()) + ");");
+            line(2, "column.setIdGenerationType(org.xiech.mybatis.boost.annotation.GenerationType." + column.getIdGenerationType().name() + ");");
+            if (column.isPrimaryKey()) {
+                line(2, "column.setPrimaryKey(true);");
+                line(2, "column.setIdGenerator(" + literal(column.getIdGenerator()) + ");");
+            }
+            if (model.getForeignBeanClasses().containsKey(fieldName)) {
+                line(2, "column.setForeignBeanClass(" + model.getForeignBeanClasses().get(fieldName) + ".class);");
+                line(2, "column.setForeignBeanFieldName(" + literal(column.getForeignBeanFieldName()) + ");");
+            }
+            if (model.getTypeHandlers().containsKey(fieldName)) {
+                // 只有加了@Column注解的字段才会有以下属性
+                line(2, "column.setTypeHandler((Class) " + model.getTypeHandlers().get(fieldName) + ".class);");
+                line(2, "column.setJdbcType(java.sql.JDBCType." + column.getJdbcType().name() + ");");
+                line(2, "column.setPrecision(" + column.getPrecision() + ");");
+                line(2, "column.setScale(" + column.getScale() + ");");
+                line(2, "column.setSigned(" + column.isSigned() + ");");
+                line(2, "column.setUnique(" + column.isUnique() + ");");
+                line(2, "column.setNullable(" + column.isNullable() + ");");
+                line(2, "column.setInsertable(" + column.isInsertable() + ");");
+                line(2, "column.setUpdatable(" + column.isUpdatable() + ");");
+                line(2, "column.setSearchable(" + column.isSearchable() + ");");
+                line(2, "column.setClob(" + column.isClob() + ");");
+                line(2, "column.setBlob(" + column.isBlob() + ");");
+            }
+            line(2, "tableDesc.getColumns().put(" + literal(fieldName) + ", column);");
+            if (column == tableDesc.getPrimaryKey()) {
+                line(2, "tableDesc.setPrimaryKey(column);");
+            }
+        }
+        line(2, "return tableDesc;");
+        line(1, "}");
+    }
+
+    private void line(int indent, String text) {
+        for (int i = 0; i < indent; i++) {
+            out.append("    ");
+        }
+        out.append(text).append('\n');
+    }
+
+    /**
+     * 转换为java字符串字面量
+     *
+     * @param value
+     * @return
+     */
+    static String literal(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -1,6 +1,7 @@
 package org.xiech.mybatis.boost.annotation;
 
 import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.UnknownTypeHandler;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -27,11 +28,11 @@ public @interface Column {
     String name() default "";
 
     /**
-     * 外键关联的目标对象class，默认为null
+     * 外键关联的目标对象class，默认为void.class，表示没有外键关联
      *
      * @return
      */
-    Class<? extends Object> foreignBeanClass();
+    Class<? extends Object> foreignBeanClass() default void.class;
 
     /**
      * 外键关联的目标对象的属性，默认为id
@@ -115,12 +116,12 @@ public @interface Column {
      *
      * @return
      */
-    JDBCType jdbcType();
+    JDBCType jdbcType() default JDBCType.OTHER;
 
     /**
      * mybatis的TypeHandler类型映射
      *
      * @return
      */
-    Class<? extends TypeHandler<?>> typeHandler();
+    Class<? extends TypeHandler<?>> typeHandler() default UnknownTypeHandler.class;
 }
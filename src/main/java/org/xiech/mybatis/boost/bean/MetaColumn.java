@@ -0,0 +1,45 @@
+package org.xiech.mybatis.boost.bean;
+
+/**
+ * 实体类属性的静态元模型，一般由mybatis-boost-processor生成（例如User_.NAME），
+ * 可以替代User::getName这种lambda表达式在Criteria中使用，不需要通过序列化解析属性名
+ *
+ * @param <T> 实体类
+ * @param <E> 属性的类型
+ * @author xiech
+ * @date 2020-08-19 10:12
+ */
+public final class MetaColumn<T, E> {
+    private final Class<T> beanClass;
+    private final String fieldName;
+    /**
+     * 最近一次解析到的列，由Criteria在第一次使用时设置；不同MetadataContext的TableDesc不同，使用前需要检查所属的TableDesc
+     */
+    private volatile TableColumnDesc tableColumnDesc;
+
+    public MetaColumn(Class<T> beanClass, String fieldName) {
+        this.beanClass = beanClass;
+        this.fieldName = fieldName;
+    }
+
+    public Class<T> getBeanClass() {
+        return beanClass;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public TableColumnDesc getTableColumnDesc() {
+        return tableColumnDesc;
+    }
+
+    public void setTableColumnDesc(TableColumnDesc tableColumnDesc) {
+        this.tableColumnDesc = tableColumnDesc;
+    }
+
+    @Override
+    public String toString() {
+        return beanClass.getSimpleName() + "." + fieldName;
+    }
+}
@@ -1,9 +1,14 @@
 package org.xiech.mybatis.boost.bean;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import lombok.ToString;
 import org.apache.ibatis.type.TypeHandler;
 import org.xiech.mybatis.boost.annotation.GenerationType;
+import org.xiech.mybatis.boost.util.reflect.PropertyAccessor;
+import org.xiech.mybatis.boost.util.reflect.PropertyAccessorFactory;
 
 import java.beans.PropertyDescriptor;
 import java.io.Serializable;
@@ -20,6 +25,10 @@ import java.sql.JDBCType;
 public class TableColumnDesc implements Serializable {
     private TableDesc tableDesc;
     private String fieldName;
+    /**
+     * 在TableDesc.columns里面的顺序号，从0开始
+     */
+    private int ordinal;
 
     private Class<? extends Object> foreignBeanClass; //外键关联的目标对象class，默认为null
     private String foreignBeanFieldName; //外键关联的目标对象的属性，默认为id
@@ -44,4 +53,166 @@ public class TableColumnDesc implements Serializable {
     private PropertyDescriptor propertyDescriptor;
 
     private Class<? extends TypeHandler<?>> typeHandler;
+
+    /**
+     * 属性读写器，第一次使用时生成
+     */
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient volatile PropertyAccessor propertyAccessor;
+    /**
+     * 所属的TableDesc.freeze()之后为true，setter会抛出异常
+     */
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean frozen;
+
+    public void setTableDesc(TableDesc tableDesc) {
+        checkNotFrozen();
+        this.tableDesc = tableDesc;
+    }
+
+    public void setFieldName(String fieldName) {
+        checkNotFrozen();
+        this.fieldName = fieldName;
+    }
+
+    public void setOrdinal(int ordinal) {
+        checkNotFrozen();
+        this.ordinal = ordinal;
+    }
+
+    public void setForeignBeanClass(Class<? extends Object> foreignBeanClass) {
+        checkNotFrozen();
+        this.foreignBeanClass = foreignBeanClass;
+    }
+
+    public void setForeignBeanFieldName(String foreignBeanFieldName) {
+        checkNotFrozen();
+        this.foreignBeanFieldName = foreignBeanFieldName;
+    }
+
+    public void setColumnName(String columnName) {
+        checkNotFrozen();
+        this.columnName = columnName;
+    }
+
+    public void setDelimiterColumnName(String delimiterColumnName) {
+        checkNotFrozen();
+        this.delimiterColumnName = delimiterColumnName;
+    }
+
+    public void setPrimaryKey(boolean primaryKey) {
+        checkNotFrozen();
+        this.primaryKey = primaryKey;
+    }
+
+    public void setIdGenerationType(GenerationType idGenerationType) {
+        checkNotFrozen();
+        this.idGenerationType = idGenerationType;
+    }
+
+    public void setIdGenerator(String idGenerator) {
+        checkNotFrozen();
+        this.idGenerator = idGenerator;
+    }
+
+    public void setPrecision(int precision) {
+        checkNotFrozen();
+        this.precision = precision;
+    }
+
+    public void setScale(int scale) {
+        checkNotFrozen();
+        this.scale = scale;
+    }
+
+    public void setSigned(boolean signed) {
+        checkNotFrozen();
+        this.signed = signed;
+    }
+
+    public void setUnique(boolean unique) {
+        checkNotFrozen();
+        this.unique = unique;
+    }
+
+    public void setNullable(boolean nullable) {
+        checkNotFrozen();
+        this.nullable = nullable;
+    }
+
+    public void setInsertable(boolean insertable) {
+        checkNotFrozen();
+        this.insertable = insertable;
+    }
+
+    public void setUpdatable(boolean updatable) {
+        checkNotFrozen();
+        this.updatable = updatable;
+    }
+
+    public void setSearchable(boolean searchable) {
+        checkNotFrozen();
+        this.searchable = searchable;
+    }
+
+    public void setClob(boolean clob) {
+        checkNotFrozen();
+        this.clob = clob;
+    }
+
+    public void setBlob(boolean blob) {
+        checkNotFrozen();
+        this.blob = blob;
+    }
+
+    public void setJdbcType(JDBCType jdbcType) {
+        checkNotFrozen();
+        this.jdbcType = jdbcType;
+    }
+
+    public void setPropertyDescriptor(PropertyDescriptor propertyDescriptor) {
+        checkNotFrozen();
+        this.propertyDescriptor = propertyDescriptor;
+    }
+
+    public void setTypeHandler(Class<? extends TypeHandler<?>> typeHandler) {
+        checkNotFrozen();
+        this.typeHandler = typeHandler;
+    }
+
+    /**
+     * 由TableDesc.freeze()在设置ordinal之后调用
+     */
+    void freeze() {
+        this.frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (this.frozen) {
+            // 与TableDesc.freeze()之后的columns一致
+            throw new UnsupportedOperationException(this.fieldName + ": table column desc is frozen");
+        }
+    }
+
+    /**
+     * 获取属性读写器，替代通过PropertyDescriptor反射调用getter/setter方法
+     *
+     * @return
+     */
+    public PropertyAccessor getPropertyAccessor() {
+        PropertyAccessor accessor = this.propertyAccessor;
+        if (accessor == null) {
+            Class<?> beanClass = this.tableDesc.getBeanClass();
+            // 编译期生成的TableDesc没有PropertyDescriptor，按照属性名查找getter/setter方法
+            accessor = this.propertyDescriptor != null
+                    ? PropertyAccessorFactory.create(beanClass, this.propertyDescriptor.getReadMethod(), this.propertyDescriptor.getWriteMethod())
+                    : PropertyAccessorFactory.create(beanClass, this.fieldName);
+            this.propertyAccessor = accessor;
+        }
+        return accessor;
+    }
 }
@@ -1,11 +1,17 @@
 package org.xiech.mybatis.boost.bean;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import lombok.ToString;
 
 import java.beans.BeanInfo;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -18,6 +24,11 @@ import java.util.Map;
 @ToString
 public class TableDesc implements Serializable {
     private BeanInfo beanInfo;
+    /**
+     * 实体类，解析完成后设置，用于生成属性读写器
+     */
+    @ToString.Exclude
+    private Class<?> beanClass;
     private String beanClassName;
     private String beanName;
     private String tableName;
@@ -30,4 +41,144 @@ public class TableDesc implements Serializable {
     private String deleteSQL;
 
     private Map<String, TableColumnDesc> columns = new LinkedHashMap<>();
+
+    /**
+     * 按照列名、小写列名建立的索引，以及按照columns顺序排列的数组，在freeze()时生成
+     */
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private Map<String, TableColumnDesc> columnsByColumnName = Collections.emptyMap();
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private Map<String, TableColumnDesc> columnsByLowerCaseColumnName = Collections.emptyMap();
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private TableColumnDesc[] columnArray = new TableColumnDesc[0];
+    /**
+     * freeze()之后为true，setter会抛出异常
+     */
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean frozen;
+
+    public void setBeanInfo(BeanInfo beanInfo) {
+        checkNotFrozen();
+        this.beanInfo = beanInfo;
+    }
+
+    public void setBeanClass(Class<?> beanClass) {
+        checkNotFrozen();
+        this.beanClass = beanClass;
+    }
+
+    public void setBeanClassName(String beanClassName) {
+        checkNotFrozen();
+        this.beanClassName = beanClassName;
+    }
+
+    public void setBeanName(String beanName) {
+        checkNotFrozen();
+        this.beanName = beanName;
+    }
+
+    public void setTableName(String tableName) {
+        checkNotFrozen();
+        this.tableName = tableName;
+    }
+
+    public void setDelimiterTableName(String delimiterTableName) {
+        checkNotFrozen();
+        this.delimiterTableName = delimiterTableName;
+    }
+
+    public void setPrimaryKey(TableColumnDesc primaryKey) {
+        checkNotFrozen();
+        this.primaryKey = primaryKey;
+    }
+
+    public void setInsertSQL(String insertSQL) {
+        checkNotFrozen();
+        this.insertSQL = insertSQL;
+    }
+
+    public void setUpdateSQL(String updateSQL) {
+        checkNotFrozen();
+        this.updateSQL = updateSQL;
+    }
+
+    public void setSelectSQL(String selectSQL) {
+        checkNotFrozen();
+        this.selectSQL = selectSQL;
+    }
+
+    public void setDeleteSQL(String deleteSQL) {
+        checkNotFrozen();
+        this.deleteSQL = deleteSQL;
+    }
+
+    public void setColumns(Map<String, TableColumnDesc> columns) {
+        checkNotFrozen();
+        this.columns = columns;
+    }
+
+    /**
+     * 解析完成、发布到缓存之前调用，之后columns以及所有的属性都不允许再修改
+     */
+    public void freeze() {
+        checkNotFrozen();
+        Map<String, TableColumnDesc> byColumnName = new HashMap<>(this.columns.size() * 2);
+        Map<String, TableColumnDesc> byLowerCaseColumnName = new HashMap<>(this.columns.size() * 2);
+        TableColumnDesc[] array = new TableColumnDesc[this.columns.size()];
+        int ordinal = 0;
+        for (TableColumnDesc tableColumnDesc : this.columns.values()) {
+            tableColumnDesc.setOrdinal(ordinal);
+            tableColumnDesc.freeze();
+            array[ordinal++] = tableColumnDesc;
+            byColumnName.putIfAbsent(tableColumnDesc.getColumnName(), tableColumnDesc);
+            byLowerCaseColumnName.putIfAbsent(tableColumnDesc.getColumnName().toLowerCase(Locale.ROOT), tableColumnDesc);
+        }
+        this.columnsByColumnName = byColumnName;
+        this.columnsByLowerCaseColumnName = byLowerCaseColumnName;
+        this.columnArray = array;
+        this.columns = Collections.unmodifiableMap(this.columns);
+        this.frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (this.frozen) {
+            // 与freeze()之后的columns一致
+            throw new UnsupportedOperationException(this.beanClassName + ": table desc is frozen");
+        }
+    }
+
+    /**
+     * 按照实体类的属性名、数据库表的列名查找列，都找不到时再忽略大小写按照列名查找
+     *
+     * @param column 实体类的属性名、数据库表的列名
+     * @return 找不到时返回null
+     */
+    public TableColumnDesc findColumn(String column) {
+        if (column == null) {
+            return null;
+        }
+        TableColumnDesc tableColumnDesc = this.columns.get(column);
+        if (tableColumnDesc == null) {
+            tableColumnDesc = this.columnsByColumnName.get(column);
+        }
+        if (tableColumnDesc == null) {
+            tableColumnDesc = this.columnsByLowerCaseColumnName.get(column.toLowerCase(Locale.ROOT));
+        }
+        return tableColumnDesc;
+    }
+
+    /**
+     * 按照列的顺序号获取列
+     *
+     * @param ordinal 从0开始，与columns的顺序一致
+     * @return
+     */
+    public TableColumnDesc getColumn(int ordinal) {
+        return this.columnArray[ordinal];
+    }
 }
@@ -0,0 +1,61 @@
+package org.xiech.mybatis.boost.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reflections.warmUp()的预热结果
+ *
+ * @author xiech
+ * @date 2020-08-11 14:02
+ */
+@Data
+@ToString
+public class WarmUpReport {
+    /**
+     * 预热的总耗时（纳秒）
+     */
+    private long elapsedNanos;
+    private List<Entry> entries = new ArrayList<>();
+
+    /**
+     * 是否所有的实体类都解析成功
+     *
+     * @return
+     */
+    public boolean isSuccess() {
+        return entries.stream().allMatch(x -> x.getFailure() == null);
+    }
+
+    /**
+     * 解析失败的实体类
+     *
+     * @return
+     */
+    public List<Entry> getFailures() {
+        return entries.stream().filter(x -> x.getFailure() != null).collect(Collectors.toList());
+    }
+
+    /**
+     * 单个实体类的解析结果
+     */
+    @Data
+    @ToString
+    @AllArgsConstructor
+    public static class Entry {
+        private String beanClassName;
+        /**
+         * 解析耗时（纳秒），已经缓存过的实体类几乎为0
+         */
+        private long elapsedNanos;
+        /**
+         * 解析失败的异常，成功时为null
+         */
+        private Throwable failure;
+    }
+}
@@ -1,18 +1,29 @@
 package org.xiech.mybatis.boost.core;
 
 import org.apache.ibatis.jdbc.SQL;
+import org.xiech.mybatis.boost.bean.MetaColumn;
 import org.xiech.mybatis.boost.bean.TableColumnDesc;
 import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
 import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.core.constant.SqlDialect;
+import org.xiech.mybatis.boost.core.constant.SqlInMode;
+import org.xiech.mybatis.boost.core.constant.SqlLikeType;
 import org.xiech.mybatis.boost.exception.CriteriaException;
 import org.xiech.mybatis.boost.util.lambda.LambdaUtils;
+import org.xiech.mybatis.boost.util.lambda.explain.ExplainFieldNameResult;
 import org.xiech.mybatis.boost.util.lambda.explain.SerializeFunction;
-import org.xiech.mybatis.boost.util.string.RegexUtils;
 import org.xiech.mybatis.boost.util.string.StringUtils;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 /**
  * SQL语句拼接的工具抽象类，主要包含where条件的封装
@@ -20,20 +31,65 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author xiech
  * @date 2020-07-16 21:45
  */
-public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> implements Criterion<T, String, R> {
-
+public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> implements Criterion<T, String, R>, Cloneable {
+    private static final String COUNT = "COUNT(*)";
+    /**
+     * count查询的形状后缀，形状的每一段都以子句的序号开始，不会与其他形状冲突
+     */
+    private static final String COUNT_SHAPE = "#count";
 
+    private MetadataContext metadataContext;
     private Class<? extends Object> beanClass;
     private TableDesc tableDesc;
-    private Map<String, Object> params = new ConcurrentHashMap<>();
+    private CriteriaParams params = new CriteriaParams();
     private int paramsKeyIndex;
-    private SQL sql = new SQL();
+    /**
+     * 按调用顺序记录的sql片段，片段的文本只在形状缓存没有命中时才生成
+     */
+    private List<Segment> segments = new ArrayList<>();
+    /**
+     * 调用链的形状：子句、参数个数以及列（不包含参数值），相同的形状生成的sql相同
+     */
+    private StringBuilder shape = new StringBuilder();
+    /**
+     * 最后一次生成的sql，添加片段、clear()时置为null（脏标记），未修改时重复调用toString()直接返回
+     */
+    private String renderedSql;
+    /**
+     * in、not in条件的传参方式，为null时使用MetadataContext的设置
+     */
+    private SqlInMode inMode;
+    /**
+     * 超过MetadataContext.getInChunkSize()的in条件，每个Criteria只拆分第一个
+     */
+    private InChunks inChunks;
+    /**
+     * 多行数据超过MetadataContext.getMaxBindParams()时拆分的批次
+     */
+    private RowChunks rowChunks;
+    /**
+     * 当前语句里面的多行数据（拆分时为第一批）
+     */
+    private List<?> rows;
+    /**
+     * 分页使用的方言，为null时使用MetadataContext的设置
+     */
+    private SqlDialect dialect;
+    /**
+     * 添加分页时的方言，不为null表示已经分页
+     */
+    private SqlDialect pageDialect;
 
 
     public Class<? extends Object> getBeanClass() {
         return beanClass;
     }
 
+    /**
+     * sql参数，只读，key为param0、param1...
+     *
+     * @return
+     */
     public Map<String, Object> getParams() {
         return params;
     }
@@ -42,15 +98,65 @@ public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> impl
         return tableDesc;
     }
 
+    public MetadataContext getMetadataContext() {
+        return metadataContext;
+    }
+
+    /**
+     * in、not in条件的传参方式，没有单独设置时使用MetadataContext的设置
+     *
+     * @return
+     */
+    public SqlInMode getInMode() {
+        return inMode != null ? inMode : metadataContext.getInMode();
+    }
+
+    /**
+     * 设置当前Criteria的in、not in条件的传参方式，只影响之后添加的条件
+     *
+     * @param inMode 为null时使用MetadataContext的设置
+     * @return
+     */
+    public R inMode(SqlInMode inMode) {
+        this.inMode = inMode;
+        return getSelf();
+    }
+
+    /**
+     * 分页、多行insert、upsert使用的方言，没有单独设置时使用MetadataContext的设置
+     *
+     * @return
+     */
+    public SqlDialect getDialect() {
+        return dialect != null ? dialect : metadataContext.getDialect();
+    }
+
+    /**
+     * 设置当前Criteria使用的方言，只影响之后添加的分页、values(rows)
+     *
+     * @param dialect 为null时使用MetadataContext的设置
+     * @return
+     */
+    public R dialect(SqlDialect dialect) {
+        this.dialect = dialect;
+        return getSelf();
+    }
+
     @SuppressWarnings("unchecked")
     public <T> AbstractCriteria(Class<T> beanClass) {
-        init(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        init(metadataContext, beanClass);
     }
 
 
-    private <T> void init(Class<T> beanClass) {
+    private <T> void init(MetadataContext metadataContext, Class<T> beanClass) {
+        this.metadataContext = metadataContext == null ? Reflections.getDefaultContext() : metadataContext;
         this.beanClass = beanClass;
-        this.tableDesc = Reflections.getTableDesc(beanClass);
+        this.tableDesc = this.metadataContext.getTableDesc(beanClass);
         if (this.beanClass == null || this.tableDesc == null) {
             throw new CriteriaException(this.beanClass.getName() + ": init error");
         }
@@ -58,15 +164,332 @@ public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> impl
 
 
     /**
-     * 添加自定义的sql参数，返回添加到map前自动生成的key
+     * 按顺序添加sql参数，返回第一个参数的索引
+     *
+     * @param values
+     * @return
+     */
+    private int addAllParams(Object[] values) {
+        int firstIndex = this.params.size();
+        for (Object value : values) {
+            this.params.add(value);
+        }
+        return firstIndex;
+    }
+
+    /**
+     * 记录一个sql片段：参数立即收集，片段的文本（需要解析列名、替换形参）延迟到形状缓存没有命中时才生成，
+     * 所以列名错误等异常会在生成sql时才抛出
+     *
+     * @param clause   片段所属的子句
+     * @param shapeKey 片段的形状，不能包含参数值，相同的形状必须生成相同的文本；例如列名、lambda对应的属性名
+     * @param sql      生成带有形参的sql片段，若需要入参则使用'{此方法params参数的索引，从0开始}'格式；AND、OR时为null
+     * @param params   sql里面需要传入的参数
+     */
+    protected void addSegment(SqlClause clause, String shapeKey, Supplier<String> sql, Object... params) {
+        addSegment(clause, shapeKey, sql, null, null, params);
+    }
+
+    /**
+     * 记录一个连接查询的片段，生成count查询时，没有被其他片段引用的一对一的左连接会被去掉
+     *
+     * @param joinType   连接类型
+     * @param shapeKey   片段的形状
+     * @param sql        生成连接的sql片段
+     * @param joinAlias  连接的表的别名
+     * @param toOne      是否最多连接一行（连接列是主键或者唯一），只在生成count查询时调用
+     */
+    protected void addJoinSegment(SqlClause joinType, String shapeKey, Supplier<String> sql, String joinAlias, BooleanSupplier toOne) {
+        addSegment(joinType, shapeKey, sql, joinAlias, toOne);
+    }
+
+    private void addSegment(SqlClause clause, String shapeKey, Supplier<String> sql, String joinAlias, BooleanSupplier toOne, Object... params) {
+        int paramCount = params == null ? 0 : params.length;
+        int firstIndex = paramCount == 0 ? -1 : addAllParams(params);
+        this.segments.add(new Segment(clause, sql, firstIndex, paramCount, joinAlias, toOne));
+        this.renderedSql = null;
+        shapeKey = String.valueOf(shapeKey);
+        this.shape.append(clause.ordinal()).append(':')
+                .append(paramCount).append(':')
+                .append(shapeKey.length()).append(':')
+                .append(shapeKey);
+    }
+
+    /**
+     * 添加in、not in的where条件，按照getInMode()传参；BindSlot的值列表在prepare()时还不知道长度，总是整个集合作为一个参数
+     *
+     * @param operator IN、NOT_IN
+     * @param shapeKey 列的形状
+     * @param column   生成列名
+     * @param values   要in查询的值列表
+     */
+    protected void addInSegment(String operator, String shapeKey, Supplier<String> column, Object values) {
+        SqlInMode inMode = getInMode();
+        int chunkSize = this.metadataContext.getInChunkSize();
+        if (chunkSize > 0 && this.inChunks == null && SqlConstant.IN.equals(operator)
+                && values instanceof Collection && ((Collection<?>) values).size() > chunkSize) {
+            List<Object> distinct = new ArrayList<>(new LinkedHashSet<>((Collection<?>) values));
+            if (distinct.size() > chunkSize) {
+                addChunkedInSegment(shapeKey, column, distinct, chunkSize, inMode);
+                return;
+            }
+            values = distinct;
+        }
+        if (inMode == SqlInMode.COLLECTION || !(values instanceof Collection)) {
+            // 形状必须包含传参方式：COLLECTION与只有一个值的EXPAND参数个数相同，但是sql不同
+            addSegment(SqlClause.WHERE, operator + SqlInMode.COLLECTION + ':' + shapeKey,
+                    () -> column.get() + operator + SqlConstant.PARAM0, values);
+            return;
+        }
+        Collection<?> collection = (Collection<?>) values;
+        if (collection.isEmpty()) {
+            // in ()不是合法的sql：in空列表时没有结果，not in空列表时不需要条件
+            if (SqlConstant.IN.equals(operator)) {
+                addSegment(SqlClause.WHERE, SqlConstant.ALWAYS_FALSE, () -> SqlConstant.ALWAYS_FALSE);
+            }
+            return;
+        }
+        int size = collection.size();
+        Object[] params = collection.toArray(new Object[inMode == SqlInMode.BUCKET ? bucketSize(size) : size]);
+        Arrays.fill(params, size, params.length, params[size - 1]);
+        addSegment(SqlClause.WHERE, operator + inMode + params.length + ':' + shapeKey,
+                () -> column.get() + operator + placeholders(params.length), params);
+    }
+
+    /**
+     * 拆分的in条件：sql按第一批值生成，每一批的sql都相同（EXPAND、BUCKET时都是chunkSize个形参，最后一批重复最后一个值补齐），
+     * 其他批次通过chunk(index)替换参数；拆分后toString()会抛出异常，避免只执行了第一批
+     *
+     * @param shapeKey  列的形状
+     * @param column    生成列名
+     * @param distinct  去重后的值列表
+     * @param chunkSize 每一批的数量
+     * @param inMode    传参方式
+     */
+    private void addChunkedInSegment(String shapeKey, Supplier<String> column, List<Object> distinct, int chunkSize, SqlInMode inMode) {
+        int firstIndex = this.params.size();
+        if (inMode == SqlInMode.COLLECTION) {
+            addSegment(SqlClause.WHERE, SqlConstant.IN + inMode + ':' + shapeKey, () -> column.get() + SqlConstant.IN + SqlConstant.PARAM0,
+                    distinct.subList(0, chunkSize));
+            this.inChunks = new InChunks(firstIndex, true, distinct, chunkSize);
+        } else {
+            addSegment(SqlClause.WHERE, SqlConstant.IN + inMode + chunkSize + ':' + shapeKey, () -> column.get() + SqlConstant.IN + placeholders(chunkSize),
+                    distinct.subList(0, chunkSize).toArray());
+            this.inChunks = new InChunks(firstIndex, false, distinct, chunkSize);
+        }
+    }
+
+    /**
+     * in条件、多行数据拆分后的执行次数，没有拆分时为1
+     *
+     * @return
+     */
+    public int getChunkCount() {
+        if (this.inChunks != null) {
+            return this.inChunks.getCount();
+        }
+        return this.rowChunks == null ? 1 : this.rowChunks.getCount();
+    }
+
+    /**
+     * 第index批的Criteria：in条件拆分时sql与当前Criteria相同，只替换in条件的参数；多行数据拆分时只包含第index批的行。
+     * 返回的是一个副本，只用于执行，修改副本不会影响当前的Criteria
+     *
+     * @param index 从0开始，小于getChunkCount()
+     * @return 没有拆分时返回当前的Criteria
+     */
+    @SuppressWarnings("unchecked")
+    public R chunk(int index) {
+        int count = getChunkCount();
+        if (index < 0 || index >= count) {
+            throw new CriteriaException("chunk index: " + index + ", count: " + count);
+        }
+        if (this.inChunks == null && this.rowChunks == null) {
+            return getSelf();
+        }
+        String sql = this.inChunks != null ? toSql() : null;
+        AbstractCriteria<T, R> copy;
+        try {
+            copy = (AbstractCriteria<T, R>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new CriteriaException(e.getMessage());
+        }
+        if (this.inChunks != null) {
+            copy.segments = new ArrayList<>(this.segments);
+            copy.shape = new StringBuilder(this.shape);
+            copy.params = this.inChunks.apply(this.params.copy(), index);
+            copy.inChunks = null;
+            copy.renderedSql = sql;
+        } else {
+            // 回到添加多行数据之前的状态，再添加第index批的行
+            RowChunks rowChunks = this.rowChunks;
+            copy.segments = new ArrayList<>(this.segments.subList(0, rowChunks.segmentCount));
+            copy.shape = new StringBuilder(this.shape.substring(0, rowChunks.shapeLength));
+            copy.params = this.params.copy();
+            copy.params.truncate(rowChunks.paramCount);
+            copy.rowChunks = null;
+            copy.renderedSql = null;
+            copy.rows = rowChunks.get(index);
+            copy.addRowSegments(copy.rows);
+        }
+        return (R) copy;
+    }
+
+    /**
+     * 添加多行数据：一条语句的参数个数超过MetadataContext.getMaxBindParams()时按行拆分为多批，当前Criteria只包含第一批，
+     * 其他批次通过chunk(index)生成；拆分后toString()会抛出异常，避免只执行了第一批。必须是最后一个添加的片段
+     *
+     * @param rows         所有的行
+     * @param paramsPerRow 每一行的参数个数
+     */
+    protected void addRows(List<?> rows, int paramsPerRow) {
+        if (this.rows != null) {
+            throw new CriteriaException(this.beanClass.getName() + ": rows can only be set once");
+        }
+        int maxBindParams = this.metadataContext.getMaxBindParams();
+        int chunkSize = maxBindParams <= 0 || paramsPerRow <= 0 ? rows.size()
+                : Math.max(1, (maxBindParams - this.params.size()) / paramsPerRow);
+        if (rows.size() > chunkSize) {
+            this.rowChunks = new RowChunks(rows, chunkSize, this.segments.size(), this.shape.length(), this.params.size());
+            this.rows = rows.subList(0, chunkSize);
+        } else {
+            this.rows = rows;
+        }
+        addRowSegments(this.rows);
+    }
+
+    /**
+     * 是否已经添加了某个子句的片段
+     *
+     * @param clause
+     * @return
+     */
+    boolean hasClause(SqlClause clause) {
+        for (Segment segment : this.segments) {
+            if (segment.clause == clause) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 添加一批行的片段，由addRows、chunk(index)调用
+     *
+     * @param rows 这一批的行
+     */
+    protected void addRowSegments(List<?> rows) {
+        throw new CriteriaException(this.beanClass.getName() + ": rows are not supported");
+    }
+
+    /**
+     * 当前语句里面的多行数据
+     *
+     * @return 没有时返回空的列表
+     */
+    protected List<?> getRowList() {
+        return this.rows == null ? Collections.emptyList() : Collections.unmodifiableList(this.rows);
+    }
+
+    /**
+     * 添加分页：按照getDialect()生成LIMIT、OFFSET，参数是#{params.paramN}，不同的页使用相同的sql；
+     * ROWNUM分页时LIMIT的参数是结束的行号（offset + limit）
+     *
+     * @param limit  最多返回的行数
+     * @param offset 跳过的行数，小于0时不生成OFFSET
+     */
+    protected void addPageSegments(int limit, long offset) {
+        if (this.pageDialect != null) {
+            throw new CriteriaException(this.beanClass.getName() + ": page can only be set once");
+        }
+        SqlDialect dialect = getDialect();
+        this.pageDialect = dialect;
+        boolean rownum = dialect.getPaging() == SqlDialect.Paging.ROWNUM;
+        addSegment(SqlClause.LIMIT, dialect.name(), () -> SqlConstant.PARAM0, rownum ? (Object) (limit + Math.max(offset, 0)) : (Object) limit);
+        if (offset >= 0) {
+            addSegment(SqlClause.OFFSET, dialect.name(), () -> SqlConstant.PARAM0, offset);
+        }
+    }
+
+    /**
+     * 连接列是否是主键或者唯一列，即左连接最多连接一行
+     *
+     * @param tableDesc 连接的表
+     * @param column    连接的列，属性名或者列名
+     * @return
+     */
+    protected static boolean isUniqueColumn(TableDesc tableDesc, String column) {
+        TableColumnDesc tableColumnDesc = tableDesc.findColumn(column);
+        return tableColumnDesc != null
+                && (tableColumnDesc == tableDesc.getPrimaryKey() || tableColumnDesc.isPrimaryKey() || tableColumnDesc.isUnique());
+    }
+
+    /**
+     * like的参数值：'%{关键词}%'、'%{关键词}'、'{关键词}%'
+     *
+     * @param sqlLikeType like查询类型
+     * @param keywords    关键词
+     * @return
+     */
+    protected static String likeValue(SqlLikeType sqlLikeType, String keywords) {
+        switch (sqlLikeType) {
+            case LEFT:
+                return SqlConstant.PERCENT + keywords;
+            case RIGHT:
+                return keywords + SqlConstant.PERCENT;
+            default:
+                return SqlConstant.PERCENT + keywords + SqlConstant.PERCENT;
+        }
+    }
+
+    /**
+     * 补齐后的参数个数：1、2、4、8...1024，超过1024时补齐到1024的倍数
+     *
+     * @param size
+     * @return
+     */
+    static int bucketSize(int size) {
+        if (size > 1024) {
+            return (size + 1023) & ~1023;
+        }
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * ({0}, {1}, ...)
      *
-     * @param value
+     * @param count
      * @return
      */
-    private String addParams(Object value) {
-        String key = SqlConstant.PARAM + this.params.size();
-        this.params.put(key, value);
-        return key;
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder(count * 6 + 2).append(SqlConstant.BRACKET_START);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sql.append(SqlConstant.COMMA);
+            }
+            sql.append(SqlConstant.DELIM_START).append(i).append(SqlConstant.DELIM_END);
+        }
+        return sql.append(SqlConstant.BRACKET_END).toString();
+    }
+
+    /**
+     * lambda表达式的形状，使用解析出来的属性名（已缓存在lambda的class上面）
+     *
+     * @param column 类似Bean::getField()的lambda表达式
+     * @return
+     */
+    protected <E> String shapeOf(SerializeFunction<T, E> column) {
+        return column == null ? null : LambdaUtils.explainFieldName(column);
+    }
+
+    /**
+     * 静态元模型的形状，使用属性名
+     *
+     * @param column 类似User_.NAME的静态元模型
+     * @return
+     */
+    protected <E> String shapeOf(MetaColumn<T, E> column) {
+        return column == null ? null : column.getFieldName();
     }
 
     /**
@@ -76,12 +499,11 @@ public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> impl
      * @param params sql里面需要传入的参数
      */
     public String resolveSql(String sql, Object... params) {
-        Map<String, Object> newParams = new HashMap<>();
-        String newCondition = StringUtils.formatSuper(sql, RegexUtils.REGEX_FORMAL_PARAM_NUMBER, (findGroupIndex, find) -> {
-            int paramsIndex = Integer.valueOf(find.substring(1, find.length() - 1));
-            return SqlConstant.HASH_PARAMS + addParams(params[paramsIndex]) + SqlConstant.DELIM_END;
-        });
-        return newCondition;
+        int paramCount = params == null ? 0 : params.length;
+        if (paramCount == 0) {
+            return sql;
+        }
+        return SqlTemplate.compile(sql).bind(addAllParams(params), paramCount);
     }
 
     /**
@@ -91,7 +513,7 @@ public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> impl
      * @return
      */
     public TableDesc findTableDesc(Class<?> beanClass) {
-        TableDesc tableDesc = Reflections.getTableDesc(beanClass);
+        TableDesc tableDesc = this.metadataContext.getTableDesc(beanClass);
         if (tableDesc == null) {
             throw new CriteriaException(this.beanClass.getName() + ": bean \"" + (beanClass == null ? "" : beanClass.getName()) + "\" can`t find!");
         }
@@ -105,9 +527,7 @@ public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> impl
      * @return
      */
     private TableColumnDesc findTableColumnDesc(String column) {
-        TableColumnDesc tableColumnDesc = this.tableDesc.getColumns().values().stream()
-                .filter(x -> x.getFieldName().equals(column) || x.getColumnName().equals(column))
-                .findFirst().orElse(null);
+        TableColumnDesc tableColumnDesc = this.tableDesc.findColumn(column);
         if (tableColumnDesc == null) {
             throw new CriteriaException(this.beanClass.getName() + ": column \"" + (column == null ? "" : column) + "\" can`t find!");
         }
@@ -123,15 +543,79 @@ public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> impl
     }
 
     public <E> String resolveColumn(String prefix, SerializeFunction<T, E> column, boolean isAsFieldName) {
-        return resolveColumn(prefix, LambdaUtils.explainFieldName(column), isAsFieldName);
+        return resolveColumn(prefix, findTableColumnDesc(column), isAsFieldName);
+    }
+
+    public <E> String resolveColumn(MetaColumn<T, E> column, boolean isAsFieldName) {
+        return resolveColumn(null, column, isAsFieldName);
+    }
+
+    public <E> String resolveColumn(String prefix, MetaColumn<T, E> column, boolean isAsFieldName) {
+        return resolveColumn(prefix, findTableColumnDesc(column), isAsFieldName);
     }
 
     public String resolveColumn(String prefix, String column, boolean isAsFieldName) {
+        return resolveColumn(prefix, findTableColumnDesc(column), isAsFieldName);
+    }
+
+    /**
+     * 查找lambda表达式对应的列，解析结果缓存在lambda的class上面，同一个TableDesc第二次使用时不再查找
+     *
+     * @param column 类似Bean::getField()的lambda表达式
+     * @return
+     */
+    private <E> TableColumnDesc findTableColumnDesc(SerializeFunction<T, E> column) {
+        ExplainFieldNameResult result = column == null ? null : LambdaUtils.explainFieldNameResult(column);
+        if (result == null) {
+            return findTableColumnDesc((String) null);
+        }
+        TableColumnDesc tableColumnDesc = result.getTableColumnDesc();
+        if (tableColumnDesc == null || tableColumnDesc.getTableDesc() != this.tableDesc) {
+            tableColumnDesc = findTableColumnDesc(result.getFieldName());
+            result.setTableColumnDesc(tableColumnDesc);
+        }
+        return tableColumnDesc;
+    }
+
+    /**
+     * 查找静态元模型对应的列，解析结果缓存在元模型上面，同一个TableDesc第二次使用时不再查找
+     *
+     * @param column 类似User_.NAME的静态元模型
+     * @return
+     */
+    private <E> TableColumnDesc findTableColumnDesc(MetaColumn<T, E> column) {
+        if (column == null) {
+            return findTableColumnDesc((String) null);
+        }
+        TableColumnDesc tableColumnDesc = column.getTableColumnDesc();
+        if (tableColumnDesc == null || tableColumnDesc.getTableDesc() != this.tableDesc) {
+            tableColumnDesc = findTableColumnDesc(column.getFieldName());
+            column.setTableColumnDesc(tableColumnDesc);
+        }
+        return tableColumnDesc;
+    }
+
+    /**
+     * 解析连接的表的列，在连接的实体类里面查找，与isUniqueColumn()一致
+     *
+     * @param prefix    连接的表的别名加点
+     * @param tableDesc 连接的表
+     * @param column    属性名或者列名
+     * @return
+     */
+    protected String resolveJoinColumn(String prefix, TableDesc tableDesc, String column) {
+        TableColumnDesc tableColumnDesc = tableDesc.findColumn(column);
+        if (tableColumnDesc == null) {
+            throw new CriteriaException(tableDesc.getBeanClassName() + ": column \"" + (column == null ? "" : column) + "\" can`t find!");
+        }
+        return resolveColumn(prefix, tableColumnDesc, false);
+    }
+
+    private String resolveColumn(String prefix, TableColumnDesc tableColumnDesc, boolean isAsFieldName) {
         StringBuilder newColumn = new StringBuilder();
         if (StringUtils.isNotBlank(prefix)) {
             newColumn.append(prefix);
         }
-        TableColumnDesc tableColumnDesc = findTableColumnDesc(column);
         newColumn.append(tableColumnDesc.getDelimiterColumnName());
         if (isAsFieldName) {
             newColumn.append(SqlConstant.AS).append(tableColumnDesc.getFieldName());
@@ -139,20 +623,391 @@ public abstract class AbstractCriteria<T, R extends AbstractCriteria<T, R>> impl
         return newColumn.toString();
     }
 
+    /**
+     * 生成片段的文本：解析列名并将形参替换为sql参数的占位符
+     *
+     * @param segment
+     * @return AND、OR返回null
+     */
+    private String resolveSegment(Segment segment) {
+        String text = segment.sql == null ? null : segment.sql.get();
+        if (text != null && segment.firstIndex >= 0) {
+            text = SqlTemplate.compile(text).bind(segment.firstIndex, segment.paramCount);
+        }
+        return text;
+    }
+
+    /**
+     * 按照记录的片段重新生成一个SQL对象，修改返回的对象不会影响当前的Criteria；
+     * 仅用于兼容，toString()不再经过SQL对象
+     *
+     * @return
+     */
     @Override
     public SQL getSql() {
-        return this.sql;
+        SQL sql = new SQL();
+        boolean fetch = false;
+        boolean offset = false;
+        for (Segment segment : this.segments) {
+            String text = resolveSegment(segment);
+            switch (segment.clause) {
+                case SELECT:
+                    sql.SELECT(text);
+                    break;
+                case INSERT_INTO:
+                    sql.INSERT_INTO(text);
+                    break;
+                case UPDATE:
+                    sql.UPDATE(text);
+                    break;
+                case DELETE_FROM:
+                    sql.DELETE_FROM(text);
+                    break;
+                case FROM:
+                    sql.FROM(text);
+                    break;
+                case JOIN:
+                    sql.JOIN(text);
+                    break;
+                case LEFT_OUTER_JOIN:
+                    sql.LEFT_OUTER_JOIN(text);
+                    break;
+                case RIGHT_OUTER_JOIN:
+                    sql.RIGHT_OUTER_JOIN(text);
+                    break;
+                case OUTER_JOIN:
+                    sql.OUTER_JOIN(text);
+                    break;
+                case SET:
+                    sql.SET(text);
+                    break;
+                case INTO_COLUMNS:
+                    sql.INTO_COLUMNS(text);
+                    break;
+                case INTO_VALUES:
+                    sql.INTO_VALUES(text);
+                    break;
+                case WHERE:
+                    sql.WHERE(text);
+                    break;
+                case AND:
+                    sql.AND();
+                    break;
+                case OR:
+                    sql.OR();
+                    break;
+                case GROUP_BY:
+                    sql.GROUP_BY(text);
+                    break;
+                case ORDER_BY:
+                    sql.ORDER_BY(text);
+                    break;
+                case LIMIT:
+                    if (this.pageDialect.getPaging() == SqlDialect.Paging.OFFSET_FETCH) {
+                        sql.FETCH_FIRST_ROWS_ONLY(text);
+                        fetch = true;
+                    } else if (this.pageDialect.getPaging() == SqlDialect.Paging.LIMIT_OFFSET) {
+                        sql.LIMIT(text);
+                    } else {
+                        throw new CriteriaException(this.beanClass.getName() + ": SQL doesn`t support " + this.pageDialect + " paging, use toString()");
+                    }
+                    break;
+                case OFFSET:
+                    if (this.pageDialect.getPaging() == SqlDialect.Paging.OFFSET_FETCH) {
+                        sql.OFFSET_ROWS(text);
+                        offset = true;
+                    } else if (this.pageDialect.getPaging() == SqlDialect.Paging.LIMIT_OFFSET) {
+                        sql.OFFSET(text);
+                    } else {
+                        throw new CriteriaException(this.beanClass.getName() + ": SQL doesn`t support " + this.pageDialect + " paging, use toString()");
+                    }
+                    break;
+                case UPSERT:
+                case MERGE_INTO:
+                    throw new CriteriaException(this.beanClass.getName() + ": SQL doesn`t support upsert, use toString()");
+                case UPDATE_FROM:
+                    throw new CriteriaException(this.beanClass.getName() + ": SQL doesn`t support UPDATE ... FROM, use toString()");
+                default:
+                    throw new CriteriaException(this.beanClass.getName() + ": unsupported clause " + segment.clause);
+            }
+        }
+        if (fetch && !offset) {
+            // 与toString()一致，SQL Server的FETCH前面必须有OFFSET
+            sql.OFFSET_ROWS(SqlRenderer.ZERO_OFFSET);
+        }
+        return sql;
     }
 
+    /**
+     * 返回最终的sql字符串：相同形状的调用链直接使用缓存的sql，不再解析列名和生成sql；
+     * 没有副作用，Criteria未修改时重复调用直接返回上一次的结果
+     *
+     * @return
+     */
     @Override
     public String toString() {
-        return this.sql.toString();
+        if (this.rowChunks != null) {
+            throw new CriteriaException(this.beanClass.getName() + ": " + this.rowChunks.rows.size()
+                    + " rows are split into " + getChunkCount() + " statements, execute them with ChunkInterceptor or chunk(index)");
+        }
+        if (this.inChunks != null) {
+            throw new CriteriaException(this.beanClass.getName() + ": in values are split into " + getChunkCount()
+                    + " statements, execute them with ChunkInterceptor or chunk(index)");
+        }
+        return toSql();
+    }
+
+    /**
+     * 按形状缓存的sql，不检查是否拆分
+     *
+     * @return
+     */
+    private String toSql() {
+        if (this.renderedSql != null) {
+            return this.renderedSql;
+        }
+        SqlShapeCache shapeCache = this.metadataContext.getShapeCache();
+        String shape = this.shape.toString();
+        String sql = shapeCache.get(this.tableDesc, shape);
+        if (sql == null) {
+            sql = render();
+            shapeCache.put(this.tableDesc, shape, sql);
+        }
+        this.renderedSql = sql;
+        return sql;
+    }
+
+    /**
+     * 生成所有片段的文本，并渲染为sql字符串
+     *
+     * @return
+     */
+    private String render() {
+        int count = this.segments.size();
+        SqlClause[] clauses = new SqlClause[count];
+        String[] texts = new String[count];
+        for (int i = 0; i < count; i++) {
+            Segment segment = this.segments.get(i);
+            clauses[i] = segment.clause;
+            texts[i] = resolveSegment(segment);
+        }
+        return SqlRenderer.render(clauses, texts, count, this.pageDialect);
+    }
+
+    /**
+     * 与当前查询对应的count查询：去掉select的列、order by和分页，没有被引用的一对一的左连接也会去掉；
+     * 有group by时整个查询（不包含order by、分页）作为子查询。参数与当前查询相同，按形状缓存
+     *
+     * @return
+     */
+    protected String toCountString() {
+        SqlShapeCache shapeCache = this.metadataContext.getShapeCache();
+        String shape = this.shape.append(COUNT_SHAPE).toString();
+        this.shape.setLength(this.shape.length() - COUNT_SHAPE.length());
+        String sql = shapeCache.get(this.tableDesc, shape);
+        if (sql == null) {
+            sql = renderCount();
+            shapeCache.put(this.tableDesc, shape, sql);
+        }
+        return sql;
+    }
+
+    private String renderCount() {
+        int count = this.segments.size();
+        boolean grouped = false;
+        for (Segment segment : this.segments) {
+            grouped |= segment.clause == SqlClause.GROUP_BY;
+        }
+        String[] texts = new String[count];
+        boolean[] kept = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            Segment segment = this.segments.get(i);
+            switch (segment.clause) {
+                case ORDER_BY:
+                case LIMIT:
+                case OFFSET:
+                    break;
+                case SELECT:
+                    kept[i] = grouped;
+                    break;
+                default:
+                    kept[i] = true;
+            }
+            if (kept[i]) {
+                texts[i] = resolveSegment(segment);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            Segment segment = this.segments.get(i);
+            if (segment.clause == SqlClause.LEFT_OUTER_JOIN && segment.toOne != null
+                    && !isReferenced(segment.joinAlias, texts, i) && segment.toOne.getAsBoolean()) {
+                kept[i] = false;
+            }
+        }
+        SqlClause[] countClauses = new SqlClause[count + 1];
+        String[] countTexts = new String[count + 1];
+        int n = 0;
+        if (!grouped) {
+            countClauses[n] = SqlClause.SELECT;
+            countTexts[n++] = COUNT;
+        }
+        for (int i = 0; i < count; i++) {
+            if (kept[i]) {
+                countClauses[n] = this.segments.get(i).clause;
+                countTexts[n++] = texts[i];
+            }
+        }
+        String sql = SqlRenderer.render(countClauses, countTexts, n, null);
+        return grouped ? "SELECT " + COUNT + " FROM (\n" + sql + "\n) c_" : sql;
+    }
+
+    /**
+     * 除了第exclude个片段以外，是否有片段引用了表的别名（alias.column）
+     */
+    private static boolean isReferenced(String alias, String[] texts, int exclude) {
+        String prefix = alias + SqlConstant.DOT;
+        for (int i = 0; i < texts.length; i++) {
+            String text = texts[i];
+            if (i == exclude || text == null) {
+                continue;
+            }
+            for (int j = text.indexOf(prefix); j >= 0; j = text.indexOf(prefix, j + 1)) {
+                if (j == 0 || !Character.isJavaIdentifierPart(text.charAt(j - 1))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 生成不可变的PreparedCriteria：sql只生成一次，参数值里面的BindSlot在bind(...)时再填入，
+     * 之后修改当前的Criteria不会影响已生成的PreparedCriteria
+     *
+     * @return
+     */
+    public PreparedCriteria prepare() {
+        return new PreparedCriteria(toString(), this.params);
+    }
+
+    /**
+     * 调用链的形状，用于sql的缓存
+     *
+     * @return
+     */
+    public String getShape() {
+        return this.shape.toString();
     }
 
     @Override
     public R clear() {
-        this.sql = new SQL();
-        this.params.clear();
+        // 保留已分配的容量，重复使用同一个Criteria时不再重新分配
+        this.segments.clear();
+        this.shape.setLength(0);
+        this.renderedSql = null;
+        this.params.reset();
+        this.inChunks = null;
+        // 池化的Criteria会被下一次借出重复使用，单独设置的传参方式、方言不能带过去
+        this.inMode = null;
+        this.dialect = null;
+        this.pageDialect = null;
+        this.rowChunks = null;
+        this.rows = null;
         return getSelf();
     }
+
+    /**
+     * 拆分的in条件
+     */
+    private static final class InChunks {
+        /**
+         * in条件的第一个参数的索引
+         */
+        private final int firstIndex;
+        /**
+         * COLLECTION方式：每一批是一个集合参数；否则每个值是一个参数
+         */
+        private final boolean collection;
+        private final List<Object> values;
+        private final int chunkSize;
+
+        InChunks(int firstIndex, boolean collection, List<Object> values, int chunkSize) {
+            this.firstIndex = firstIndex;
+            this.collection = collection;
+            this.values = values;
+            this.chunkSize = chunkSize;
+        }
+
+        int getCount() {
+            return (this.values.size() + this.chunkSize - 1) / this.chunkSize;
+        }
+
+        CriteriaParams apply(CriteriaParams params, int index) {
+            int from = index * this.chunkSize;
+            int to = Math.min(from + this.chunkSize, this.values.size());
+            if (this.collection) {
+                params.set(this.firstIndex, this.values.subList(from, to));
+            } else {
+                for (int i = 0; i < this.chunkSize; i++) {
+                    params.set(this.firstIndex + i, this.values.get(Math.min(from + i, to - 1)));
+                }
+            }
+            return params;
+        }
+    }
+
+    /**
+     * 拆分的多行数据，以及添加多行数据之前的片段、形状、参数的位置
+     */
+    private static final class RowChunks {
+        private final List<?> rows;
+        private final int chunkSize;
+        private final int segmentCount;
+        private final int shapeLength;
+        private final int paramCount;
+
+        RowChunks(List<?> rows, int chunkSize, int segmentCount, int shapeLength, int paramCount) {
+            this.rows = rows;
+            this.chunkSize = chunkSize;
+            this.segmentCount = segmentCount;
+            this.shapeLength = shapeLength;
+            this.paramCount = paramCount;
+        }
+
+        int getCount() {
+            return (this.rows.size() + this.chunkSize - 1) / this.chunkSize;
+        }
+
+        List<?> get(int index) {
+            int from = index * this.chunkSize;
+            return this.rows.subList(from, Math.min(from + this.chunkSize, this.rows.size()));
+        }
+    }
+
+    /**
+     * 一个sql片段
+     */
+    private static final class Segment {
+        private final SqlClause clause;
+        private final Supplier<String> sql;
+        /**
+         * 片段的第一个参数的索引，没有参数时为-1
+         */
+        private final int firstIndex;
+        private final int paramCount;
+        /**
+         * 连接查询的表的别名，以及是否最多连接一行，其他片段为null
+         */
+        private final String joinAlias;
+        private final BooleanSupplier toOne;
+
+        Segment(SqlClause clause, Supplier<String> sql, int firstIndex, int paramCount, String joinAlias, BooleanSupplier toOne) {
+            this.clause = clause;
+            this.sql = sql;
+            this.firstIndex = firstIndex;
+            this.paramCount = paramCount;
+            this.joinAlias = joinAlias;
+            this.toOne = toOne;
+        }
+    }
 }
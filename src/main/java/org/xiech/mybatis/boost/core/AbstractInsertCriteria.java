@@ -2,8 +2,13 @@ package org.xiech.mybatis.boost.core;
 
 
 
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
 import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.exception.CriteriaException;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -13,30 +18,86 @@ import java.util.Map;
  * @date 2020-07-16 22:04
  */
 public abstract class AbstractInsertCriteria<T, R extends AbstractInsertCriteria<T, R>>
-        extends AbstractWhereCriteria<T, R> {
+        extends AbstractWhereCriteria<T, R> implements RowsCriterion<T> {
+    private static final String ROWS = "rows:";
 
     @SuppressWarnings("unchecked")
     public <T> AbstractInsertCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractInsertCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
         init();
     }
 
     private void init() {
-        getSql().INSERT_INTO(getTableDesc().getDelimiterTableName());
+        String tableName = getTableDesc().getDelimiterTableName();
+        addSegment(SqlClause.INSERT_INTO, null, () -> tableName);
     }
 
     public R set(String column, Object value) {
-        column = resolveColumn(column);
-        getSql().SET(resolveSql(column + SqlConstant.EQ + SqlConstant.PARAM0, value));
+        if (!getRows().isEmpty()) {
+            throw new CriteriaException(getBeanClass().getName() + ": set() can`t be used with values(rows)");
+        }
+        addSegment(SqlClause.INTO_COLUMNS, column, () -> resolveColumn(column));
+        addSegment(SqlClause.INTO_VALUES, null, () -> SqlConstant.PARAM0, value);
         return getSelf();
     }
 
     public R sets(Map<String, Object> params) {
         if (params != null) {
-            params.keySet().forEach(column -> {
-                getSql().SET(resolveSql(resolveColumn(column) + SqlConstant.EQ + SqlConstant.PARAM0, params.get(column)));
-            });
+            params.keySet().forEach(column -> set(column, params.get(column)));
+        }
+        return getSelf();
+    }
+
+    /**
+     * 多行insert：INSERT INTO table (...) VALUES (...)\n, (...)，列与Reflections.getInsertSQL一致（不包含自增主键），
+     * 参数个数超过MetadataContext.getMaxBindParams()时按行拆分为多条语句，需要注册ChunkInterceptor执行（或者按chunk(index)依次执行）；
+     * 使用useGeneratedKeys时，ChunkInterceptor会把生成的自增主键回写到每一行。不能与set()一起使用
+     *
+     * @param rows 要插入的实体
+     * @return
+     */
+    public R values(List<T> rows) {
+        if (rows == null || rows.isEmpty()) {
+            throw new CriteriaException(getBeanClass().getName() + ": rows can`t be empty");
+        }
+        if (!getParams().isEmpty()) {
+            throw new CriteriaException(getBeanClass().getName() + ": values(rows) can`t be used with set()");
+        }
+        if (!getDialect().isMultiRowValues()) {
+            throw new CriteriaException(getBeanClass().getName() + ": " + getDialect() + " doesn`t support multi-row values");
         }
+        TableDesc tableDesc = getTableDesc();
+        List<TableColumnDesc> columns = InsertRows.columns(tableDesc);
+        for (TableColumnDesc column : columns) {
+            addSegment(SqlClause.INTO_COLUMNS, column.getFieldName(), column::getDelimiterColumnName);
+        }
+        addRows(rows, InsertRows.paramCount(columns));
+        return getSelf();
+    }
+
+    @Override
+    protected void addRowSegments(List<?> rows) {
+        List<TableColumnDesc> columns = InsertRows.columns(getTableDesc());
+        int rowCount = rows.size();
+        addSegment(SqlClause.INTO_VALUES, ROWS + rowCount, () -> InsertRows.template(columns, rowCount),
+                InsertRows.params(columns, rows));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> getRows() {
+        return (List<T>) getRowList();
+    }
+
+    @Override
+    public R clear() {
+        super.clear();
+        init();
         return getSelf();
     }
 }
@@ -2,9 +2,12 @@ package org.xiech.mybatis.boost.core;
 
 
 
+import org.xiech.mybatis.boost.bean.MetaColumn;
 import org.xiech.mybatis.boost.bean.SelectTableDesc;
 import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
 import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.exception.CriteriaException;
 import org.xiech.mybatis.boost.util.lambda.explain.SerializeFunction;
 import org.xiech.mybatis.boost.util.string.StringUtils;
 
@@ -18,29 +21,40 @@ import java.util.List;
  * @date 2020-07-16 22:04
  */
 public abstract class AbstractLambdaSelectCriteria<T, R extends AbstractLambdaSelectCriteria<T, R>>
-        extends AbstractWhereCriteria<T, R> {
+        extends AbstractLambdaWhereCriteria<T, R> {
 
     private SelectTableDesc currSelectTableDesc;
     private List<SelectTableDesc> fromTables = new ArrayList<>();
-    private List<String> froms = new ArrayList<>();
-    private List<String> joins = new ArrayList<>();
+    private final Keyset keyset = new Keyset();
 
     @SuppressWarnings("unchecked")
     public <T> AbstractLambdaSelectCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractLambdaSelectCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
         this.currSelectTableDesc = new SelectTableDesc(getTableDesc(), SqlConstant.TABLE_DEFAULT_ALIAS);
         init();
     }
 
     private void init() {
         this.fromTables.add(this.currSelectTableDesc);
-        this.froms.add(this.getTableDesc().getDelimiterTableName() + SqlConstant.SPACE + this.currSelectTableDesc.getTableAlias());
+        String from = this.getTableDesc().getDelimiterTableName() + SqlConstant.SPACE + this.currSelectTableDesc.getTableAlias();
+        addSegment(SqlClause.FROM, this.currSelectTableDesc.getTableAlias(), () -> from);
     }
 
     public <E> R select(SerializeFunction<T, E>... columns) {
         for (SerializeFunction<T, E> column : columns) {
-            String c = resolveColumn(column, false);
-            getSql().SELECT(c);
+            addSegment(SqlClause.SELECT, shapeOf(column), () -> resolveColumn(column, false));
+        }
+        return getSelf();
+    }
+
+    public R select(MetaColumn<T, ?>... columns) {
+        for (MetaColumn<T, ?> column : columns) {
+            addSegment(SqlClause.SELECT, shapeOf(column), () -> resolveColumn(column, false));
         }
         return getSelf();
     }
@@ -66,34 +80,35 @@ public abstract class AbstractLambdaSelectCriteria<T, R extends AbstractLambdaSe
             tableAlias = SqlConstant.TABLE_DEFAULT_ALIAS + this.fromTables.size();
         }
         this.fromTables.add(new SelectTableDesc(tableDesc, tableAlias));
-        this.froms.add(tableDesc.getDelimiterTableName() + SqlConstant.SPACE + tableAlias);
+        String from = tableDesc.getDelimiterTableName() + SqlConstant.SPACE + tableAlias;
+        addSegment(SqlClause.FROM, otherBeanClass.getName() + SqlConstant.SPACE + tableAlias, () -> from);
 
         return getSelf();
     }
 
     public <E> R outerJoin(Class<T> otherBeanClass, String tableAlias, SerializeFunction<T, E> column, SerializeFunction<T, E> otherColumn) {
-        return join("outer join", otherBeanClass, tableAlias, column, otherColumn);
+        return join(SqlClause.OUTER_JOIN, otherBeanClass, tableAlias, column, otherColumn);
     }
 
     public <E> R leftJoin(Class<T> otherBeanClass, String tableAlias, SerializeFunction<T, E> column, SerializeFunction<T, E> otherColumn) {
-        return join("left join", otherBeanClass, tableAlias, column, otherColumn);
+        return join(SqlClause.LEFT_OUTER_JOIN, otherBeanClass, tableAlias, column, otherColumn);
     }
 
     public <E> R rightJoin(Class<T> otherBeanClass, String tableAlias, SerializeFunction<T, E> column, SerializeFunction<T, E> otherColumn) {
-        return join("right join", otherBeanClass, tableAlias, column, otherColumn);
+        return join(SqlClause.RIGHT_OUTER_JOIN, otherBeanClass, tableAlias, column, otherColumn);
     }
 
     /**
      * 连接查询
      *
-     * @param joinType       连接类型
+     * @param joinType       连接类型：JOIN、LEFT_OUTER_JOIN、RIGHT_OUTER_JOIN、OUTER_JOIN
      * @param otherBeanClass
      * @param tableAlias
      * @param column         实体<T>的字段
-     * @param otherColumn    外键字段
+     * @param otherColumn    外键字段，在连接的实体类里面查找
      * @return
      */
-    private <E> R join(String joinType, Class<T> otherBeanClass, String tableAlias, SerializeFunction<T, E> column, SerializeFunction<T, E> otherColumn) {
+    private <E> R join(SqlClause joinType, Class<T> otherBeanClass, String tableAlias, SerializeFunction<T, E> column, SerializeFunction<T, E> otherColumn) {
         if (otherBeanClass == null) {
             return getSelf();
         }
@@ -103,10 +118,14 @@ public abstract class AbstractLambdaSelectCriteria<T, R extends AbstractLambdaSe
             tableAlias = SqlConstant.TABLE_DEFAULT_ALIAS + this.fromTables.size();
         }
 
-        String c = resolveColumn(this.currSelectTableDesc.getTableAlias(), column, false);
-        String otherC = resolveColumn(tableAlias, otherColumn, false);
-        this.joins.add(joinType + SqlConstant.SPACE + tableDesc.getDelimiterTableName() + SqlConstant.SPACE + tableAlias + SqlConstant.SPACE
-                + otherC + SqlConstant.EQ + c);
+        this.fromTables.add(new SelectTableDesc(tableDesc, tableAlias));
+        String alias = tableAlias;
+        String otherFieldName = shapeOf(otherColumn);
+        addJoinSegment(joinType, otherBeanClass.getName() + SqlConstant.SPACE + alias + SqlConstant.SPACE + shapeOf(column) + SqlConstant.EQ + otherFieldName,
+                () -> tableDesc.getDelimiterTableName() + SqlConstant.SPACE + alias + SqlConstant.ON
+                        + resolveJoinColumn(alias + SqlConstant.DOT, tableDesc, otherFieldName) + SqlConstant.EQ
+                        + resolveColumn(this.currSelectTableDesc.getTableAlias() + SqlConstant.DOT, column, false),
+                alias, () -> isUniqueColumn(tableDesc, otherFieldName));
 
         return getSelf();
     }
@@ -119,6 +138,22 @@ public abstract class AbstractLambdaSelectCriteria<T, R extends AbstractLambdaSe
         return orderBy(false, columns);
     }
 
+    public R orderByAsc(MetaColumn<T, ?>... columns) {
+        for (MetaColumn<T, ?> column : columns) {
+            addSegment(SqlClause.ORDER_BY, shapeOf(column) + SqlConstant.ASC, () -> resolveColumn(column, false) + SqlConstant.ASC);
+            this.keyset.orderBy(shapeOf(column), true);
+        }
+        return getSelf();
+    }
+
+    public R orderByDesc(MetaColumn<T, ?>... columns) {
+        for (MetaColumn<T, ?> column : columns) {
+            addSegment(SqlClause.ORDER_BY, shapeOf(column) + SqlConstant.DESC, () -> resolveColumn(column, false) + SqlConstant.DESC);
+            this.keyset.orderBy(shapeOf(column), false);
+        }
+        return getSelf();
+    }
+
     /**
      * 添加order by
      *
@@ -127,11 +162,11 @@ public abstract class AbstractLambdaSelectCriteria<T, R extends AbstractLambdaSe
      * @return
      */
     private <E> R orderBy(boolean sort, SerializeFunction<T, E>... columns) {
+        String order = sort ? SqlConstant.ASC : SqlConstant.DESC;
         for (SerializeFunction<T, E> column : columns) {
-            String c = resolveColumn(column, false);
-            String newCondition = column
-                    + (sort ? SqlConstant.ASC : SqlConstant.DESC);
-            getSql().ORDER_BY(newCondition);
+            addSegment(SqlClause.ORDER_BY, shapeOf(column) + order, () -> resolveColumn(column, false)
+                    + order);
+            this.keyset.orderBy(shapeOf(column), sort);
         }
         return getSelf();
     }
@@ -144,11 +179,38 @@ public abstract class AbstractLambdaSelectCriteria<T, R extends AbstractLambdaSe
      */
     public <E> R groupBy(SerializeFunction<T, E>... columns) {
         for (SerializeFunction<T, E> column : columns) {
-            getSql().ORDER_BY(resolveColumn(column, false));
+            addSegment(SqlClause.GROUP_BY, shapeOf(column), () -> resolveColumn(column, false));
+        }
+        return getSelf();
+    }
+
+    /**
+     * 添加group by
+     *
+     * @param columns 实体类属性的静态元模型，例如User_.NAME
+     * @return
+     */
+    public R groupBy(MetaColumn<T, ?>... columns) {
+        for (MetaColumn<T, ?> column : columns) {
+            addSegment(SqlClause.GROUP_BY, shapeOf(column), () -> resolveColumn(column, false));
         }
         return getSelf();
     }
 
+    @Override
+    public <E> String resolveColumn(MetaColumn<T, E> column, boolean isAsFieldName) {
+        return resolveColumn(null, column, false);
+    }
+
+    @Override
+    public <E> String resolveColumn(String prefix, MetaColumn<T, E> column, boolean isAsFieldName) {
+        if (StringUtils.isBlank(prefix)) {
+            //如果没有指定，那么就是默认查询本表的列名
+            prefix = this.currSelectTableDesc.getTableAlias() + SqlConstant.DOT;
+        }
+        return super.resolveColumn(prefix, column, false);
+    }
+
     @Override
     public <E> String resolveColumn(SerializeFunction<T, E> column, boolean isAsFieldName) {
         return resolveColumn(null, column, false);
@@ -163,23 +225,61 @@ public abstract class AbstractLambdaSelectCriteria<T, R extends AbstractLambdaSe
         return super.resolveColumn(prefix, column, false);
     }
 
-    @Override
-    public R clear() {
-        this.fromTables.clear();
-        this.froms.clear();
-        this.joins.clear();
+    /**
+     * 分页：按照方言（getDialect()）生成LIMIT/OFFSET、OFFSET ... FETCH FIRST或者ROWNUM，页码和每页数量作为参数，不同的页使用相同的sql
+     *
+     * @param pageNum  页码，从1开始
+     * @param pageSize 每页的数量
+     * @return
+     */
+    public R page(int pageNum, int pageSize) {
+        if (pageNum < 1 || pageSize < 1) {
+            throw new CriteriaException(getBeanClass().getName() + ": pageNum and pageSize must be positive");
+        }
+        addPageSegments(pageSize, (long) (pageNum - 1) * pageSize);
+        return getSelf();
+    }
 
-        init();
-        return super.clear();
+    /**
+     * 与当前查询对应的count查询：不包含select的列、order by、分页，没有被引用的一对一的左连接也会去掉，
+     * 有group by时使用子查询；参数与当前查询相同，按查询的形状缓存
+     *
+     * @return
+     */
+    public String getCountSql() {
+        return toCountString();
+    }
+
+    /**
+     * 键集分页：按order by的列加上主键排序，查询token之后的size条数据，需要在where、order by之后调用，每个查询只能调用一次。
+     * 排序列只能是主表的列，并且值不能为null；下一页的token使用nextPageToken(当前页的最后一行)生成
+     *
+     * @param token 上一页的nextPageToken，为null时查询第一页
+     * @param size  每页的数量
+     * @return
+     */
+    public R pageAfter(String token, int size) {
+        this.keyset.pageAfter(this, this.currSelectTableDesc.getTableAlias(), token, size);
+        return getSelf();
+    }
+
+    /**
+     * 生成下一页的token（不透明的字符串，可以直接返回给客户端）
+     *
+     * @param lastRow 当前页的最后一行
+     * @return lastRow为null（当前页没有数据）时返回null
+     */
+    public String nextPageToken(T lastRow) {
+        return this.keyset.nextPageToken(this, this.currSelectTableDesc.getTableAlias(), lastRow);
     }
 
     @Override
-    public String toString() {
-        // from tables
-        this.froms.forEach(x -> getSql().FROM(x));
-        // join tables
-        this.joins.forEach(x -> getSql().FROM(x));
+    public R clear() {
+        super.clear();
+        this.fromTables.clear();
+        this.keyset.clear();
 
-        return super.toString();
+        init();
+        return getSelf();
     }
 }
@@ -2,9 +2,15 @@ package org.xiech.mybatis.boost.core;
 
 
 
+import org.xiech.mybatis.boost.bean.MetaColumn;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
 import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.exception.CriteriaException;
 import org.xiech.mybatis.boost.util.lambda.explain.SerializeFunction;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,30 +20,105 @@ import java.util.Map;
  * @date 2020-07-16 22:04
  */
 public abstract class AbstractLambdaUpdateCriteria<T, R extends AbstractLambdaUpdateCriteria<T, R>>
-        extends AbstractWhereCriteria<T, R> {
+        extends AbstractLambdaWhereCriteria<T, R> {
+    private final UpdateRows updateRows = new UpdateRows();
 
     @SuppressWarnings("unchecked")
     public <T> AbstractLambdaUpdateCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractLambdaUpdateCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
         init();
     }
 
     private void init() {
-        getSql().UPDATE(getTableDesc().getDelimiterTableName());
+        String tableName = getTableDesc().getDelimiterTableName();
+        addSegment(SqlClause.UPDATE, null, () -> tableName);
     }
 
     public <E> R set(SerializeFunction<T, E> column, Object value) {
-        String c = resolveColumn(column, false);
-        getSql().SET(resolveSql(column + SqlConstant.EQ + SqlConstant.PARAM0, value));
+        checkNoRows();
+        addSegment(SqlClause.SET, shapeOf(column), () -> resolveColumn(column, false) + SqlConstant.EQ + SqlConstant.PARAM0, value);
+        return getSelf();
+    }
+
+    public <E> R set(MetaColumn<T, E> column, Object value) {
+        checkNoRows();
+        addSegment(SqlClause.SET, shapeOf(column), () -> resolveColumn(column, false) + SqlConstant.EQ + SqlConstant.PARAM0, value);
         return getSelf();
     }
 
     public <E> R sets(Map<SerializeFunction<T, E>, Object> params) {
         if (params != null) {
-            params.keySet().forEach(column -> {
-                getSql().SET(resolveSql(resolveColumn(column, false) + SqlConstant.EQ + SqlConstant.PARAM0, params.get(column)));
-            });
+            params.keySet().forEach(column -> set(column, params.get(column)));
+        }
+        return getSelf();
+    }
+
+    /**
+     * 按主键批量更新多行，更新除主键以外的所有列，规则与AbstractUpdateCriteria.values相同
+     *
+     * @param rows 要更新的实体，主键不能为null，不能重复
+     * @return
+     */
+    public R values(List<T> rows) {
+        this.updateRows.values(this, rows, Collections.emptyList());
+        return getSelf();
+    }
+
+    /**
+     * 按主键批量更新多行的指定列
+     *
+     * @param rows    要更新的实体，主键不能为null，不能重复
+     * @param columns 类似Bean::getField()的lambda表达式
+     * @return
+     */
+    @SafeVarargs
+    public final R values(List<T> rows, SerializeFunction<T, ?>... columns) {
+        List<String> names = new ArrayList<>(columns.length);
+        for (SerializeFunction<T, ?> column : columns) {
+            names.add(shapeOf(column));
         }
+        this.updateRows.values(this, rows, names);
+        return getSelf();
+    }
+
+    /**
+     * 按主键批量更新多行的指定列
+     *
+     * @param rows    要更新的实体，主键不能为null，不能重复
+     * @param columns 类似User_.NAME的静态元模型
+     * @return
+     */
+    @SafeVarargs
+    public final R values(List<T> rows, MetaColumn<T, ?>... columns) {
+        List<String> names = new ArrayList<>(columns.length);
+        for (MetaColumn<T, ?> column : columns) {
+            names.add(shapeOf(column));
+        }
+        this.updateRows.values(this, rows, names);
+        return getSelf();
+    }
+
+    @Override
+    protected void addRowSegments(List<?> rows) {
+        this.updateRows.addRowSegments(this, rows);
+    }
+
+    private void checkNoRows() {
+        if (!getRowList().isEmpty()) {
+            throw new CriteriaException(getBeanClass().getName() + ": set() can`t be used after values(rows)");
+        }
+    }
+
+    @Override
+    public R clear() {
+        super.clear();
+        this.updateRows.clear();
+        init();
         return getSelf();
     }
 }
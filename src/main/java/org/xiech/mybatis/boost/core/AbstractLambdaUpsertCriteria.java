@@ -0,0 +1,125 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.bean.MetaColumn;
+import org.xiech.mybatis.boost.util.lambda.explain.SerializeFunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 插入或更新（upsert）的拼接sql处理，列使用lambda表达式或者静态元模型，规则与AbstractUpsertCriteria相同
+ *
+ * @author xiech
+ * @date 2020-08-27 16:10
+ */
+public abstract class AbstractLambdaUpsertCriteria<T, R extends AbstractLambdaUpsertCriteria<T, R>> extends AbstractCriteria<T, R> {
+    private final Upsert upsert = new Upsert();
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractLambdaUpsertCriteria(Class<T> beanClass) {
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractLambdaUpsertCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
+    }
+
+    /**
+     * 冲突列（唯一索引的列），默认是@Column(unique = true)的列，没有时使用主键
+     *
+     * @param columns 类似Bean::getField()的lambda表达式
+     * @return
+     */
+    @SafeVarargs
+    public final R onConflict(SerializeFunction<T, ?>... columns) {
+        List<String> names = new ArrayList<>(columns.length);
+        for (SerializeFunction<T, ?> column : columns) {
+            names.add(shapeOf(column));
+        }
+        this.upsert.onConflict(this, names);
+        return getSelf();
+    }
+
+    /**
+     * 冲突列（唯一索引的列）
+     *
+     * @param columns 类似User_.NAME的静态元模型
+     * @return
+     */
+    @SafeVarargs
+    public final R onConflict(MetaColumn<T, ?>... columns) {
+        List<String> names = new ArrayList<>(columns.length);
+        for (MetaColumn<T, ?> column : columns) {
+            names.add(shapeOf(column));
+        }
+        this.upsert.onConflict(this, names);
+        return getSelf();
+    }
+
+    /**
+     * 冲突时更新的列，默认是除冲突列、主键以外的所有插入的列；不传时冲突的行保持不变
+     *
+     * @param columns 类似Bean::getField()的lambda表达式
+     * @return
+     */
+    @SafeVarargs
+    public final R update(SerializeFunction<T, ?>... columns) {
+        List<String> names = new ArrayList<>(columns.length);
+        for (SerializeFunction<T, ?> column : columns) {
+            names.add(shapeOf(column));
+        }
+        this.upsert.update(this, names);
+        return getSelf();
+    }
+
+    /**
+     * 冲突时更新的列
+     *
+     * @param columns 类似User_.NAME的静态元模型
+     * @return
+     */
+    @SafeVarargs
+    public final R update(MetaColumn<T, ?>... columns) {
+        List<String> names = new ArrayList<>(columns.length);
+        for (MetaColumn<T, ?> column : columns) {
+            names.add(shapeOf(column));
+        }
+        this.upsert.update(this, names);
+        return getSelf();
+    }
+
+    /**
+     * 插入或更新一行
+     *
+     * @param row 实体
+     * @return
+     */
+    public R value(T row) {
+        return values(Collections.singletonList(row));
+    }
+
+    /**
+     * 插入或更新多行，列与多行insert一致（不包含自增主键）
+     *
+     * @param rows 实体
+     * @return
+     */
+    public R values(List<T> rows) {
+        this.upsert.values(this, rows);
+        return getSelf();
+    }
+
+    @Override
+    protected void addRowSegments(List<?> rows) {
+        this.upsert.addRowSegments(this, rows);
+    }
+
+    @Override
+    public R clear() {
+        super.clear();
+        this.upsert.clear();
+        return getSelf();
+    }
+}
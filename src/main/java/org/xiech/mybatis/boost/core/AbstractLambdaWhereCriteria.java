@@ -2,6 +2,8 @@ package org.xiech.mybatis.boost.core;
 
 
 
+import org.xiech.mybatis.boost.bean.MetaColumn;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
 import org.xiech.mybatis.boost.core.constant.SqlConstant;
 import org.xiech.mybatis.boost.core.constant.SqlLikeType;
 import org.xiech.mybatis.boost.core.constant.SqlWhereBasicOperator;
@@ -12,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 对where条件拼接sql的处理
@@ -25,7 +28,12 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
 
     @SuppressWarnings("unchecked")
     public <T> AbstractLambdaWhereCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractLambdaWhereCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
     }
 
     /**
@@ -40,6 +48,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加 = 的where条件
+     *
+     * @param column 实体类属性的静态元模型，例如User_.NAME
+     * @param value
+     * @return
+     */
+    public <E> R eq(MetaColumn<T, E> column, Object value) {
+        whereBasic(SqlWhereBasicOperator.EQ, column, value);
+        return getSelf();
+    }
+
     /**
      * 添加 > 的where条件
      *
@@ -52,6 +72,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加 > 的where条件
+     *
+     * @param column 实体类属性的静态元模型，例如User_.NAME
+     * @param value
+     * @return
+     */
+    public <E> R gt(MetaColumn<T, E> column, Object value) {
+        whereBasic(SqlWhereBasicOperator.GT, column, value);
+        return getSelf();
+    }
+
     /**
      * 添加 < 的where条件
      *
@@ -64,6 +96,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加 < 的where条件
+     *
+     * @param column 实体类属性的静态元模型，例如User_.NAME
+     * @param value
+     * @return
+     */
+    public <E> R lt(MetaColumn<T, E> column, Object value) {
+        whereBasic(SqlWhereBasicOperator.LT, column, value);
+        return getSelf();
+    }
+
     /**
      * 添加 != 的where条件
      *
@@ -76,6 +120,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加 != 的where条件
+     *
+     * @param column 实体类属性的静态元模型，例如User_.NAME
+     * @param value
+     * @return
+     */
+    public <E> R ne(MetaColumn<T, E> column, Object value) {
+        whereBasic(SqlWhereBasicOperator.NE, column, value);
+        return getSelf();
+    }
+
     /**
      * 添加 >= 的where条件
      *
@@ -88,6 +144,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加 >= 的where条件
+     *
+     * @param column 实体类属性的静态元模型，例如User_.NAME
+     * @param value
+     * @return
+     */
+    public <E> R ge(MetaColumn<T, E> column, Object value) {
+        whereBasic(SqlWhereBasicOperator.GE, column, value);
+        return getSelf();
+    }
+
     /**
      * 添加 <= 的where条件
      *
@@ -100,6 +168,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加 <= 的where条件
+     *
+     * @param column 实体类属性的静态元模型，例如User_.NAME
+     * @param value
+     * @return
+     */
+    public <E> R le(MetaColumn<T, E> column, Object value) {
+        whereBasic(SqlWhereBasicOperator.LE, column, value);
+        return getSelf();
+    }
+
 
     /**
      * 添加between的where条件
@@ -114,18 +194,39 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         boolean b2 = checkParamValue(valueEnd);
         if (!b1 && !b2)
             return getSelf();
-        String c = resolveColumn(column, false);
+        String shape = shapeOf(column);
         if (b1) {
-            String newCondition = c
+            where(SqlConstant.GE + shape, () -> resolveColumn(column, false)
                     + SqlConstant.GE
-                    + SqlConstant.PARAM0;
-            where(newCondition, valueStart);
+                    + SqlConstant.PARAM0, valueStart);
         }
         if (b2) {
-            String newCondition = c
+            where(SqlConstant.LE + shape, () -> resolveColumn(column, false)
                     + SqlConstant.LE
-                    + SqlConstant.PARAM0;
-            where(newCondition, valueEnd);
+                    + SqlConstant.PARAM0, valueEnd);
+        }
+        return getSelf();
+    }
+
+    /**
+     * 添加between的where条件
+     *
+     * @param column     实体类属性的静态元模型，例如User_.NAME
+     * @param valueStart 开始值，不传则不生成between其中的大于等于条件
+     * @param valueEnd   结束值，不传则不生成between其中的小于等于条件
+     * @return
+     */
+    public <E> R between(MetaColumn<T, E> column, Object valueStart, Object valueEnd) {
+        boolean b1 = checkParamValue(valueStart);
+        boolean b2 = checkParamValue(valueEnd);
+        if (!b1 && !b2)
+            return getSelf();
+        String shape = shapeOf(column);
+        if (b1) {
+            where(SqlConstant.GE + shape, () -> resolveColumn(column, false) + SqlConstant.GE + SqlConstant.PARAM0, valueStart);
+        }
+        if (b2) {
+            where(SqlConstant.LE + shape, () -> resolveColumn(column, false) + SqlConstant.LE + SqlConstant.PARAM0, valueEnd);
         }
         return getSelf();
     }
@@ -143,19 +244,37 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         boolean b2 = checkParamValue(valueEnd);
         if (!(b1 && b2))
             return getSelf();
-        String c = resolveColumn(column, false);
-        String newCondition = c
-                + SqlConstant.LE
+        where(SqlConstant.NOT_BETWEEN + shapeOf(column), () -> resolveColumn(column, false)
+                + SqlConstant.NOT_BETWEEN
+                + SqlConstant.PARAM0
+                + SqlConstant.AND
+                + SqlConstant.PARAM1, valueStart, valueEnd);
+        return getSelf();
+    }
+
+    /**
+     * 添加not between的where条件
+     *
+     * @param column     实体类属性的静态元模型，例如User_.NAME
+     * @param valueStart 开始值，必传，如果不传则不生成该条件
+     * @param valueEnd   结束值，必传，如果不传则不生成该条件
+     * @return
+     */
+    public <E> R notBetween(MetaColumn<T, E> column, Object valueStart, Object valueEnd) {
+        boolean b1 = checkParamValue(valueStart);
+        boolean b2 = checkParamValue(valueEnd);
+        if (!(b1 && b2))
+            return getSelf();
+        where(SqlConstant.NOT_BETWEEN + shapeOf(column), () -> resolveColumn(column, false)
+                + SqlConstant.NOT_BETWEEN
                 + SqlConstant.PARAM0
                 + SqlConstant.AND
-                + column
-                + SqlConstant.GE
-                + SqlConstant.PARAM1;
+                + SqlConstant.PARAM1, valueStart, valueEnd);
         return getSelf();
     }
 
     public R and() {
-        getSql().AND();
+        addSegment(SqlClause.AND, null, null);
         return getSelf();
     }
 
@@ -166,7 +285,7 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
     }
 
     public R or() {
-        getSql().OR();
+        addSegment(SqlClause.OR, null, null);
         return getSelf();
     }
 
@@ -193,6 +312,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加like的where条件：'%{关键词}%'
+     *
+     * @param keywords 关键词
+     * @param columns  实体类属性的静态元模型，例如User_.NAME
+     * @return
+     */
+    public R like(String keywords, MetaColumn<T, ?>... columns) {
+        whereLike(SqlLikeType.DEFAULT, keywords, columns);
+        return getSelf();
+    }
+
     /**
      * 添加like的where条件：'%{关键词}'
      *
@@ -205,6 +336,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加like的where条件：'%{关键词}'
+     *
+     * @param keywords 关键词
+     * @param columns  实体类属性的静态元模型，例如User_.NAME
+     * @return
+     */
+    public R likeLeft(String keywords, MetaColumn<T, ?>... columns) {
+        whereLike(SqlLikeType.LEFT, keywords, columns);
+        return getSelf();
+    }
+
     /**
      * 添加like的where条件：'{关键词}%'
      *
@@ -217,6 +360,18 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         return getSelf();
     }
 
+    /**
+     * 添加like的where条件：'{关键词}%'
+     *
+     * @param keywords 关键词
+     * @param columns  实体类属性的静态元模型，例如User_.NAME
+     * @return
+     */
+    public R likeRight(String keywords, MetaColumn<T, ?>... columns) {
+        whereLike(SqlLikeType.RIGHT, keywords, columns);
+        return getSelf();
+    }
+
     /**
      * 添加in的where条件
      *
@@ -225,14 +380,43 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
      * @return
      */
     public <E> R in(SerializeFunction<T, E> column, Collection<?> collections) {
-        if (!checkParamValue(collections)) {
-            return getSelf();
-        }
-        String c = resolveColumn(column, false);
-        String newCondition = c
-                + SqlConstant.IN
-                + SqlConstant.PARAM0;
-        where(newCondition, collections);
+        whereIn(SqlConstant.IN, column, collections);
+        return getSelf();
+    }
+
+    /**
+     * 添加in的where条件，值列表在PreparedCriteria.bind(...)时填入
+     *
+     * @param column 实体类的属性名、数据库表的字段名
+     * @param slot   值列表的占位
+     * @return
+     */
+    public <E> R in(SerializeFunction<T, E> column, BindSlot slot) {
+        whereIn(SqlConstant.IN, column, slot);
+        return getSelf();
+    }
+
+    /**
+     * 添加in的where条件
+     *
+     * @param column      实体类属性的静态元模型，例如User_.NAME
+     * @param collections 要in查询的值列表
+     * @return
+     */
+    public <E> R in(MetaColumn<T, E> column, Collection<?> collections) {
+        whereIn(SqlConstant.IN, column, collections);
+        return getSelf();
+    }
+
+    /**
+     * 添加in的where条件，值列表在PreparedCriteria.bind(...)时填入
+     *
+     * @param column 实体类属性的静态元模型，例如User_.NAME
+     * @param slot   值列表的占位
+     * @return
+     */
+    public <E> R in(MetaColumn<T, E> column, BindSlot slot) {
+        whereIn(SqlConstant.IN, column, slot);
         return getSelf();
     }
 
@@ -244,14 +428,43 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
      * @return
      */
     public <E> R notIn(SerializeFunction<T, E> column, Collection<?> collections) {
-        if (!checkParamValue(collections)) {
-            return getSelf();
-        }
-        String c = resolveColumn(column, false);
-        String newCondition = c
-                + SqlConstant.NOT_IN
-                + SqlConstant.PARAM0;
-        where(newCondition, collections);
+        whereIn(SqlConstant.NOT_IN, column, collections);
+        return getSelf();
+    }
+
+    /**
+     * 添加not in的where条件，值列表在PreparedCriteria.bind(...)时填入
+     *
+     * @param column 实体类的属性名、数据库表的字段名
+     * @param slot   值列表的占位
+     * @return
+     */
+    public <E> R notIn(SerializeFunction<T, E> column, BindSlot slot) {
+        whereIn(SqlConstant.NOT_IN, column, slot);
+        return getSelf();
+    }
+
+    /**
+     * 添加not in的where条件
+     *
+     * @param column      实体类属性的静态元模型，例如User_.NAME
+     * @param collections 要in查询的值列表
+     * @return
+     */
+    public <E> R notIn(MetaColumn<T, E> column, Collection<?> collections) {
+        whereIn(SqlConstant.NOT_IN, column, collections);
+        return getSelf();
+    }
+
+    /**
+     * 添加not in的where条件，值列表在PreparedCriteria.bind(...)时填入
+     *
+     * @param column 实体类属性的静态元模型，例如User_.NAME
+     * @param slot   值列表的占位
+     * @return
+     */
+    public <E> R notIn(MetaColumn<T, E> column, BindSlot slot) {
+        whereIn(SqlConstant.NOT_IN, column, slot);
         return getSelf();
     }
 
@@ -267,7 +480,8 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         if (StringUtils.isBlank(sql)) {
             return getSelf();
         }
-        where(SqlConstant.EXISTS + sql, params);
+        String condition = SqlConstant.EXISTS + sql;
+        where(condition, () -> condition, params);
         return getSelf();
     }
 
@@ -283,7 +497,8 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         if (StringUtils.isBlank(sql)) {
             return getSelf();
         }
-        where(SqlConstant.NOT_EXISTS + sql, params);
+        String condition = SqlConstant.NOT_EXISTS + sql;
+        where(condition, () -> condition, params);
         return getSelf();
     }
 
@@ -299,13 +514,39 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
         if (operator == null || !checkParamValue(value)) {
             return;
         }
-        String c = resolveColumn(column, false);
-        String newCondition = c
+        where(operator.getOperator() + shapeOf(column), () -> resolveColumn(column, false)
                 + operator.getOperator()
-                + SqlConstant.PARAM0;
-        where(newCondition, value);
+                + SqlConstant.PARAM0, value);
+    }
+
+
+    private <E> void whereBasic(SqlWhereBasicOperator operator, MetaColumn<T, E> column, Object value) {
+        if (operator == null || !checkParamValue(value)) {
+            return;
+        }
+        where(operator.getOperator() + shapeOf(column), () -> resolveColumn(column, false) + operator.getOperator() + SqlConstant.PARAM0, value);
+    }
+
+    /**
+     * 添加in、not in的where条件
+     *
+     * @param operator    IN、NOT_IN
+     * @param column      实体类的属性名、数据库表的字段名
+     * @param collections 要in查询的值列表或者BindSlot
+     */
+    private <E> void whereIn(String operator, SerializeFunction<T, E> column, Object collections) {
+        if (!checkParamValue(collections)) {
+            return;
+        }
+        addInSegment(operator, shapeOf(column), () -> resolveColumn(column, false), collections);
     }
 
+    private <E> void whereIn(String operator, MetaColumn<T, E> column, Object collections) {
+        if (!checkParamValue(collections)) {
+            return;
+        }
+        addInSegment(operator, shapeOf(column), () -> resolveColumn(column, false), collections);
+    }
 
     /**
      * 添加like的where条件
@@ -320,25 +561,25 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
             return;
         }
         for (SerializeFunction<T, E> column : columns) {
-            String c = resolveColumn(column, false);
-            String value = null;
-            switch (sqlLikeType) {
-                case LEFT:
-                    value = SqlConstant.PERCENT + keywords;
-                case RIGHT:
-                    value = keywords + SqlConstant.PERCENT;
-                default:
-                    value = SqlConstant.PERCENT + keywords + SqlConstant.PERCENT;
-            }
+            String value = likeValue(sqlLikeType, keywords);
 
-            String newCondition = column
+            where(SqlConstant.LIKE + shapeOf(column), () -> resolveColumn(column, false)
                     + SqlConstant.LIKE
-                    + SqlConstant.PARAM0;
-            where(newCondition, value);
+                    + SqlConstant.PARAM0, value);
         }
     }
 
 
+    private void whereLike(SqlLikeType sqlLikeType, String keywords, MetaColumn<T, ?>... columns) {
+        if (sqlLikeType == null || !checkParamValue(keywords)) {
+            return;
+        }
+        for (MetaColumn<T, ?> column : columns) {
+            where(SqlConstant.LIKE + shapeOf(column), () -> resolveColumn(column, false) + SqlConstant.LIKE + SqlConstant.PARAM0,
+                    likeValue(sqlLikeType, keywords));
+        }
+    }
+
     /**
      * 检查where条件里面传入的参数值，如果返回false则不会往sql添加这个where条件
      *
@@ -362,13 +603,12 @@ public abstract class AbstractLambdaWhereCriteria<T, R extends AbstractLambdaWhe
     /**
      * 添加自定义的where条件
      *
-     * @param condition where条件的sql片段，若需要入参则使用'{此方法params参数的索引，从0开始}'格式；例如：u.name = {0} and u.age = {1}；
+     * @param shapeKey  where条件的形状，不包含参数值
+     * @param condition 生成where条件的sql片段，若需要入参则使用'{此方法params参数的索引，从0开始}'格式；例如：u.name = {0} and u.age = {1}；
      * @param params    condition里面需要传入的sql参数
      */
-    private void where(String condition, Object... params) {
-        if (StringUtils.isNotBlank(condition)) {
-            getSql().WHERE(resolveSql(condition, params));
-        }
+    private void where(String shapeKey, Supplier<String> condition, Object... params) {
+        addSegment(SqlClause.WHERE, shapeKey, condition, params);
     }
 
 }
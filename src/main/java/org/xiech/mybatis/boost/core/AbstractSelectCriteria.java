@@ -4,7 +4,9 @@ package org.xiech.mybatis.boost.core;
 
 import org.xiech.mybatis.boost.bean.SelectTableDesc;
 import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
 import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.exception.CriteriaException;
 import org.xiech.mybatis.boost.util.string.StringUtils;
 
 import java.util.ArrayList;
@@ -21,25 +23,29 @@ public abstract class AbstractSelectCriteria<T, R extends AbstractSelectCriteria
 
     private SelectTableDesc currSelectTableDesc;
     private List<SelectTableDesc> fromTables = new ArrayList<>();
-    private List<String> froms = new ArrayList<>();
-    private List<String> joins = new ArrayList<>();
+    private final Keyset keyset = new Keyset();
 
     @SuppressWarnings("unchecked")
     public <T> AbstractSelectCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractSelectCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
         this.currSelectTableDesc = new SelectTableDesc(getTableDesc(), SqlConstant.TABLE_DEFAULT_ALIAS);
         init();
     }
 
     private void init() {
         this.fromTables.add(this.currSelectTableDesc);
-        this.froms.add(this.getTableDesc().getDelimiterTableName() + SqlConstant.SPACE + this.currSelectTableDesc.getTableAlias());
+        String from = this.getTableDesc().getDelimiterTableName() + SqlConstant.SPACE + this.currSelectTableDesc.getTableAlias();
+        addSegment(SqlClause.FROM, this.currSelectTableDesc.getTableAlias(), () -> from);
     }
 
     public R select(String... columns) {
         for (String column : columns) {
-            column = resolveColumn(column);
-            getSql().SELECT(column);
+            addSegment(SqlClause.SELECT, column, () -> resolveColumn(column));
         }
         return getSelf();
     }
@@ -65,34 +71,35 @@ public abstract class AbstractSelectCriteria<T, R extends AbstractSelectCriteria
             tableAlias = SqlConstant.TABLE_DEFAULT_ALIAS + this.fromTables.size();
         }
         this.fromTables.add(new SelectTableDesc(tableDesc, tableAlias));
-        this.froms.add(tableDesc.getDelimiterTableName() + SqlConstant.SPACE + tableAlias);
+        String from = tableDesc.getDelimiterTableName() + SqlConstant.SPACE + tableAlias;
+        addSegment(SqlClause.FROM, otherBeanClass.getName() + SqlConstant.SPACE + tableAlias, () -> from);
 
         return getSelf();
     }
 
     public R outerJoin(Class<T> otherBeanClass, String tableAlias, String column, String otherColumn) {
-        return join("outer join", otherBeanClass, tableAlias, column, otherColumn);
+        return join(SqlClause.OUTER_JOIN, otherBeanClass, tableAlias, column, otherColumn);
     }
 
     public R leftJoin(Class<T> otherBeanClass, String tableAlias, String column, String otherColumn) {
-        return join("left join", otherBeanClass, tableAlias, column, otherColumn);
+        return join(SqlClause.LEFT_OUTER_JOIN, otherBeanClass, tableAlias, column, otherColumn);
     }
 
     public R rightJoin(Class<T> otherBeanClass, String tableAlias, String column, String otherColumn) {
-        return join("right join", otherBeanClass, tableAlias, column, otherColumn);
+        return join(SqlClause.RIGHT_OUTER_JOIN, otherBeanClass, tableAlias, column, otherColumn);
     }
 
     /**
      * 连接查询
      *
-     * @param joinType       连接类型
+     * @param joinType       连接类型：JOIN、LEFT_OUTER_JOIN、RIGHT_OUTER_JOIN、OUTER_JOIN
      * @param otherBeanClass
      * @param tableAlias
      * @param column         实体<T>的字段
-     * @param otherColumn    外键字段
+     * @param otherColumn    外键字段，在连接的实体类里面查找
      * @return
      */
-    private R join(String joinType, Class<T> otherBeanClass, String tableAlias, String column, String otherColumn) {
+    private R join(SqlClause joinType, Class<T> otherBeanClass, String tableAlias, String column, String otherColumn) {
         if (otherBeanClass == null) {
             return getSelf();
         }
@@ -102,10 +109,13 @@ public abstract class AbstractSelectCriteria<T, R extends AbstractSelectCriteria
             tableAlias = SqlConstant.TABLE_DEFAULT_ALIAS + this.fromTables.size();
         }
 
-        column = resolveColumn(this.currSelectTableDesc.getTableAlias(), column);
-        otherColumn = resolveColumn(tableAlias, otherColumn);
-        this.joins.add(joinType + SqlConstant.SPACE + tableDesc.getDelimiterTableName() + SqlConstant.SPACE + tableAlias + SqlConstant.SPACE
-                + otherColumn + SqlConstant.EQ + column);
+        this.fromTables.add(new SelectTableDesc(tableDesc, tableAlias));
+        String alias = tableAlias;
+        addJoinSegment(joinType, otherBeanClass.getName() + SqlConstant.SPACE + alias + SqlConstant.SPACE + column + SqlConstant.EQ + otherColumn,
+                () -> tableDesc.getDelimiterTableName() + SqlConstant.SPACE + alias + SqlConstant.ON
+                        + resolveJoinColumn(alias + SqlConstant.DOT, tableDesc, otherColumn) + SqlConstant.EQ
+                        + resolveColumn(this.currSelectTableDesc.getTableAlias() + SqlConstant.DOT, column),
+                alias, () -> isUniqueColumn(tableDesc, otherColumn));
 
         return getSelf();
     }
@@ -126,11 +136,11 @@ public abstract class AbstractSelectCriteria<T, R extends AbstractSelectCriteria
      * @return
      */
     private R orderBy(boolean sort, String... columns) {
+        String order = sort ? SqlConstant.ASC : SqlConstant.DESC;
         for (String column : columns) {
-            column = resolveColumn(column);
-            String newCondition = column
-                    + (sort ? SqlConstant.ASC : SqlConstant.DESC);
-            getSql().ORDER_BY(newCondition);
+            addSegment(SqlClause.ORDER_BY, column + order, () -> resolveColumn(column)
+                    + order);
+            this.keyset.orderBy(column, sort);
         }
         return getSelf();
     }
@@ -143,7 +153,7 @@ public abstract class AbstractSelectCriteria<T, R extends AbstractSelectCriteria
      */
     public R groupBy(String... columns) {
         for (String column : columns) {
-            getSql().ORDER_BY(resolveColumn(column));
+            addSegment(SqlClause.GROUP_BY, column, () -> resolveColumn(column));
         }
         return getSelf();
     }
@@ -169,23 +179,61 @@ public abstract class AbstractSelectCriteria<T, R extends AbstractSelectCriteria
         return super.resolveColumn(prefix, column, false);
     }
 
-    @Override
-    public R clear() {
-        this.fromTables.clear();
-        this.froms.clear();
-        this.joins.clear();
+    /**
+     * 分页：按照方言（getDialect()）生成LIMIT/OFFSET、OFFSET ... FETCH FIRST或者ROWNUM，页码和每页数量作为参数，不同的页使用相同的sql
+     *
+     * @param pageNum  页码，从1开始
+     * @param pageSize 每页的数量
+     * @return
+     */
+    public R page(int pageNum, int pageSize) {
+        if (pageNum < 1 || pageSize < 1) {
+            throw new CriteriaException(getBeanClass().getName() + ": pageNum and pageSize must be positive");
+        }
+        addPageSegments(pageSize, (long) (pageNum - 1) * pageSize);
+        return getSelf();
+    }
 
-        init();
-        return super.clear();
+    /**
+     * 与当前查询对应的count查询：不包含select的列、order by、分页，没有被引用的一对一的左连接也会去掉，
+     * 有group by时使用子查询；参数与当前查询相同，按查询的形状缓存
+     *
+     * @return
+     */
+    public String getCountSql() {
+        return toCountString();
+    }
+
+    /**
+     * 键集分页：按order by的列加上主键排序，查询token之后的size条数据，需要在where、order by之后调用，每个查询只能调用一次。
+     * 排序列只能是主表的列，并且值不能为null；下一页的token使用nextPageToken(当前页的最后一行)生成
+     *
+     * @param token 上一页的nextPageToken，为null时查询第一页
+     * @param size  每页的数量
+     * @return
+     */
+    public R pageAfter(String token, int size) {
+        this.keyset.pageAfter(this, this.currSelectTableDesc.getTableAlias(), token, size);
+        return getSelf();
+    }
+
+    /**
+     * 生成下一页的token（不透明的字符串，可以直接返回给客户端）
+     *
+     * @param lastRow 当前页的最后一行
+     * @return lastRow为null（当前页没有数据）时返回null
+     */
+    public String nextPageToken(T lastRow) {
+        return this.keyset.nextPageToken(this, this.currSelectTableDesc.getTableAlias(), lastRow);
     }
 
     @Override
-    public String toString() {
-        // from tables
-        this.froms.forEach(x -> getSql().FROM(x));
-        // join tables
-        this.joins.forEach(x -> getSql().FROM(x));
+    public R clear() {
+        super.clear();
+        this.fromTables.clear();
+        this.keyset.clear();
 
-        return super.toString();
+        init();
+        return getSelf();
     }
 }
@@ -2,8 +2,12 @@ package org.xiech.mybatis.boost.core;
 
 
 
+import org.xiech.mybatis.boost.core.constant.SqlClause;
 import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.exception.CriteriaException;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,29 +18,64 @@ import java.util.Map;
  */
 public abstract class AbstractUpdateCriteria<T, R extends AbstractUpdateCriteria<T, R>>
         extends AbstractWhereCriteria<T, R> {
+    private final UpdateRows updateRows = new UpdateRows();
 
     @SuppressWarnings("unchecked")
     public <T> AbstractUpdateCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractUpdateCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
         init();
     }
 
     private void init() {
-        getSql().UPDATE(getTableDesc().getDelimiterTableName());
+        String tableName = getTableDesc().getDelimiterTableName();
+        addSegment(SqlClause.UPDATE, null, () -> tableName);
     }
 
     public R set(String column, Object value) {
-        column = resolveColumn(column);
-        getSql().SET(resolveSql(column + SqlConstant.EQ + SqlConstant.PARAM0, value));
+        if (!getRowList().isEmpty()) {
+            throw new CriteriaException(getBeanClass().getName() + ": set() can`t be used after values(rows)");
+        }
+        addSegment(SqlClause.SET, column, () -> resolveColumn(column) + SqlConstant.EQ + SqlConstant.PARAM0, value);
         return getSelf();
     }
 
     public R sets(Map<String, Object> params) {
         if (params != null) {
-            params.keySet().forEach(column -> {
-                getSql().SET(resolveSql(resolveColumn(column) + SqlConstant.EQ + SqlConstant.PARAM0, params.get(column)));
-            });
+            params.keySet().forEach(column -> set(column, params.get(column)));
         }
         return getSelf();
     }
+
+    /**
+     * 按主键批量更新多行，每一行的值不同：UPDATE table SET a = CASE id WHEN ... THEN ... END WHERE id IN (...)，
+     * PostgreSQL使用UPDATE ... FROM (VALUES ...)；参数个数超过MetadataContext.getMaxBindParams()时按行拆分为多条语句，
+     * 需要注册ChunkInterceptor执行（或者按chunk(index)依次执行）。之前添加的set、where条件在每一批里面都生效，
+     * where条件不能有or()，必须是最后一个调用的方法
+     *
+     * @param rows    要更新的实体，主键不能为null，不能重复
+     * @param columns 更新的列（实体类的属性名、数据库表的字段名），不传时更新除主键以外的所有列
+     * @return
+     */
+    public R values(List<T> rows, String... columns) {
+        this.updateRows.values(this, rows, Arrays.asList(columns));
+        return getSelf();
+    }
+
+    @Override
+    protected void addRowSegments(List<?> rows) {
+        this.updateRows.addRowSegments(this, rows);
+    }
+
+    @Override
+    public R clear() {
+        super.clear();
+        this.updateRows.clear();
+        init();
+        return getSelf();
+    }
 }
@@ -0,0 +1,85 @@
+package org.xiech.mybatis.boost.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 插入或更新（upsert）的拼接sql处理：MySQL生成ON DUPLICATE KEY UPDATE，PostgreSQL、SQLite生成ON CONFLICT，
+ * Oracle、SQL Server、DB2、H2生成MERGE。一条语句插入或更新多行，参数超过MetadataContext.getMaxBindParams()时
+ * 按行拆分为多条语句，需要注册ChunkInterceptor执行（或者按chunk(index)依次执行）。
+ * <p>
+ * onConflict、update、dialect必须在values之前调用；同一条语句里面冲突列的值不能重复（ON CONFLICT、MERGE会报错）；
+ * 不回写自增主键，已存在的行没有生成主键
+ *
+ * @author xiech
+ * @date 2020-08-27 16:10
+ */
+public abstract class AbstractUpsertCriteria<T, R extends AbstractUpsertCriteria<T, R>> extends AbstractCriteria<T, R> {
+    private final Upsert upsert = new Upsert();
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractUpsertCriteria(Class<T> beanClass) {
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractUpsertCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
+    }
+
+    /**
+     * 冲突列（唯一索引的列），默认是@Column(unique = true)的列，没有时使用主键
+     *
+     * @param columns 实体类的属性名、数据库表的字段名
+     * @return
+     */
+    public R onConflict(String... columns) {
+        this.upsert.onConflict(this, Arrays.asList(columns));
+        return getSelf();
+    }
+
+    /**
+     * 冲突时更新的列，默认是除冲突列、主键以外的所有插入的列；不传时冲突的行保持不变
+     *
+     * @param columns 实体类的属性名、数据库表的字段名
+     * @return
+     */
+    public R update(String... columns) {
+        this.upsert.update(this, Arrays.asList(columns));
+        return getSelf();
+    }
+
+    /**
+     * 插入或更新一行
+     *
+     * @param row 实体
+     * @return
+     */
+    public R value(T row) {
+        return values(Collections.singletonList(row));
+    }
+
+    /**
+     * 插入或更新多行，列与多行insert一致（不包含自增主键）
+     *
+     * @param rows 实体
+     * @return
+     */
+    public R values(List<T> rows) {
+        this.upsert.values(this, rows);
+        return getSelf();
+    }
+
+    @Override
+    protected void addRowSegments(List<?> rows) {
+        this.upsert.addRowSegments(this, rows);
+    }
+
+    @Override
+    public R clear() {
+        super.clear();
+        this.upsert.clear();
+        return getSelf();
+    }
+}
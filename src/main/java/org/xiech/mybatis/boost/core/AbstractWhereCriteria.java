@@ -2,6 +2,7 @@ package org.xiech.mybatis.boost.core;
 
 
 
+import org.xiech.mybatis.boost.core.constant.SqlClause;
 import org.xiech.mybatis.boost.core.constant.SqlConstant;
 import org.xiech.mybatis.boost.core.constant.SqlLikeType;
 import org.xiech.mybatis.boost.core.constant.SqlWhereBasicOperator;
@@ -11,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 对where条件拼接sql的处理
@@ -24,7 +26,12 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
 
     @SuppressWarnings("unchecked")
     public <T> AbstractWhereCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> AbstractWhereCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
     }
 
     /**
@@ -113,18 +120,15 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
         boolean b2 = checkParamValue(valueEnd);
         if (!b1 && !b2)
             return getSelf();
-        column = resolveColumn(column);
         if (b1) {
-            String newCondition = column
+            where(SqlConstant.GE + column, () -> resolveColumn(column)
                     + SqlConstant.GE
-                    + SqlConstant.PARAM0;
-            where(newCondition, valueStart);
+                    + SqlConstant.PARAM0, valueStart);
         }
         if (b2) {
-            String newCondition = column
+            where(SqlConstant.LE + column, () -> resolveColumn(column)
                     + SqlConstant.LE
-                    + SqlConstant.PARAM0;
-            where(newCondition, valueEnd);
+                    + SqlConstant.PARAM0, valueEnd);
         }
         return getSelf();
     }
@@ -142,19 +146,16 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
         boolean b2 = checkParamValue(valueEnd);
         if (!(b1 && b2))
             return getSelf();
-        column = resolveColumn(column);
-        String newCondition = column
-                + SqlConstant.LE
+        where(SqlConstant.NOT_BETWEEN + column, () -> resolveColumn(column)
+                + SqlConstant.NOT_BETWEEN
                 + SqlConstant.PARAM0
                 + SqlConstant.AND
-                + column
-                + SqlConstant.GE
-                + SqlConstant.PARAM1;
+                + SqlConstant.PARAM1, valueStart, valueEnd);
         return getSelf();
     }
 
     public R and() {
-        getSql().AND();
+        addSegment(SqlClause.AND, null, null);
         return getSelf();
     }
 
@@ -165,7 +166,7 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
     }
 
     public R or() {
-        getSql().OR();
+        addSegment(SqlClause.OR, null, null);
         return getSelf();
     }
 
@@ -224,14 +225,19 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
      * @return
      */
     public R in(String column, Collection<?> collections) {
-        if (!checkParamValue(collections)) {
-            return getSelf();
-        }
-        column = resolveColumn(column);
-        String newCondition = column
-                + SqlConstant.IN
-                + SqlConstant.PARAM0;
-        where(newCondition, collections);
+        whereIn(SqlConstant.IN, column, collections);
+        return getSelf();
+    }
+
+    /**
+     * 添加in的where条件，值列表在PreparedCriteria.bind(...)时填入
+     *
+     * @param column 实体类的属性名、数据库表的字段名
+     * @param slot   值列表的占位
+     * @return
+     */
+    public R in(String column, BindSlot slot) {
+        whereIn(SqlConstant.IN, column, slot);
         return getSelf();
     }
 
@@ -243,14 +249,19 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
      * @return
      */
     public R notIn(String column, Collection<?> collections) {
-        if (!checkParamValue(collections)) {
-            return getSelf();
-        }
-        column = resolveColumn(column);
-        String newCondition = column
-                + SqlConstant.NOT_IN
-                + SqlConstant.PARAM0;
-        where(newCondition, collections);
+        whereIn(SqlConstant.NOT_IN, column, collections);
+        return getSelf();
+    }
+
+    /**
+     * 添加not in的where条件，值列表在PreparedCriteria.bind(...)时填入
+     *
+     * @param column 实体类的属性名、数据库表的字段名
+     * @param slot   值列表的占位
+     * @return
+     */
+    public R notIn(String column, BindSlot slot) {
+        whereIn(SqlConstant.NOT_IN, column, slot);
         return getSelf();
     }
 
@@ -266,7 +277,8 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
         if (StringUtils.isBlank(sql)) {
             return getSelf();
         }
-        where(SqlConstant.EXISTS + sql, params);
+        String condition = SqlConstant.EXISTS + sql;
+        where(condition, () -> condition, params);
         return getSelf();
     }
 
@@ -282,7 +294,8 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
         if (StringUtils.isBlank(sql)) {
             return getSelf();
         }
-        where(SqlConstant.NOT_EXISTS + sql, params);
+        String condition = SqlConstant.NOT_EXISTS + sql;
+        where(condition, () -> condition, params);
         return getSelf();
     }
 
@@ -298,14 +311,26 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
         if (operator == null || !checkParamValue(value)) {
             return;
         }
-        column = resolveColumn(column);
-        String newCondition = column
+        where(operator.getOperator() + column, () -> resolveColumn(column)
                 + operator.getOperator()
-                + SqlConstant.PARAM0;
-        where(newCondition, value);
+                + SqlConstant.PARAM0, value);
     }
 
 
+    /**
+     * 添加in、not in的where条件
+     *
+     * @param operator    IN、NOT_IN
+     * @param column      实体类的属性名、数据库表的字段名
+     * @param collections 要in查询的值列表或者BindSlot
+     */
+    private void whereIn(String operator, String column, Object collections) {
+        if (!checkParamValue(collections)) {
+            return;
+        }
+        addInSegment(operator, column, () -> resolveColumn(column), collections);
+    }
+
     /**
      * 添加like的where条件
      *
@@ -319,21 +344,11 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
             return;
         }
         for (String column : columns) {
-            column = resolveColumn(column);
-            String value = null;
-            switch (sqlLikeType) {
-                case LEFT:
-                    value = SqlConstant.PERCENT + keywords;
-                case RIGHT:
-                    value = keywords + SqlConstant.PERCENT;
-                default:
-                    value = SqlConstant.PERCENT + keywords + SqlConstant.PERCENT;
-            }
+            String value = likeValue(sqlLikeType, keywords);
 
-            String newCondition = column
+            where(SqlConstant.LIKE + column, () -> resolveColumn(column)
                     + SqlConstant.LIKE
-                    + SqlConstant.PARAM0;
-            where(newCondition, value);
+                    + SqlConstant.PARAM0, value);
         }
     }
 
@@ -361,13 +376,12 @@ public abstract class AbstractWhereCriteria<T, R extends AbstractWhereCriteria<T
     /**
      * 添加自定义的where条件
      *
-     * @param condition where条件的sql片段，若需要入参则使用'{此方法params参数的索引，从0开始}'格式；例如：u.name = {0} and u.age = {1}；
+     * @param shapeKey  where条件的形状，不包含参数值
+     * @param condition 生成where条件的sql片段，若需要入参则使用'{此方法params参数的索引，从0开始}'格式；例如：u.name = {0} and u.age = {1}；
      * @param params    condition里面需要传入的sql参数
      */
-    private void where(String condition, Object... params) {
-        if (StringUtils.isNotBlank(condition)) {
-            getSql().WHERE(resolveSql(condition, params));
-        }
+    private void where(String shapeKey, Supplier<String> condition, Object... params) {
+        addSegment(SqlClause.WHERE, shapeKey, condition, params);
     }
 
 }
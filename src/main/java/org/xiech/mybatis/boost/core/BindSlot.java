@@ -0,0 +1,69 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+/**
+ * sql参数的占位：构建Criteria时代替参数值传入，prepare()之后由PreparedCriteria.bind(...)填入实际的值。
+ * 例如：new Criteria<User>(User.class).eq("name", BindSlot.of("name")).eq("age", BindSlot.of(0)).prepare()
+ *
+ * @author xiech
+ * @date 2020-08-23 10:05
+ */
+public final class BindSlot {
+    private final String name;
+    private final int position;
+
+    private BindSlot(String name, int position) {
+        this.name = name;
+        this.position = position;
+    }
+
+    /**
+     * 命名的占位，通过PreparedCriteria.bind(Map)填入
+     *
+     * @param name 名称
+     * @return
+     */
+    public static BindSlot of(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new CriteriaException("bind slot name can`t be empty");
+        }
+        return new BindSlot(name, -1);
+    }
+
+    /**
+     * 按位置的占位，通过PreparedCriteria.bind(Object...)填入
+     *
+     * @param position 在bind(Object...)参数里面的索引，从0开始
+     * @return
+     */
+    public static BindSlot of(int position) {
+        if (position < 0) {
+            throw new CriteriaException("bind slot position can`t be negative: " + position);
+        }
+        return new BindSlot(null, position);
+    }
+
+    /**
+     * @return 按位置的占位返回null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 命名的占位返回-1
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean isNamed() {
+        return name != null;
+    }
+
+    @Override
+    public String toString() {
+        return isNamed() ? ":" + name : "?" + position;
+    }
+}
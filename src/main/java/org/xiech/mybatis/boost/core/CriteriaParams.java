@@ -0,0 +1,198 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.core.constant.SqlConstant;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Criteria的sql参数：按添加顺序存放在数组里面，key为param0、param1...（预先生成并驻留），
+ * 对外是一个只读的Map，mybatis通过#{params.paramN}取值时直接按下标读取，不需要计算hash。
+ * Criteria只在一个线程里面构建，所以不是线程安全的
+ *
+ * @author xiech
+ * @date 2020-08-22 15:20
+ */
+public final class CriteriaParams extends AbstractMap<String, Object> {
+    private static final int DEFAULT_CAPACITY = 8;
+    /**
+     * 预先生成的key，超出时再拼接
+     */
+    private static final String[] KEYS = new String[1024];
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEYS[i] = (SqlConstant.PARAM + i).intern();
+        }
+    }
+
+    private Object[] values = new Object[DEFAULT_CAPACITY];
+    private int size;
+    private EntrySet entrySet;
+
+    /**
+     * 第index个参数的key
+     *
+     * @param index
+     * @return paramN
+     */
+    public static String key(int index) {
+        return index < KEYS.length ? KEYS[index] : SqlConstant.PARAM + index;
+    }
+
+    /**
+     * 解析key的下标
+     *
+     * @param key
+     * @return 不是paramN格式或者超出范围时返回-1
+     */
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        String name = (String) key;
+        int prefixLength = SqlConstant.PARAM.length();
+        if (name.length() <= prefixLength || name.length() > prefixLength + 10 || !name.startsWith(SqlConstant.PARAM)
+                || (name.charAt(prefixLength) == '0' && name.length() > prefixLength + 1)) {
+            return -1;
+        }
+        long index = 0;
+        for (int i = prefixLength; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index < this.size ? (int) index : -1;
+    }
+
+    /**
+     * 添加一个参数
+     *
+     * @param value
+     * @return 参数的下标
+     */
+    int add(Object value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.size << 1);
+        }
+        this.values[this.size] = value;
+        return this.size++;
+    }
+
+    /**
+     * 替换第index个参数
+     *
+     * @param index
+     * @param value
+     */
+    void set(int index, Object value) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + this.size);
+        }
+        this.values[index] = value;
+    }
+
+    /**
+     * 复制当前的参数
+     *
+     * @return
+     */
+    CriteriaParams copy() {
+        CriteriaParams copy = new CriteriaParams();
+        copy.values = Arrays.copyOf(this.values, Math.max(this.size, DEFAULT_CAPACITY));
+        copy.size = this.size;
+        return copy;
+    }
+
+    /**
+     * 只保留前size个参数
+     *
+     * @param size
+     */
+    void truncate(int size) {
+        if (size < this.size) {
+            Arrays.fill(this.values, size, this.size, null);
+            this.size = size;
+        }
+    }
+
+    /**
+     * 清除所有参数，保留数组的容量
+     */
+    void reset() {
+        Arrays.fill(this.values, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * 按下标读取参数
+     *
+     * @param index
+     * @return
+     */
+    public Object getValue(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + this.size);
+        }
+        return this.values[index];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : this.values[index];
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        EntrySet entrySet = this.entrySet;
+        if (entrySet == null) {
+            this.entrySet = entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+        @Override
+        public int size() {
+            return CriteriaParams.this.size;
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new Iterator<Entry<String, Object>>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < CriteriaParams.this.size;
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int i = this.index++;
+                    return new SimpleImmutableEntry<>(key(i), CriteriaParams.this.values[i]);
+                }
+            };
+        }
+    }
+}
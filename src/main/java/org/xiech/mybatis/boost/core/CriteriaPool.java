@@ -0,0 +1,168 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * 按线程、实体类复用Criteria，适用于高并发的请求路径（可选，直接new Criteria也可以）。
+ * 每个线程的每个实体类保留一个实例，归还时clear()（保留已分配的容量）；同一个线程嵌套借用同一个实体类时，
+ * 第二个是新建的实例，归还时直接丢弃。配合try-with-resources使用：
+ * <pre>
+ * try (CriteriaPool.Lease&lt;Criteria&lt;User&gt;&gt; lease = CriteriaPool.criteria(User.class)) {
+ *     userMapper.select(lease.get().select("id").eq("name", name));
+ * }
+ * </pre>
+ * 归还之后不能再使用该Criteria以及它生成的sql参数（getParams()），需要保留时使用prepare()
+ *
+ * @author xiech
+ * @date 2020-08-24 09:30
+ */
+public final class CriteriaPool {
+    private static final Pool<Criteria<?>> CRITERIA = new Pool<>(Criteria::new);
+    private static final Pool<LambdaCriteria<?>> LAMBDA_CRITERIA = new Pool<>(LambdaCriteria::new);
+    private static final Pool<InsertCriteria<?>> INSERT_CRITERIA = new Pool<>(InsertCriteria::new);
+    private static final Pool<LambdaInsertCriteria<?>> LAMBDA_INSERT_CRITERIA = new Pool<>(LambdaInsertCriteria::new);
+    private static final Pool<UpdateCriteria<?>> UPDATE_CRITERIA = new Pool<>(UpdateCriteria::new);
+    private static final Pool<LambdaUpdateCriteria<?>> LAMBDA_UPDATE_CRITERIA = new Pool<>(LambdaUpdateCriteria::new);
+
+    private CriteriaPool() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Lease<Criteria<T>> criteria(Class<T> beanClass) {
+        return (Lease<Criteria<T>>) (Lease<?>) CRITERIA.acquire(beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Lease<LambdaCriteria<T>> lambdaCriteria(Class<T> beanClass) {
+        return (Lease<LambdaCriteria<T>>) (Lease<?>) LAMBDA_CRITERIA.acquire(beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Lease<InsertCriteria<T>> insertCriteria(Class<T> beanClass) {
+        return (Lease<InsertCriteria<T>>) (Lease<?>) INSERT_CRITERIA.acquire(beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Lease<LambdaInsertCriteria<T>> lambdaInsertCriteria(Class<T> beanClass) {
+        return (Lease<LambdaInsertCriteria<T>>) (Lease<?>) LAMBDA_INSERT_CRITERIA.acquire(beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Lease<UpdateCriteria<T>> updateCriteria(Class<T> beanClass) {
+        return (Lease<UpdateCriteria<T>>) (Lease<?>) UPDATE_CRITERIA.acquire(beanClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Lease<LambdaUpdateCriteria<T>> lambdaUpdateCriteria(Class<T> beanClass) {
+        return (Lease<LambdaUpdateCriteria<T>>) (Lease<?>) LAMBDA_UPDATE_CRITERIA.acquire(beanClass);
+    }
+
+    /**
+     * 释放当前线程缓存的所有Criteria，线程池的线程结束使用前调用，避免ThreadLocal持有实体类
+     */
+    public static void clear() {
+        CRITERIA.clear();
+        LAMBDA_CRITERIA.clear();
+        INSERT_CRITERIA.clear();
+        LAMBDA_INSERT_CRITERIA.clear();
+        UPDATE_CRITERIA.clear();
+        LAMBDA_UPDATE_CRITERIA.clear();
+    }
+
+    /**
+     * 借用的Criteria，close()时归还，每次借用都是新的Lease，归还之后不能通过它再使用Criteria
+     *
+     * @param <C> Criteria的类型
+     */
+    public static final class Lease<C extends AbstractCriteria<?, ?>> implements AutoCloseable {
+        private final C criteria;
+        /**
+         * 池里面的实例，嵌套借用时新建的实例不放回池里面，为null
+         */
+        private final Pooled<C> pooled;
+        private boolean closed;
+
+        Lease(C criteria, Pooled<C> pooled) {
+            this.criteria = criteria;
+            this.pooled = pooled;
+        }
+
+        /**
+         * 借用的Criteria，已经是clear()之后的状态
+         *
+         * @return
+         */
+        public C get() {
+            if (this.closed) {
+                throw new CriteriaException("criteria has been released");
+            }
+            return this.criteria;
+        }
+
+        /**
+         * 归还Criteria，重复调用没有影响
+         */
+        @Override
+        public void close() {
+            if (!this.closed) {
+                this.closed = true;
+                if (this.pooled != null) {
+                    this.criteria.clear();
+                    this.pooled.leased = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 池里面的Criteria以及是否已经借出
+     *
+     * @param <C> Criteria的类型
+     */
+    private static final class Pooled<C extends AbstractCriteria<?, ?>> {
+        private final C criteria;
+        private boolean leased;
+
+        Pooled(C criteria) {
+            this.criteria = criteria;
+        }
+    }
+
+    /**
+     * 一种Criteria的线程本地池
+     *
+     * @param <C> Criteria的类型
+     */
+    private static final class Pool<C extends AbstractCriteria<?, ?>> {
+        private final BiFunction<MetadataContext, Class<?>, C> factory;
+        private final ThreadLocal<Map<Class<?>, Pooled<C>>> pool = ThreadLocal.withInitial(IdentityHashMap::new);
+
+        Pool(BiFunction<MetadataContext, Class<?>, C> factory) {
+            this.factory = factory;
+        }
+
+        Lease<C> acquire(Class<?> beanClass) {
+            MetadataContext context = Reflections.getDefaultContext();
+            Map<Class<?>, Pooled<C>> pool = this.pool.get();
+            Pooled<C> pooled = pool.get(beanClass);
+            if (pooled == null || pooled.criteria.getMetadataContext() != context) {
+                // 第一次使用或者默认的上下文已经改变
+                pooled = new Pooled<>(this.factory.apply(context, beanClass));
+                pool.put(beanClass, pooled);
+            } else if (pooled.leased) {
+                // 嵌套借用
+                return new Lease<>(this.factory.apply(context, beanClass), null);
+            }
+            pooled.leased = true;
+            return new Lease<>(pooled.criteria, pooled);
+        }
+
+        void clear() {
+            this.pool.remove();
+        }
+    }
+}
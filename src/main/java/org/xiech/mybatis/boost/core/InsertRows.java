@@ -0,0 +1,151 @@
+package org.xiech.mybatis.boost.core;
+
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.xiech.mybatis.boost.annotation.GenerationType;
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.constant.SqlConstant;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多行insert的列、参数和sql片段，列的规则与Reflections.getInsertSQL一致：@Id标记的主键中，自增主键不插入，
+ * 序列主键使用序列.NEXTVAL，UUID、METHOD主键使用#{@static@...}表达式；外键取外键对象的属性，其他列（包括默认的主键id）取实体的属性值
+ *
+ * @author xiech
+ * @date 2020-08-26 10:30
+ */
+final class InsertRows {
+    private static final String NEXTVAL = ".NEXTVAL";
+    /**
+     * 行之间的分隔，与VALUES子句的括号组成：VALUES (...)\n, (...)，与SQL.ADD_ROW()的输出一致
+     */
+    private static final String ROW_DELIMITER = ")\n, (";
+
+    private InsertRows() {
+    }
+
+    /**
+     * 插入的列，按照TableDesc的顺序
+     *
+     * @param tableDesc
+     * @return
+     */
+    static List<TableColumnDesc> columns(TableDesc tableDesc) {
+        List<TableColumnDesc> columns = new ArrayList<>(tableDesc.getColumns().size());
+        for (TableColumnDesc column : tableDesc.getColumns().values()) {
+            if (!column.isPrimaryKey() || column.getIdGenerationType() != GenerationType.AUTO) {
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 每一行的参数个数
+     *
+     * @param columns
+     * @return
+     */
+    static int paramCount(List<TableColumnDesc> columns) {
+        int count = 0;
+        for (TableColumnDesc column : columns) {
+            if (generatedValue(column) == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 多行的VALUES片段（不包含最外面的括号）：{0}, {1})\n, ({2}, {3}
+     *
+     * @param columns
+     * @param rowCount
+     * @return
+     */
+    static String template(List<TableColumnDesc> columns, int rowCount) {
+        StringBuilder sql = new StringBuilder(rowCount * columns.size() * 8);
+        int index = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (row > 0) {
+                sql.append(ROW_DELIMITER);
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sql.append(SqlConstant.COMMA);
+                }
+                String generatedValue = generatedValue(columns.get(i));
+                if (generatedValue != null) {
+                    sql.append(generatedValue);
+                } else {
+                    sql.append(SqlConstant.DELIM_START).append(index++).append(SqlConstant.DELIM_END);
+                }
+            }
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 按行、列的顺序读取参数
+     *
+     * @param columns
+     * @param rows
+     * @return
+     */
+    static Object[] params(List<TableColumnDesc> columns, List<?> rows) {
+        Object[] params = new Object[rows.size() * paramCount(columns)];
+        int index = 0;
+        for (Object row : rows) {
+            for (TableColumnDesc column : columns) {
+                if (generatedValue(column) != null) {
+                    continue;
+                }
+                params[index++] = value(row, column);
+            }
+        }
+        return params;
+    }
+
+    /**
+     * 列的值：外键取外键对象的属性，其他列取实体的属性
+     *
+     * @param row
+     * @param column
+     * @return
+     */
+    static Object value(Object row, TableColumnDesc column) {
+        if (column.getForeignBeanClass() != null) {
+            return SystemMetaObject.forObject(row).getValue(column.getFieldName() + SqlConstant.DOT + column.getForeignBeanFieldName());
+        }
+        return column.getPropertyAccessor().get(row);
+    }
+
+    /**
+     * 是否是主键，默认的主键（id）没有标记primaryKey
+     */
+    static boolean isPrimaryKey(TableDesc tableDesc, TableColumnDesc column) {
+        return column.isPrimaryKey() || column == tableDesc.getPrimaryKey();
+    }
+
+    /**
+     * 由数据库或者表达式生成的主键值，与Reflections.getInsertSQL一致：序列.NEXTVAL、#{@static@UUID}、#{@static@生成器}，
+     * 不是参数；其他列返回null
+     */
+    static String generatedValue(TableColumnDesc column) {
+        if (!column.isPrimaryKey()) {
+            return null;
+        }
+        switch (column.getIdGenerationType()) {
+            case SEQUENCE:
+                return column.getIdGenerator() + NEXTVAL;
+            case UUID:
+                return "#{@static@UUID}";
+            case METHOD:
+                return "#{@static@" + column.getIdGenerator() + "}";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
+import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 键集分页（seek）：按order by的列加上主键排序，下一页的条件是排序列的值大于（倒序时小于）上一页最后一行的值，
+ * 不需要offset，第N页和第1页的代价相同。排序列只能是主表的列，并且值不能为null
+ *
+ * @author xiech
+ * @date 2020-08-25 10:40
+ */
+final class Keyset {
+    /**
+     * order by的列（属性名、列名，可以带有主表的别名）及方向，按添加顺序
+     */
+    private final List<String> orderColumns = new ArrayList<>();
+    private final List<Boolean> orderAscs = new ArrayList<>();
+    private boolean paged;
+
+    /**
+     * 记录order by的列
+     *
+     * @param column 属性名、列名
+     * @param asc    true正序、false倒序
+     */
+    void orderBy(String column, boolean asc) {
+        this.orderColumns.add(column);
+        this.orderAscs.add(asc);
+    }
+
+    void clear() {
+        this.orderColumns.clear();
+        this.orderAscs.clear();
+        this.paged = false;
+    }
+
+    /**
+     * 添加键集分页的条件、主键排序以及limit
+     *
+     * @param criteria 查询的Criteria
+     * @param alias    主表的别名
+     * @param token    上一页的nextPageToken，为null时查询第一页
+     * @param size     每页的数量
+     */
+    void pageAfter(AbstractCriteria<?, ?> criteria, String alias, String token, int size) {
+        if (size <= 0) {
+            throw new CriteriaException(criteria.getBeanClass().getName() + ": page size must be positive");
+        }
+        if (this.paged) {
+            throw new CriteriaException(criteria.getBeanClass().getName() + ": pageAfter can only be called once");
+        }
+        List<TableColumnDesc> columns = new ArrayList<>();
+        List<Boolean> ascs = new ArrayList<>();
+        boolean primaryKeyOrdered = keyColumns(criteria, alias, columns, ascs);
+        String prefix = alias + SqlConstant.DOT;
+        if (token != null) {
+            Object[] values = KeysetToken.decode(token, fingerprint(criteria.getTableDesc(), columns, ascs), columns.size());
+            boolean rowValue = criteria.getMetadataContext().isKeysetRowValue() && !ascs.contains(!ascs.get(0));
+            StringBuilder shapeKey = new StringBuilder(rowValue ? "keyset(" : "keyset[");
+            for (int i = 0; i < columns.size(); i++) {
+                shapeKey.append(columns.get(i).getFieldName()).append(ascs.get(i) ? SqlConstant.ASC : SqlConstant.DESC).append(',');
+            }
+            String condition = rowValue ? rowValueCondition(prefix, columns, ascs.get(0)) : expandedCondition(prefix, columns, ascs);
+            criteria.addSegment(SqlClause.WHERE, shapeKey.toString(), () -> condition, values);
+        }
+        if (!primaryKeyOrdered) {
+            TableColumnDesc primaryKey = columns.get(columns.size() - 1);
+            String order = ascs.get(ascs.size() - 1) ? SqlConstant.ASC : SqlConstant.DESC;
+            criteria.addSegment(SqlClause.ORDER_BY, primaryKey.getFieldName() + order, () -> prefix + primaryKey.getDelimiterColumnName() + order);
+        }
+        criteria.addPageSegments(size, -1);
+        this.paged = true;
+    }
+
+    /**
+     * 下一页的令牌
+     *
+     * @param criteria 查询的Criteria
+     * @param alias    主表的别名
+     * @param lastRow  当前页的最后一行
+     * @return 当前页没有数据（lastRow为null）时返回null
+     */
+    String nextPageToken(AbstractCriteria<?, ?> criteria, String alias, Object lastRow) {
+        if (lastRow == null) {
+            return null;
+        }
+        List<TableColumnDesc> columns = new ArrayList<>();
+        List<Boolean> ascs = new ArrayList<>();
+        keyColumns(criteria, alias, columns, ascs);
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            TableColumnDesc column = columns.get(i);
+            values[i] = column.getPropertyAccessor().get(lastRow);
+            if (values[i] == null) {
+                throw new CriteriaException(criteria.getBeanClass().getName() + ": page key \"" + column.getFieldName() + "\" is null");
+            }
+        }
+        return KeysetToken.encode(fingerprint(criteria.getTableDesc(), columns, ascs), values);
+    }
+
+    /**
+     * 排序列：order by的列，加上主键（没有按主键排序时，方向与最后一个排序列相同）
+     *
+     * @return order by里面是否已经有主键
+     */
+    private boolean keyColumns(AbstractCriteria<?, ?> criteria, String alias, List<TableColumnDesc> columns, List<Boolean> ascs) {
+        TableDesc tableDesc = criteria.getTableDesc();
+        String prefix = alias + SqlConstant.DOT;
+        for (int i = 0; i < this.orderColumns.size(); i++) {
+            String column = this.orderColumns.get(i);
+            if (column.startsWith(prefix)) {
+                column = column.substring(prefix.length());
+            }
+            TableColumnDesc tableColumnDesc = tableDesc.findColumn(column);
+            if (tableColumnDesc == null) {
+                throw new CriteriaException(criteria.getBeanClass().getName() + ": keyset pagination only supports columns of \""
+                        + tableDesc.getTableName() + "\", but found \"" + column + "\"");
+            }
+            columns.add(tableColumnDesc);
+            ascs.add(this.orderAscs.get(i));
+            if (tableColumnDesc == tableDesc.getPrimaryKey()) {
+                // 主键之后的排序列不影响顺序
+                return true;
+            }
+        }
+        TableColumnDesc primaryKey = tableDesc.getPrimaryKey();
+        if (primaryKey == null) {
+            throw new CriteriaException(criteria.getBeanClass().getName() + ": keyset pagination needs a primary key");
+        }
+        columns.add(primaryKey);
+        ascs.add(ascs.isEmpty() || ascs.get(ascs.size() - 1));
+        return false;
+    }
+
+    /**
+     * 排序列及方向的指纹，令牌只能用于相同排序的查询
+     */
+    private static int fingerprint(TableDesc tableDesc, List<TableColumnDesc> columns, List<Boolean> ascs) {
+        int hash = tableDesc.getTableName().hashCode();
+        for (int i = 0; i < columns.size(); i++) {
+            hash = hash * 31 + columns.get(i).getColumnName().hashCode();
+            hash = hash * 31 + (ascs.get(i) ? 1 : 2);
+        }
+        return hash;
+    }
+
+    /**
+     * (t.a, t.b) > ({0}, {1})
+     */
+    private static String rowValueCondition(String prefix, List<TableColumnDesc> columns, boolean asc) {
+        StringBuilder left = new StringBuilder(SqlConstant.BRACKET_START);
+        StringBuilder right = new StringBuilder(SqlConstant.BRACKET_START);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                left.append(SqlConstant.COMMA);
+                right.append(SqlConstant.COMMA);
+            }
+            left.append(prefix).append(columns.get(i).getDelimiterColumnName());
+            right.append(SqlConstant.DELIM_START).append(i).append(SqlConstant.DELIM_END);
+        }
+        return left.append(SqlConstant.BRACKET_END).append(asc ? SqlConstant.GT : SqlConstant.LT)
+                .append(right).append(SqlConstant.BRACKET_END).toString();
+    }
+
+    /**
+     * t.a > {0} OR (t.a = {0} AND t.b > {1})，同一个形参重复使用，参数只传一次
+     */
+    private static String expandedCondition(String prefix, List<TableColumnDesc> columns, List<Boolean> ascs) {
+        StringBuilder sql = new StringBuilder(SqlConstant.BRACKET_START);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(SqlConstant.OR).append(SqlConstant.BRACKET_START);
+            }
+            for (int j = 0; j < i; j++) {
+                sql.append(prefix).append(columns.get(j).getDelimiterColumnName()).append(SqlConstant.EQ)
+                        .append(SqlConstant.DELIM_START).append(j).append(SqlConstant.DELIM_END).append(SqlConstant.AND);
+            }
+            sql.append(prefix).append(columns.get(i).getDelimiterColumnName()).append(ascs.get(i) ? SqlConstant.GT : SqlConstant.LT)
+                    .append(SqlConstant.DELIM_START).append(i).append(SqlConstant.DELIM_END);
+            if (i > 0) {
+                sql.append(SqlConstant.BRACKET_END);
+            }
+        }
+        return sql.append(SqlConstant.BRACKET_END).toString();
+    }
+}
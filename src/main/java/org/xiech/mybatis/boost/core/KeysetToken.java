@@ -0,0 +1,229 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * 键集分页的续页令牌：上一页最后一行的排序列的值，按类型编码后转为url安全的Base64字符串。
+ * 不使用java序列化，解析客户端传回的令牌时不会创建任意的对象；令牌里面带有排序列的指纹，不能用于其他排序的查询
+ *
+ * @author xiech
+ * @date 2020-08-25 10:10
+ */
+final class KeysetToken {
+    private static final int VERSION = 1;
+
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int SHORT = 4;
+    private static final int BYTE = 5;
+    private static final int DOUBLE = 6;
+    private static final int FLOAT = 7;
+    private static final int BIG_DECIMAL = 8;
+    private static final int BIG_INTEGER = 9;
+    private static final int BOOLEAN = 10;
+    private static final int CHARACTER = 11;
+    private static final int TIMESTAMP = 12;
+    private static final int SQL_DATE = 13;
+    private static final int SQL_TIME = 14;
+    private static final int DATE = 15;
+    private static final int LOCAL_DATE = 16;
+    private static final int LOCAL_DATE_TIME = 17;
+    private static final int LOCAL_TIME = 18;
+    private static final int OFFSET_DATE_TIME = 19;
+    private static final int INSTANT = 20;
+    private static final int UUID_VALUE = 21;
+
+    private KeysetToken() {
+    }
+
+    /**
+     * 生成令牌
+     *
+     * @param fingerprint 排序列的指纹
+     * @param values      排序列的值，不能为null
+     * @return
+     */
+    static String encode(int fingerprint, Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + values.length * 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(fingerprint);
+            out.writeShort(values.length);
+            for (Object value : values) {
+                write(out, value);
+            }
+        } catch (IOException e) {
+            throw new CriteriaException(e.getMessage());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * 解析令牌
+     *
+     * @param token       encode生成的令牌
+     * @param fingerprint 当前查询的排序列的指纹
+     * @param count       排序列的个数
+     * @return
+     */
+    static Object[] decode(String token, int fingerprint, int count) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readUnsignedByte() != VERSION || in.readInt() != fingerprint || in.readUnsignedShort() != count) {
+                throw new CriteriaException("page token doesn`t match the query: " + token);
+            }
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = read(in);
+            }
+            if (in.read() >= 0) {
+                throw new CriteriaException("invalid page token: " + token);
+            }
+            return values;
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof CriteriaException) {
+                throw (CriteriaException) e;
+            }
+            throw new CriteriaException("invalid page token: " + token);
+        }
+    }
+
+    private static void write(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) value);
+        } else if (value instanceof java.sql.Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((java.sql.Timestamp) value).getTime());
+            out.writeInt(((java.sql.Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(SQL_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof java.sql.Time) {
+            out.writeByte(SQL_TIME);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(LOCAL_TIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof OffsetDateTime) {
+            out.writeByte(OFFSET_DATE_TIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Instant) {
+            out.writeByte(INSTANT);
+            out.writeUTF(value.toString());
+        } else if (value instanceof UUID) {
+            out.writeByte(UUID_VALUE);
+            out.writeLong(((UUID) value).getMostSignificantBits());
+            out.writeLong(((UUID) value).getLeastSignificantBits());
+        } else {
+            throw new CriteriaException("unsupported page key type: " + (value == null ? "null" : value.getClass().getName()));
+        }
+    }
+
+    private static Object read(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case STRING:
+                return in.readUTF();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case BIG_DECIMAL:
+                return new BigDecimal(in.readUTF());
+            case BIG_INTEGER:
+                return new BigInteger(in.readUTF());
+            case BOOLEAN:
+                return in.readBoolean();
+            case CHARACTER:
+                return in.readChar();
+            case TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case SQL_DATE:
+                return new java.sql.Date(in.readLong());
+            case SQL_TIME:
+                return new java.sql.Time(in.readLong());
+            case DATE:
+                return new Date(in.readLong());
+            case LOCAL_DATE:
+                return LocalDate.parse(in.readUTF());
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse(in.readUTF());
+            case LOCAL_TIME:
+                return LocalTime.parse(in.readUTF());
+            case OFFSET_DATE_TIME:
+                return OffsetDateTime.parse(in.readUTF());
+            case INSTANT:
+                return Instant.parse(in.readUTF());
+            case UUID_VALUE:
+                return new UUID(in.readLong(), in.readLong());
+            default:
+                throw new IOException("unknown type: " + type);
+        }
+    }
+}
@@ -10,7 +10,15 @@ package org.xiech.mybatis.boost.core;
 public class LambdaCriteria<T> extends AbstractLambdaSelectCriteria<T, LambdaCriteria<T>> {
 
     public <T> LambdaCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    /**
+     * @param metadataContext 元数据上下文，表名、列名按照它的命名规则和分隔符生成
+     * @param beanClass       实体类的class
+     */
+    public <T> LambdaCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
     }
 
     @Override
@@ -10,7 +10,15 @@ package org.xiech.mybatis.boost.core;
 public class LambdaInsertCriteria<T> extends AbstractLambdaInsertCriteria<T, LambdaInsertCriteria<T>> {
 
     public <T> LambdaInsertCriteria(Class<T> beanClass) {
-        super(beanClass);
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    /**
+     * @param metadataContext 元数据上下文，表名、列名按照它的命名规则和分隔符生成
+     * @param beanClass       实体类的class
+     */
+    public <T> LambdaInsertCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
     }
 
     @Override
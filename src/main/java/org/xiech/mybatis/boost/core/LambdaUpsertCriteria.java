@@ -0,0 +1,28 @@
+package org.xiech.mybatis.boost.core;
+
+
+/**
+ * SQL语句拼接的工具类，适用于mybatis的provider对象
+ *
+ * @author xiech
+ * @date 2020-08-27 16:10
+ */
+public class LambdaUpsertCriteria<T> extends AbstractLambdaUpsertCriteria<T, LambdaUpsertCriteria<T>> {
+
+    public <T> LambdaUpsertCriteria(Class<T> beanClass) {
+        this(Reflections.getDefaultContext(), beanClass);
+    }
+
+    /**
+     * @param metadataContext 元数据上下文，表名、列名按照它的命名规则和分隔符生成
+     * @param beanClass       实体类的class
+     */
+    public <T> LambdaUpsertCriteria(MetadataContext metadataContext, Class<T> beanClass) {
+        super(metadataContext, beanClass);
+    }
+
+    @Override
+    public LambdaUpsertCriteria getSelf() {
+        return this;
+    }
+}
@@ -0,0 +1,580 @@
+package org.xiech.mybatis.boost.core;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xiech.mybatis.boost.annotation.Column;
+import org.xiech.mybatis.boost.annotation.GenerationType;
+import org.xiech.mybatis.boost.annotation.Id;
+import org.xiech.mybatis.boost.annotation.Table;
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.bean.WarmUpReport;
+import org.xiech.mybatis.boost.core.constant.SqlDialect;
+import org.xiech.mybatis.boost.core.constant.SqlInMode;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+import org.xiech.mybatis.boost.util.scan.ClassScanUtils;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 实体类映射的元数据上下文：持有字段命名规则、分隔符以及按照该配置解析出来的TableDesc缓存（包含预生成的表名、列名和SQL语句）。
+ * 同一个JVM连接多个数据库时（例如MySQL使用`分隔符、Oracle使用大写的"分隔符），每个数据库使用各自的MetadataContext，缓存互不影响
+ *
+ * @author xiech
+ * @date 2020-08-17 09:40
+ */
+public class MetadataContext {
+
+    private final Reflections.DatabaseColumnNameStyle databaseColumnNameStyle;
+    private final String databaseDelimiter;
+
+    /**
+     * TableDesc的缓存，直接挂在实体类的Class上面，随着Class（及其ClassLoader）一起被回收，不同ClassLoader加载的同名类互不影响。
+     * 同一个实体类只会由一个线程解析，其他线程等待同一个FutureTask的结果
+     */
+    private final ClassValue<FutureTask<TableDesc>> tableDescCache = new ClassValue<FutureTask<TableDesc>>() {
+        @Override
+        protected FutureTask<TableDesc> computeValue(Class<?> beanClass) {
+            return new FutureTask<>(() -> buildTableDesc(beanClass));
+        }
+    };
+    /**
+     * 编译期生成的TableDesc注册表，所有MetadataContext共用，第一次使用时通过ServiceLoader加载
+     */
+    private static volatile List<TableDescProvider> TABLE_DESC_PROVIDERS;
+    /**
+     * 磁盘快照，没有设置时为null
+     */
+    private volatile MetadataSnapshot snapshot;
+    /**
+     * 已经解析过的实体类，用于生成快照；弱引用，不影响实体类的回收
+     */
+    private final Map<Class<?>, Boolean> resolvedClasses = Collections.synchronizedMap(new WeakHashMap<>());
+    /**
+     * Criteria的sql形状缓存，列名由当前配置决定，所以每个上下文单独一份
+     */
+    private final SqlShapeCache shapeCache = new SqlShapeCache();
+    /**
+     * in、not in条件默认的传参方式，Criteria可以单独设置
+     */
+    private volatile SqlInMode inMode = SqlInMode.COLLECTION;
+    /**
+     * in条件的值超过该数量时拆分为多次查询（需要注册ChunkInterceptor），小于等于0时不拆分
+     */
+    private volatile int inChunkSize;
+    /**
+     * 一条语句最多的参数个数，多行insert按照它拆分批次；默认2000，低于常见数据库的上限（SQL Server为2100）
+     */
+    private volatile int maxBindParams = 2000;
+    /**
+     * 键集分页是否使用行值比较(a, b) > (?, ?)，默认展开为a > ? OR (a = ? AND b > ?)，所有数据库都支持
+     */
+    private volatile boolean keysetRowValue;
+    /**
+     * 分页使用的方言，Criteria可以单独设置
+     */
+    private volatile SqlDialect dialect = SqlDialect.MYSQL;
+
+    /**
+     * 使用默认配置：驼峰转下划线小写形式，没有分隔符
+     */
+    public MetadataContext() {
+        this(Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE, "");
+    }
+
+    /**
+     * @param databaseColumnNameStyle 字段映射到数据库的命名规则
+     * @param databaseDelimiter       表名、列名的分隔符
+     */
+    public MetadataContext(Reflections.DatabaseColumnNameStyle databaseColumnNameStyle, String databaseDelimiter) {
+        if (databaseColumnNameStyle == null) {
+            throw new CriteriaException("databaseColumnNameStyle can`t be null");
+        }
+        this.databaseColumnNameStyle = databaseColumnNameStyle;
+        this.databaseDelimiter = databaseDelimiter == null ? "" : databaseDelimiter;
+    }
+
+    public Reflections.DatabaseColumnNameStyle getDatabaseColumnNameStyle() {
+        return databaseColumnNameStyle;
+    }
+
+    public String getDatabaseDelimiter() {
+        return databaseDelimiter;
+    }
+
+    public SqlInMode getInMode() {
+        return inMode;
+    }
+
+    /**
+     * 设置in、not in条件默认的传参方式
+     *
+     * @param inMode
+     */
+    public void setInMode(SqlInMode inMode) {
+        if (inMode == null) {
+            throw new CriteriaException("inMode can`t be null");
+        }
+        this.inMode = inMode;
+    }
+
+    public int getInChunkSize() {
+        return inChunkSize;
+    }
+
+    /**
+     * 设置in条件拆分查询的阈值：值的数量（去重后）超过该阈值时，每inChunkSize个值执行一次查询，
+     * 由ChunkInterceptor按顺序合并结果；拆分后toString()会抛出异常，必须注册ChunkInterceptor（或者按chunk(index)依次执行），所以默认不拆分
+     *
+     * @param inChunkSize 小于等于0时不拆分
+     */
+    public void setInChunkSize(int inChunkSize) {
+        this.inChunkSize = inChunkSize;
+    }
+
+    public int getMaxBindParams() {
+        return maxBindParams;
+    }
+
+    /**
+     * 设置一条语句最多的参数个数，多行insert超过时拆分为多条语句（需要注册ChunkInterceptor）
+     *
+     * @param maxBindParams 小于等于0时不限制
+     */
+    public void setMaxBindParams(int maxBindParams) {
+        this.maxBindParams = maxBindParams;
+    }
+
+    public boolean isKeysetRowValue() {
+        return keysetRowValue;
+    }
+
+    /**
+     * 设置键集分页是否使用行值比较，只有所有排序列的方向都相同时才会使用
+     *
+     * @param keysetRowValue
+     */
+    public void setKeysetRowValue(boolean keysetRowValue) {
+        this.keysetRowValue = keysetRowValue;
+    }
+
+    public SqlDialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * 设置分页默认使用的方言
+     *
+     * @param dialect
+     */
+    public void setDialect(SqlDialect dialect) {
+        if (dialect == null) {
+            throw new CriteriaException("dialect can`t be null");
+        }
+        this.dialect = dialect;
+    }
+
+    public SqlShapeCache getShapeCache() {
+        return shapeCache;
+    }
+
+    public MetadataSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 设置磁盘快照，之后第一次解析的实体类优先从快照中读取，已经解析过的实体类不受影响
+     *
+     * @param snapshot 快照的命名规则、分隔符必须与当前的配置一致
+     */
+    public void setSnapshot(MetadataSnapshot snapshot) {
+        if (snapshot != null && (snapshot.getDatabaseColumnNameStyle() != this.databaseColumnNameStyle
+                || !Objects.equals(snapshot.getDatabaseDelimiter(), this.databaseDelimiter))) {
+            throw new CriteriaException("metadata snapshot was written with " + snapshot.getDatabaseColumnNameStyle()
+                    + " \"" + snapshot.getDatabaseDelimiter() + "\", can`t be used with " + this.databaseColumnNameStyle
+                    + " \"" + this.databaseDelimiter + "\"");
+        }
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * 返回已经解析过的TableDesc，按照实体类名排序
+     *
+     * @return
+     */
+    public List<TableDesc> getResolvedTableDescs() {
+        List<Class<?>> beanClasses;
+        synchronized (this.resolvedClasses) {
+            beanClasses = new ArrayList<>(this.resolvedClasses.keySet());
+        }
+        beanClasses.sort(Comparator.comparing(Class::getName));
+        List<TableDesc> tableDescs = new ArrayList<>(beanClasses.size());
+        for (Class<?> beanClass : beanClasses) {
+            tableDescs.add(getTableDesc(beanClass));
+        }
+        return tableDescs;
+    }
+
+    /**
+     * 通过class获取缓存的TableDesc
+     *
+     * @param beanClass
+     * @return
+     */
+    public TableDesc getTableDesc(Class<? extends Object> beanClass) {
+        if (beanClass != null) {
+            return explainTableDesc(beanClass);
+        }
+        return null;
+    }
+
+    /**
+     * 扫描包（包含子包）下面所有加了@Table注解的实体类，并行解析TableDesc，用于在接收请求之前预热缓存，
+     * 使用当前线程的上下文ClassLoader
+     *
+     * @param packageNames 实体类所在的包名
+     * @return 每个实体类的解析耗时及失败信息
+     */
+    public WarmUpReport warmUp(String... packageNames) {
+        return warmUp(ForkJoinPool.commonPool(), packageNames);
+    }
+
+    /**
+     * 使用指定的ClassLoader扫描包（包含子包）下面所有加了@Table注解的实体类，并行解析TableDesc，用于在接收请求之前预热缓存
+     *
+     * @param classLoader  加载实体类的ClassLoader，例如应用服务器里面web应用的ClassLoader
+     * @param packageNames 实体类所在的包名
+     * @return 每个实体类的解析耗时及失败信息
+     */
+    public WarmUpReport warmUp(ClassLoader classLoader, String... packageNames) {
+        return warmUp(ForkJoinPool.commonPool(), classLoader, packageNames);
+    }
+
+    /**
+     * 扫描包（包含子包）下面所有加了@Table注解的实体类，并行解析TableDesc，用于在接收请求之前预热缓存。
+     * 使用当前线程的上下文ClassLoader，没有时使用加载mybatis-boost的ClassLoader
+     *
+     * @param pool         执行解析的线程池
+     * @param packageNames 实体类所在的包名
+     * @return 每个实体类的解析耗时及失败信息，加载失败的class也会记录在里面
+     */
+    public WarmUpReport warmUp(ForkJoinPool pool, String... packageNames) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return warmUp(pool, classLoader != null ? classLoader : MetadataContext.class.getClassLoader(), packageNames);
+    }
+
+    /**
+     * 使用指定的ClassLoader扫描包（包含子包）下面所有加了@Table注解的实体类，并行解析TableDesc，用于在接收请求之前预热缓存
+     *
+     * @param pool         执行解析的线程池
+     * @param classLoader  加载实体类的ClassLoader
+     * @param packageNames 实体类所在的包名
+     * @return 每个实体类的解析耗时及失败信息，加载失败的class也会记录在里面
+     */
+    public WarmUpReport warmUp(ForkJoinPool pool, ClassLoader classLoader, String... packageNames) {
+        long start = System.nanoTime();
+        List<Class<?>> beanClasses = new ArrayList<>();
+        List<WarmUpReport.Entry> failures = new ArrayList<>();
+        for (String packageName : packageNames) {
+            Set<String> classNames;
+            try {
+                classNames = ClassScanUtils.scanClassNames(classLoader, packageName);
+            } catch (Exception e) {
+                failures.add(new WarmUpReport.Entry(packageName, 0, e));
+                continue;
+            }
+            for (String className : classNames) {
+                try {
+                    Class<?> beanClass = Class.forName(className, false, classLoader);
+                    if (beanClass.isAnnotationPresent(Table.class)) {
+                        beanClasses.add(beanClass);
+                    }
+                } catch (Throwable e) {
+                    failures.add(new WarmUpReport.Entry(className, 0, e));
+                }
+            }
+        }
+        WarmUpReport report = warmUp(pool, beanClasses);
+        report.getEntries().addAll(failures);
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * 并行解析实体类的TableDesc，用于在接收请求之前预热缓存
+     *
+     * @param beanClasses 实体类
+     * @return 每个实体类的解析耗时及失败信息
+     */
+    public WarmUpReport warmUp(Collection<Class<?>> beanClasses) {
+        return warmUp(ForkJoinPool.commonPool(), beanClasses);
+    }
+
+    /**
+     * 并行解析实体类的TableDesc，用于在接收请求之前预热缓存
+     *
+     * @param pool        执行解析的线程池
+     * @param beanClasses 实体类
+     * @return 每个实体类的解析耗时及失败信息，按照beanClasses的顺序排列
+     */
+    public WarmUpReport warmUp(ForkJoinPool pool, Collection<Class<?>> beanClasses) {
+        long start = System.nanoTime();
+        List<ForkJoinTask<WarmUpReport.Entry>> tasks = new ArrayList<>(beanClasses.size());
+        for (Class<?> beanClass : beanClasses) {
+            tasks.add(pool.submit(() -> warmUp(beanClass)));
+        }
+        WarmUpReport report = new WarmUpReport();
+        for (ForkJoinTask<WarmUpReport.Entry> task : tasks) {
+            report.getEntries().add(task.join());
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    private WarmUpReport.Entry warmUp(Class<?> beanClass) {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            if (getTableDesc(beanClass) == null) {
+                failure = new CriteriaException(beanClass.getName() + ": no property can be mapped");
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+        return new WarmUpReport.Entry(beanClass.getName(), System.nanoTime() - start, failure);
+    }
+
+    /**
+     * 通过class获取缓存的TableDesc
+     *
+     * @param beanClass
+     * @return
+     */
+    private TableDesc explainTableDesc(Class<?> beanClass) {
+        FutureTask<TableDesc> task = this.tableDescCache.get(beanClass);
+        if (!task.isDone()) {
+            // 只有第一个线程会真正执行解析，其他线程在get()上等待同一个结果
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CriteriaException(beanClass.getName() + ": resolve table desc interrupted", e);
+        } catch (ExecutionException e) {
+            // 解析失败时不缓存，下次调用时重新解析
+            this.tableDescCache.remove(beanClass);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new CriteriaException(beanClass.getName() + ": resolve table desc error", cause);
+        }
+    }
+
+    /**
+     * 生成完整的TableDesc（包含SQL语句），生成完毕之后才会被其他线程看到
+     *
+     * @param beanClass
+     * @return
+     */
+    private TableDesc buildTableDesc(Class<?> beanClass) {
+        // 优先使用编译期生成的TableDesc，其次是磁盘快照，都没有时才通过反射解析
+        TableDesc tableDesc = findGeneratedTableDesc(beanClass);
+        MetadataSnapshot snapshot = this.snapshot;
+        if (tableDesc == null && snapshot != null) {
+            tableDesc = snapshot.getTableDesc(beanClass);
+        }
+        if (tableDesc == null) {
+            tableDesc = resolveTableDesc(beanClass);
+            if (tableDesc == null) {
+                return null;
+            }
+
+            // 生成SQL语句
+            tableDesc.setInsertSQL(Reflections.getInsertSQL(tableDesc));
+            tableDesc.setUpdateSQL(Reflections.getUpdateSQL(tableDesc));
+            tableDesc.setSelectSQL(Reflections.getSelectSQL(tableDesc));
+            tableDesc.setDeleteSQL(Reflections.getDeleteSQL(tableDesc));
+        }
+        tableDesc.setBeanClass(beanClass);
+        tableDesc.freeze();
+        this.resolvedClasses.put(beanClass, Boolean.TRUE);
+        return tableDesc;
+    }
+
+    /**
+     * 从编译期生成的注册表里面查找TableDesc，注册表生成时的命名规则、分隔符必须与当前的配置一致
+     *
+     * @param beanClass
+     * @return
+     */
+    private TableDesc findGeneratedTableDesc(Class<?> beanClass) {
+        for (TableDescProvider provider : getTableDescProviders()) {
+            if (provider.getDatabaseColumnNameStyle() != this.databaseColumnNameStyle
+                    || !Objects.equals(provider.getDatabaseDelimiter(), this.databaseDelimiter)) {
+                continue;
+            }
+            TableDesc tableDesc = provider.getTableDesc(beanClass);
+            if (tableDesc != null) {
+                return tableDesc;
+            }
+        }
+        return null;
+    }
+
+    private static List<TableDescProvider> getTableDescProviders() {
+        List<TableDescProvider> providers = TABLE_DESC_PROVIDERS;
+        if (providers == null) {
+            providers = new ArrayList<>();
+            for (TableDescProvider provider : ServiceLoader.load(TableDescProvider.class, MetadataContext.class.getClassLoader())) {
+                providers.add(provider);
+            }
+            TABLE_DESC_PROVIDERS = providers;
+        }
+        return providers;
+    }
+
+    /**
+     * 通过class生成TableDesc
+     *
+     * @param beanClass
+     * @return
+     */
+    private TableDesc resolveTableDesc(Class<?> beanClass) {
+        TableDesc tableDesc = null;
+        try {
+            Table tableAnnotation = beanClass.getAnnotation(Table.class);
+            /*if (tableAnnotation == null) {
+                return null;
+            }*/
+            BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+            if (beanInfo.getPropertyDescriptors() == null || beanInfo.getPropertyDescriptors().length == 0) {
+                return null;
+            }
+            tableDesc = new TableDesc();
+            tableDesc.setBeanInfo(beanInfo);
+            tableDesc.setBeanClassName(beanClass.getName());
+            tableDesc.setBeanName(beanClass.getSimpleName());
+            tableDesc.setTableName(tableAnnotation != null && StringUtils.isNotBlank(tableAnnotation.name())
+                    ? tableAnnotation.name() : renameByStyle(tableDesc.getBeanName()));
+            tableDesc.setDelimiterTableName(delimiter(tableDesc.getTableName()));
+
+            Map<String, PropertyDescriptor> propertyDescriptors = new HashMap<>();
+            for (PropertyDescriptor p : beanInfo.getPropertyDescriptors()) {
+                propertyDescriptors.put(p.getName(), p);
+            }
+
+            for (String propertyName : Reflections.sortPropertyNames(propertyDescriptors.keySet())) {
+                TableColumnDesc tableColumnDesc = resolveTableColumnDesc(beanClass, tableDesc, propertyDescriptors.get(propertyName));
+                if (tableColumnDesc != null) {
+                    tableDesc.getColumns().put(tableColumnDesc.getFieldName(), tableColumnDesc);
+
+                    // 设置主键
+                    if (tableColumnDesc.isPrimaryKey()) {
+                        tableDesc.setPrimaryKey(tableColumnDesc);
+                    }
+                }
+            }
+
+            // 没有添加Id注解时，则设置默认主键为id列（如果查找到有id列的话）
+            if (tableDesc.getPrimaryKey() == null) {
+                TableColumnDesc tableColumnDesc = tableDesc.getColumns().entrySet().parallelStream()
+                        .map(x -> x.getValue()).filter(x -> Reflections.ID_DEFAULT.equalsIgnoreCase(x.getFieldName()))
+                        .findFirst().orElse(null);
+                tableDesc.setPrimaryKey(tableColumnDesc);
+            }
+
+        } catch (Exception e) {
+            throw new CriteriaException(beanClass.getName() + ": resolve table desc error", e);
+        }
+
+        return tableDesc;
+    }
+
+    /**
+     * 通过PropertyDescriptor生成BeanColumnDesc
+     *
+     * @param beanClass
+     * @param tableDesc
+     * @param propertyDescriptor
+     * @return
+     */
+    private TableColumnDesc resolveTableColumnDesc(Class<?> beanClass, TableDesc tableDesc, PropertyDescriptor propertyDescriptor) {
+        if (tableDesc == null || propertyDescriptor == null
+                || (propertyDescriptor.getReadMethod() == null && propertyDescriptor.getWriteMethod() == null)
+                || Reflections.POJO_FIELD_EXCLUDE.contains(propertyDescriptor.getName())) {
+            return null;
+        }
+
+        TableColumnDesc tableColumnDesc = new TableColumnDesc();
+        tableColumnDesc.setTableDesc(tableDesc);
+        tableColumnDesc.setFieldName(propertyDescriptor.getName());
+        tableColumnDesc.setPropertyDescriptor(propertyDescriptor);
+
+        // 注解是加在实体类的字段上面的
+        Field field = Reflections.findField(beanClass, propertyDescriptor.getName());
+        Id idAnnotation = field == null ? null : field.getAnnotation(Id.class);
+        Column columnAnnotation = field == null ? null : field.getAnnotation(Column.class);
+        if (idAnnotation != null) {
+            tableColumnDesc.setPrimaryKey(true);
+            tableColumnDesc.setIdGenerationType(idAnnotation.generationType());
+            tableColumnDesc.setIdGenerator(idAnnotation.generator());
+        } else {
+            tableColumnDesc.setIdGenerationType(GenerationType.AUTO);
+        }
+        if (columnAnnotation != null) {
+            tableColumnDesc.setColumnName(StringUtils.isNotBlank(columnAnnotation.name()) ? columnAnnotation.name() : renameByStyle(tableColumnDesc.getFieldName()));
+            tableColumnDesc.setDelimiterColumnName(delimiter(tableColumnDesc.getColumnName()));
+
+            //外键关联属性
+            if (columnAnnotation.foreignBeanClass() != void.class) {
+                tableColumnDesc.setForeignBeanClass(columnAnnotation.foreignBeanClass());
+                tableColumnDesc.setForeignBeanFieldName(columnAnnotation.foreignBeanFieldName());
+            }
+
+            tableColumnDesc.setPrecision(columnAnnotation.precision());
+            tableColumnDesc.setScale(columnAnnotation.scale());
+            tableColumnDesc.setSigned(columnAnnotation.signed());
+            tableColumnDesc.setUnique(columnAnnotation.unique());
+            tableColumnDesc.setNullable(columnAnnotation.nullable());
+            tableColumnDesc.setInsertable(columnAnnotation.insertable());
+            tableColumnDesc.setUpdatable(columnAnnotation.updatable());
+            tableColumnDesc.setSearchable(columnAnnotation.searchable());
+            tableColumnDesc.setClob(columnAnnotation.isClob());
+            tableColumnDesc.setBlob(columnAnnotation.isBlob());
+            tableColumnDesc.setJdbcType(columnAnnotation.jdbcType());
+            tableColumnDesc.setTypeHandler(columnAnnotation.typeHandler());
+        } else {
+            tableColumnDesc.setColumnName(renameByStyle(tableColumnDesc.getFieldName()));
+            tableColumnDesc.setDelimiterColumnName(delimiter(tableColumnDesc.getColumnName()));
+        }
+
+        return tableColumnDesc;
+    }
+
+    private String delimiter(String name) {
+        return Reflections.delimiter(name, this.databaseDelimiter);
+    }
+
+    private String renameByStyle(String name) {
+        return Reflections.renameByStyle(name, this.databaseColumnNameStyle);
+    }
+}
@@ -0,0 +1,338 @@
+package org.xiech.mybatis.boost.core;
+
+import org.apache.ibatis.type.TypeHandler;
+import org.xiech.mybatis.boost.annotation.GenerationType;
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.JDBCType;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * TableDesc的磁盘快照，包含表名、列名的映射以及预生成的SQL语句，用于JVM启动时跳过实体类的反射解析。
+ * 一般在构建时或者预热（Reflections.warmUp）之后通过write()生成，启动时通过load()以内存映射的方式加载，
+ * 然后设置到MetadataContext.setSnapshot()，实体类在第一次使用时才从快照中解码。
+ * <p>
+ * 每个实体类都记录了class文件（包含父类）的CRC32，实体类修改之后该实体类的快照会被忽略，重新通过反射解析
+ *
+ * @author xiech
+ * @date 2020-08-18 10:05
+ */
+public class MetadataSnapshot {
+    private static final int MAGIC = 0x4D42_5344; // MBSD
+    private static final int VERSION = 1;
+
+    private static final int FLAG_PRIMARY_KEY = 1;
+    private static final int FLAG_SIGNED = 1 << 1;
+    private static final int FLAG_UNIQUE = 1 << 2;
+    private static final int FLAG_NULLABLE = 1 << 3;
+    private static final int FLAG_INSERTABLE = 1 << 4;
+    private static final int FLAG_UPDATABLE = 1 << 5;
+    private static final int FLAG_SEARCHABLE = 1 << 6;
+    private static final int FLAG_CLOB = 1 << 7;
+    private static final int FLAG_BLOB = 1 << 8;
+
+    private final Reflections.DatabaseColumnNameStyle databaseColumnNameStyle;
+    private final String databaseDelimiter;
+    private final ByteBuffer buffer;
+    /**
+     * 实体类名 -> 该实体类在buffer中的位置，位置处依次是class文件的hash及TableDesc的内容
+     */
+    private final Map<String, Integer> positions;
+
+    private MetadataSnapshot(Reflections.DatabaseColumnNameStyle databaseColumnNameStyle, String databaseDelimiter,
+                             ByteBuffer buffer, Map<String, Integer> positions) {
+        this.databaseColumnNameStyle = databaseColumnNameStyle;
+        this.databaseDelimiter = databaseDelimiter;
+        this.buffer = buffer;
+        this.positions = positions;
+    }
+
+    public Reflections.DatabaseColumnNameStyle getDatabaseColumnNameStyle() {
+        return databaseColumnNameStyle;
+    }
+
+    public String getDatabaseDelimiter() {
+        return databaseDelimiter;
+    }
+
+    /**
+     * 快照里面的实体类数量（包含已经过期的）
+     *
+     * @return
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * 将上下文中已经解析过的所有TableDesc写入文件
+     *
+     * @param metadataContext
+     * @param path
+     * @throws IOException
+     */
+    public static void write(MetadataContext metadataContext, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(metadataContext, metadataContext.getResolvedTableDescs(), out);
+        }
+    }
+
+    /**
+     * 写入快照，无法计算hash的实体类（找不到class文件）不会写入
+     *
+     * @param metadataContext 生成TableDesc的上下文，加载时命名规则、分隔符必须一致
+     * @param tableDescs      需要写入的TableDesc
+     * @param out
+     * @throws IOException
+     */
+    public static void write(MetadataContext metadataContext, Collection<TableDesc> tableDescs, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        writeString(data, metadataContext.getDatabaseColumnNameStyle().name());
+        writeString(data, metadataContext.getDatabaseDelimiter());
+        // TableDesc和TableColumnDesc互相引用，不能使用hashCode
+        Map<TableDesc, Long> hashes = new IdentityHashMap<>();
+        for (TableDesc tableDesc : tableDescs) {
+            long hash = tableDesc.getBeanClass() == null ? 0 : hash(tableDesc.getBeanClass());
+            if (hash != 0) {
+                hashes.put(tableDesc, hash);
+            }
+        }
+        data.writeInt(hashes.size());
+        for (TableDesc tableDesc : tableDescs) {
+            Long hash = hashes.get(tableDesc);
+            if (hash != null) {
+                writeString(data, tableDesc.getBeanClassName());
+                data.writeLong(hash);
+                writeTableDesc(data, tableDesc);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * 以内存映射的方式加载快照，只读取实体类的索引，TableDesc在使用时才解码
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static MetadataSnapshot load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static MetadataSnapshot load(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate();
+        if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new CriteriaException("invalid metadata snapshot");
+        }
+        Reflections.DatabaseColumnNameStyle style = Reflections.DatabaseColumnNameStyle.valueOf(readString(in));
+        String delimiter = readString(in);
+        int size = in.getInt();
+        Map<String, Integer> positions = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String beanClassName = readString(in);
+            positions.put(beanClassName, in.position());
+            in.getLong();
+            skipTableDesc(in);
+        }
+        return new MetadataSnapshot(style, delimiter, in, positions);
+    }
+
+    /**
+     * 从快照里面解码实体类的TableDesc
+     *
+     * @param beanClass
+     * @return 快照里面没有该实体类、或者实体类已经修改过（hash不一致）时返回null
+     */
+    public TableDesc getTableDesc(Class<?> beanClass) {
+        Integer position = positions.get(beanClass.getName());
+        if (position == null) {
+            return null;
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(position);
+        if (in.getLong() != hash(beanClass)) {
+            return null;
+        }
+        try {
+            return readTableDesc(in, beanClass);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * class文件（包含父类）的CRC32
+     *
+     * @param beanClass
+     * @return 找不到class文件时返回0
+     */
+    static long hash(Class<?> beanClass) {
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[4096];
+        for (Class<?> c = beanClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            String resource = c.getName().replace('.', '/') + ".class";
+            ClassLoader classLoader = c.getClassLoader();
+            try (InputStream in = classLoader == null ? ClassLoader.getSystemResourceAsStream(resource) : classLoader.getResourceAsStream(resource)) {
+                if (in == null) {
+                    return 0;
+                }
+                int n;
+                while ((n = in.read(bytes)) > 0) {
+                    crc.update(bytes, 0, n);
+                }
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void writeTableDesc(DataOutputStream out, TableDesc tableDesc) throws IOException {
+        writeString(out, tableDesc.getBeanName());
+        writeString(out, tableDesc.getTableName());
+        writeString(out, tableDesc.getDelimiterTableName());
+        writeString(out, tableDesc.getInsertSQL());
+        writeString(out, tableDesc.getUpdateSQL());
+        writeString(out, tableDesc.getSelectSQL());
+        writeString(out, tableDesc.getDeleteSQL());
+        writeString(out, tableDesc.getPrimaryKey() == null ? null : tableDesc.getPrimaryKey().getFieldName());
+        out.writeInt(tableDesc.getColumns().size());
+        for (TableColumnDesc column : tableDesc.getColumns().values()) {
+            writeString(out, column.getFieldName());
+            writeString(out, column.getColumnName());
+            writeString(out, column.getDelimiterColumnName());
+            writeString(out, column.getIdGenerationType() == null ? null : column.getIdGenerationType().name());
+            writeString(out, column.getIdGenerator());
+            writeString(out, column.getForeignBeanClass() == null ? null : column.getForeignBeanClass().getName());
+            writeString(out, column.getForeignBeanFieldName());
+            writeString(out, column.getJdbcType() == null ? null : column.getJdbcType().name());
+            writeString(out, column.getTypeHandler() == null ? null : column.getTypeHandler().getName());
+            out.writeInt(column.getPrecision());
+            out.writeInt(column.getScale());
+            out.writeInt((column.isPrimaryKey() ? FLAG_PRIMARY_KEY : 0)
+                    | (column.isSigned() ? FLAG_SIGNED : 0)
+                    | (column.isUnique() ? FLAG_UNIQUE : 0)
+                    | (column.isNullable() ? FLAG_NULLABLE : 0)
+                    | (column.isInsertable() ? FLAG_INSERTABLE : 0)
+                    | (column.isUpdatable() ? FLAG_UPDATABLE : 0)
+                    | (column.isSearchable() ? FLAG_SEARCHABLE : 0)
+                    | (column.isClob() ? FLAG_CLOB : 0)
+                    | (column.isBlob() ? FLAG_BLOB : 0));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TableDesc readTableDesc(ByteBuffer in, Class<?> beanClass) throws ClassNotFoundException {
+        ClassLoader classLoader = beanClass.getClassLoader();
+        TableDesc tableDesc = new TableDesc();
+        tableDesc.setBeanClassName(beanClass.getName());
+        tableDesc.setBeanName(readString(in));
+        tableDesc.setTableName(readString(in));
+        tableDesc.setDelimiterTableName(readString(in));
+        tableDesc.setInsertSQL(readString(in));
+        tableDesc.setUpdateSQL(readString(in));
+        tableDesc.setSelectSQL(readString(in));
+        tableDesc.setDeleteSQL(readString(in));
+        String primaryKey = readString(in);
+        int size = in.getInt();
+        for (int i = 0; i < size; i++) {
+            TableColumnDesc column = new TableColumnDesc();
+            column.setTableDesc(tableDesc);
+            column.setFieldName(readString(in));
+            column.setColumnName(readString(in));
+            column.setDelimiterColumnName(readString(in));
+            String idGenerationType = readString(in);
+            column.setIdGenerationType(idGenerationType == null ? null : GenerationType.valueOf(idGenerationType));
+            column.setIdGenerator(readString(in));
+            String foreignBeanClass = readString(in);
+            column.setForeignBeanClass(foreignBeanClass == null ? null : Class.forName(foreignBeanClass, false, classLoader));
+            column.setForeignBeanFieldName(readString(in));
+            String jdbcType = readString(in);
+            column.setJdbcType(jdbcType == null ? null : JDBCType.valueOf(jdbcType));
+            String typeHandler = readString(in);
+            column.setTypeHandler(typeHandler == null ? null : (Class<? extends TypeHandler<?>>) Class.forName(typeHandler, false, classLoader));
+            column.setPrecision(in.getInt());
+            column.setScale(in.getInt());
+            int flags = in.getInt();
+            column.setPrimaryKey((flags & FLAG_PRIMARY_KEY) != 0);
+            column.setSigned((flags & FLAG_SIGNED) != 0);
+            column.setUnique((flags & FLAG_UNIQUE) != 0);
+            column.setNullable((flags & FLAG_NULLABLE) != 0);
+            column.setInsertable((flags & FLAG_INSERTABLE) != 0);
+            column.setUpdatable((flags & FLAG_UPDATABLE) != 0);
+            column.setSearchable((flags & FLAG_SEARCHABLE) != 0);
+            column.setClob((flags & FLAG_CLOB) != 0);
+            column.setBlob((flags & FLAG_BLOB) != 0);
+            tableDesc.getColumns().put(column.getFieldName(), column);
+            if (column.getFieldName().equals(primaryKey)) {
+                tableDesc.setPrimaryKey(column);
+            }
+        }
+        return tableDesc;
+    }
+
+    private static void skipTableDesc(ByteBuffer in) {
+        for (int i = 0; i < 8; i++) {
+            skipString(in);
+        }
+        int size = in.getInt();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < 9; j++) {
+                skipString(in);
+            }
+            in.position(in.position() + 12);
+        }
+    }
+
+    /**
+     * 字符串按照长度（-1表示null）+ UTF-8字节写入，SQL语句可能超过writeUTF的64K限制
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length > 0) {
+            in.position(in.position() + length);
+        }
+    }
+}
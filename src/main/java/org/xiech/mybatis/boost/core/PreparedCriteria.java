@@ -0,0 +1,172 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 由Criteria.prepare()生成的不可变的sql：sql文本和固定的参数已经确定，BindSlot的位置在bind(...)时填入实际的值，
+ * 不会再解析列名和生成sql。线程安全，可以放在静态变量里面重复使用
+ *
+ * @author xiech
+ * @date 2020-08-23 10:30
+ */
+public final class PreparedCriteria {
+    private final String sql;
+    /**
+     * 所有的参数值，BindSlot的位置在bind时替换
+     */
+    private final Object[] values;
+    /**
+     * BindSlot所在的参数的索引
+     */
+    private final int[] slotIndexes;
+    private final BindSlot[] slots;
+    private final int positionCount;
+    private final Set<String> names;
+
+    PreparedCriteria(String sql, Map<String, Object> params) {
+        this.sql = sql;
+        this.values = params.values().toArray();
+        int count = 0;
+        for (Object value : this.values) {
+            if (value instanceof BindSlot) {
+                count++;
+            }
+        }
+        this.slotIndexes = new int[count];
+        this.slots = new BindSlot[count];
+        int positionCount = 0;
+        Set<String> names = new LinkedHashSet<>();
+        for (int i = 0, n = 0; i < this.values.length; i++) {
+            if (this.values[i] instanceof BindSlot) {
+                BindSlot slot = (BindSlot) this.values[i];
+                this.slotIndexes[n] = i;
+                this.slots[n++] = slot;
+                if (slot.isNamed()) {
+                    names.add(slot.getName());
+                } else {
+                    positionCount = Math.max(positionCount, slot.getPosition() + 1);
+                }
+            }
+        }
+        this.positionCount = positionCount;
+        this.names = Collections.unmodifiableSet(names);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * 按位置的占位需要的参数个数
+     *
+     * @return
+     */
+    public int getPositionCount() {
+        return positionCount;
+    }
+
+    /**
+     * 命名的占位的名称
+     *
+     * @return
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    /**
+     * 按位置填入参数值，不能有命名的占位
+     *
+     * @param values 按BindSlot.of(position)的位置排列的参数值
+     * @return
+     */
+    public Bound bind(Object... values) {
+        return bind(Collections.emptyMap(), values);
+    }
+
+    /**
+     * 按名称填入参数值，不能有按位置的占位
+     *
+     * @param values 名称 -> 参数值
+     * @return
+     */
+    public Bound bind(Map<String, ?> values) {
+        return bind(values, new Object[0]);
+    }
+
+    /**
+     * 同时填入命名的和按位置的参数值
+     *
+     * @param namedValues      名称 -> 参数值
+     * @param positionalValues 按BindSlot.of(position)的位置排列的参数值
+     * @return
+     */
+    public Bound bind(Map<String, ?> namedValues, Object... positionalValues) {
+        if (positionalValues == null) {
+            positionalValues = new Object[0];
+        }
+        if (positionalValues.length < this.positionCount) {
+            throw new CriteriaException("expected " + this.positionCount + " positional values but got " + positionalValues.length);
+        }
+        Object[] values = this.values.clone();
+        for (int i = 0; i < this.slots.length; i++) {
+            BindSlot slot = this.slots[i];
+            Object value;
+            if (slot.isNamed()) {
+                if (namedValues == null || !namedValues.containsKey(slot.getName())) {
+                    throw new CriteriaException("missing value for bind slot \"" + slot.getName() + "\"");
+                }
+                value = namedValues.get(slot.getName());
+            } else {
+                value = positionalValues[slot.getPosition()];
+            }
+            values[this.slotIndexes[i]] = value;
+        }
+        CriteriaParams params = new CriteriaParams();
+        for (Object value : values) {
+            params.add(value);
+        }
+        return new Bound(this.sql, params);
+    }
+
+    @Override
+    public String toString() {
+        return this.sql;
+    }
+
+    /**
+     * 填入参数值后可以执行的sql和参数，用法与Criteria相同：sql里面的#{params.paramN}从getParams()取值
+     */
+    public static final class Bound {
+        private final String sql;
+        private final Map<String, Object> params;
+
+        Bound(String sql, Map<String, Object> params) {
+            this.sql = sql;
+            this.params = params;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * sql参数，只读，key为param0、param1...
+         *
+         * @return
+         */
+        public Map<String, Object> getParams() {
+            return params;
+        }
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
+}
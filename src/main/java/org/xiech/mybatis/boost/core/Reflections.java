@@ -1,25 +1,22 @@
 package org.xiech.mybatis.boost.core;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.ibatis.jdbc.SQL;
-import org.xiech.mybatis.boost.annotation.Column;
 import org.xiech.mybatis.boost.annotation.GenerationType;
-import org.xiech.mybatis.boost.annotation.Id;
-import org.xiech.mybatis.boost.annotation.Table;
 import org.xiech.mybatis.boost.bean.TableColumnDesc;
 import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.bean.WarmUpReport;
+import org.xiech.mybatis.boost.exception.CriteriaException;
 import org.xiech.mybatis.boost.util.lambda.LambdaUtils;
 import org.xiech.mybatis.boost.util.lambda.explain.ExplainFieldNameResult;
 import org.xiech.mybatis.boost.util.lambda.explain.SerializeFunction;
 
-import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 实体类映射的工具类，优化java bean的反射缓存
@@ -40,29 +37,42 @@ public class Reflections {
         //LOWERCASE,                  	//转换为小写
     }
 
-    private static DatabaseColumnNameStyle DATABASE_COLUMN_NAME_STYLE = DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE;
-    private static String DATABASE_DELIMITER = "";
-
-
-    private static final String ID_DEFAULT = "id";
+    public static final String ID_DEFAULT = "id";
     private static final String[] MOVE_DOWN_FIELDS = {"createTime", "createBy", "updateTime", "updateBy"};
 
-    /**
-     * SerializeFunction解析属性名的缓存，使用弱引用对象存储
-     */
-    private static final Map<String, TableDesc> BEAN_DESC_CACHE = new ConcurrentHashMap<>();
-    private static final List<String> POJO_FIELD_EXCLUDE = new ArrayList<String>() {{
+    static final List<String> POJO_FIELD_EXCLUDE = new ArrayList<String>() {{
         add("class");
     }};
+    /**
+     * 默认的元数据上下文，没有指定MetadataContext时都使用它
+     */
+    private static volatile MetadataContext DEFAULT_CONTEXT = new MetadataContext();
 
 
+    /**
+     * 替换默认的元数据上下文，之前解析过的TableDesc不会再被使用（不会出现修改配置之后还在使用旧的表名、列名的情况）。
+     * 已经创建的Criteria仍然使用创建时的上下文
+     *
+     * @param databaseColumnNameStyle 字段映射到数据库的命名规则
+     * @param databaseDelimiter       表名、列名的分隔符
+     */
     public static void init(DatabaseColumnNameStyle databaseColumnNameStyle, String databaseDelimiter) {
-        Reflections.DATABASE_COLUMN_NAME_STYLE = databaseColumnNameStyle;
-        Reflections.DATABASE_DELIMITER = databaseDelimiter;
+        setDefaultContext(new MetadataContext(databaseColumnNameStyle, databaseDelimiter));
+    }
+
+    public static MetadataContext getDefaultContext() {
+        return DEFAULT_CONTEXT;
+    }
+
+    public static void setDefaultContext(MetadataContext metadataContext) {
+        if (metadataContext == null) {
+            throw new CriteriaException("metadataContext can`t be null");
+        }
+        Reflections.DEFAULT_CONTEXT = metadataContext;
     }
 
     /**
-     * 通过Bean::getField()这种无参有返回值的Lambda表达式来获取JavaBean的属性名，获取失败时返回null。
+     * 通过Bean::getField()这种无参有返回值的Lambda表达式来获取JavaBean的属性名，不是实体类的属性时返回null，解析失败时抛出CriteriaException。
      *
      * @param function 无参有返回值的Lambda表达式，类似Bean::getField()
      * @return
@@ -73,7 +83,7 @@ public class Reflections {
             return null;
         }
         // 判断是否是正常的实体类属性名，如果不是则返回null
-        TableDesc tableDesc = explainTableDesc(result.getBeanClassName());
+        TableDesc tableDesc = getTableDesc(result.getBeanClass());
         if (tableDesc == null || !tableDesc.getColumns().containsKey(result.getFieldName())) {
             return null;
         }
@@ -87,200 +97,97 @@ public class Reflections {
      * @return
      */
     public static TableDesc getTableDesc(Class<? extends Object> beanClass) {
-        if (beanClass != null) {
-            return explainTableDesc(beanClass.getName());
-        }
-        return null;
+        return DEFAULT_CONTEXT.getTableDesc(beanClass);
     }
 
-
     /**
-     * 通过class name获取缓存的TableDesc
+     * 扫描包（包含子包）下面所有加了@Table注解的实体类，使用默认的元数据上下文并行解析TableDesc，用于在接收请求之前预热缓存
      *
-     * @param beanClassName
-     * @return
+     * @param packageNames 实体类所在的包名
+     * @return 每个实体类的解析耗时及失败信息
      */
-    private static TableDesc explainTableDesc(String beanClassName) {
-        return Optional.ofNullable(BEAN_DESC_CACHE.get(beanClassName))
-                .orElseGet(() -> {
-                    TableDesc tableDesc = resolveTableDesc(beanClassName);
-                    if (tableDesc != null) {
-                        BEAN_DESC_CACHE.put(beanClassName, tableDesc);
-
-                        // 生成SQL语句
-                        tableDesc.setInsertSQL(getInsertSQL(tableDesc));
-                        tableDesc.setUpdateSQL(getUpdateSQL(tableDesc));
-                        tableDesc.setSelectSQL(getSelectSQL(tableDesc));
-                        tableDesc.setDeleteSQL(getDeleteSQL(tableDesc));
-                    }
-                    return tableDesc;
-                });
+    public static WarmUpReport warmUp(String... packageNames) {
+        return DEFAULT_CONTEXT.warmUp(packageNames);
     }
 
     /**
-     * 通过class name生成TableDesc
+     * 使用默认的元数据上下文并行解析实体类的TableDesc，用于在接收请求之前预热缓存
      *
-     * @param beanClassName
-     * @return
+     * @param beanClasses 实体类
+     * @return 每个实体类的解析耗时及失败信息
      */
-    private static TableDesc resolveTableDesc(String beanClassName) {
-        TableDesc tableDesc = null;
-        try {
-            Class<?> beanClass = Class.forName(beanClassName);
-            Table tableAnnotation = beanClass.getAnnotation(Table.class);
-            /*if (tableAnnotation == null) {
-                return null;
-            }*/
-            BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
-            if (beanInfo.getPropertyDescriptors() == null || beanInfo.getPropertyDescriptors().length == 0) {
-                return null;
-            }
-            tableDesc = new TableDesc();
-            tableDesc.setBeanInfo(beanInfo);
-            tableDesc.setBeanClassName(beanClass.getName());
-            tableDesc.setBeanName(beanClass.getSimpleName());
-            tableDesc.setTableName(tableAnnotation != null && StringUtils.isNotBlank(tableAnnotation.name())
-                    ? tableAnnotation.name() : renameByStyle(tableDesc.getBeanName()));
-            tableDesc.setDelimiterTableName(delimiter(tableDesc.getTableName()));
-
-            List<PropertyDescriptor> propertyDescriptors = new ArrayList<>();
-            PropertyDescriptor idPD = null;
-            PropertyDescriptor createTimePD = null;
-            PropertyDescriptor createByPD = null;
-            PropertyDescriptor updateTimePD = null;
-            PropertyDescriptor updateByPD = null;
-            for (PropertyDescriptor p : beanInfo.getPropertyDescriptors()) {
-                if (p.getName().equals(ID_DEFAULT)) {
-                    idPD = p;
-                } else if (p.getName().equals(MOVE_DOWN_FIELDS[0])) {
-                    createTimePD = p;
-                } else if (p.getName().equals(MOVE_DOWN_FIELDS[1])) {
-                    createByPD = p;
-                } else if (p.getName().equals(MOVE_DOWN_FIELDS[2])) {
-                    updateTimePD = p;
-                } else if (p.getName().equals(MOVE_DOWN_FIELDS[3])) {
-                    updateByPD = p;
-                } else {
-                    propertyDescriptors.add(p);
-                }
-            }
-            if (idPD != null) {
-                propertyDescriptors.add(0, idPD);
-            }
-            if (createTimePD != null) {
-                propertyDescriptors.add(propertyDescriptors.size(), createTimePD);
-            }
-            if (createByPD != null) {
-                propertyDescriptors.add(propertyDescriptors.size(), createByPD);
-            }
-            if (updateTimePD != null) {
-                propertyDescriptors.add(propertyDescriptors.size(), updateTimePD);
-            }
-            if (updateByPD != null) {
-                propertyDescriptors.add(propertyDescriptors.size(), updateByPD);
-            }
-
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                TableColumnDesc tableColumnDesc = resolveTableColumnDesc(tableDesc, propertyDescriptor);
-                if (tableColumnDesc != null) {
-                    tableDesc.getColumns().put(tableColumnDesc.getFieldName(), tableColumnDesc);
+    public static WarmUpReport warmUp(Collection<Class<?>> beanClasses) {
+        return DEFAULT_CONTEXT.warmUp(beanClasses);
+    }
 
-                    // 设置主键
-                    if (tableColumnDesc.isPrimaryKey()) {
-                        tableDesc.setPrimaryKey(tableColumnDesc);
-                    }
-                }
-            }
 
-            // 没有添加Id注解时，则设置默认主键为id列（如果查找到有id列的话）
-            if (tableDesc.getPrimaryKey() == null) {
-                TableColumnDesc tableColumnDesc = tableDesc.getColumns().entrySet().parallelStream()
-                        .map(x -> x.getValue()).filter(x -> ID_DEFAULT.equalsIgnoreCase(x.getFieldName()))
-                        .findFirst().orElse(null);
-                tableDesc.setPrimaryKey(tableColumnDesc);
+    /**
+     * 对属性名排序：id排在最前面，createTime、createBy、updateTime、updateBy排在最后面，其余的按照属性名的自然顺序排列（与Introspector一致）
+     *
+     * @param propertyNames 实体类的属性名
+     * @return
+     */
+    public static List<String> sortPropertyNames(Collection<String> propertyNames) {
+        List<String> names = new ArrayList<>(propertyNames);
+        names.sort(null);
+        List<String> sorted = new ArrayList<>(names.size());
+        if (names.remove(ID_DEFAULT)) {
+            sorted.add(ID_DEFAULT);
+        }
+        List<String> moveDownNames = new ArrayList<>();
+        for (String moveDownField : MOVE_DOWN_FIELDS) {
+            if (names.remove(moveDownField)) {
+                moveDownNames.add(moveDownField);
             }
-
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-
-        return tableDesc;
+        sorted.addAll(names);
+        sorted.addAll(moveDownNames);
+        return sorted;
     }
 
     /**
-     * 通过PropertyDescriptor生成BeanColumnDesc
+     * 在类及其父类里面查找字段
      *
-     * @param tableDesc
-     * @param propertyDescriptor
-     * @return
+     * @param beanClass
+     * @param fieldName
+     * @return 找不到时返回null
      */
-    private static TableColumnDesc resolveTableColumnDesc(TableDesc tableDesc, PropertyDescriptor propertyDescriptor) {
-        TableColumnDesc tableColumnDesc = null;
-        try {
-            if (tableDesc == null || propertyDescriptor == null
-                    || (propertyDescriptor.getReadMethod() == null && propertyDescriptor.getWriteMethod() == null)
-                    || POJO_FIELD_EXCLUDE.contains(propertyDescriptor.getName())) {
-                return null;
-            }
-
-            tableColumnDesc = new TableColumnDesc();
-            tableColumnDesc.setTableDesc(tableDesc);
-            tableColumnDesc.setFieldName(propertyDescriptor.getName());
-            tableColumnDesc.setPropertyDescriptor(propertyDescriptor);
-
-            Id idAnnotation = propertyDescriptor.getPropertyType().getAnnotation(Id.class);
-            Column columnAnnotation = propertyDescriptor.getPropertyType().getAnnotation(Column.class);
-            if (idAnnotation != null) {
-                tableColumnDesc.setPrimaryKey(true);
-                tableColumnDesc.setIdGenerationType(idAnnotation.generationType());
-                tableColumnDesc.setIdGenerator(idAnnotation.generator());
-            } else {
-                tableColumnDesc.setIdGenerationType(GenerationType.AUTO);
-            }
-            if (columnAnnotation != null) {
-                tableColumnDesc.setColumnName(StringUtils.isNotBlank(columnAnnotation.name()) ? columnAnnotation.name() : renameByStyle(tableColumnDesc.getFieldName()));
-                tableColumnDesc.setDelimiterColumnName(delimiter(tableColumnDesc.getColumnName()));
-
-                //外键关联属性
-                tableColumnDesc.setForeignBeanClass(columnAnnotation.foreignBeanClass());
-                tableColumnDesc.setForeignBeanFieldName(columnAnnotation.foreignBeanFieldName());
-
-                tableColumnDesc.setPrecision(columnAnnotation.precision());
-                tableColumnDesc.setScale(columnAnnotation.scale());
-                tableColumnDesc.setSigned(columnAnnotation.signed());
-                tableColumnDesc.setUnique(columnAnnotation.unique());
-                tableColumnDesc.setNullable(columnAnnotation.nullable());
-                tableColumnDesc.setInsertable(columnAnnotation.insertable());
-                tableColumnDesc.setUpdatable(columnAnnotation.updatable());
-                tableColumnDesc.setSearchable(columnAnnotation.searchable());
-                tableColumnDesc.setClob(columnAnnotation.isClob());
-                tableColumnDesc.setBlob(columnAnnotation.isBlob());
-                tableColumnDesc.setJdbcType(columnAnnotation.jdbcType());
-                tableColumnDesc.setTypeHandler(columnAnnotation.typeHandler());
-            } else {
-                tableColumnDesc.setColumnName(renameByStyle(tableColumnDesc.getFieldName()));
-                tableColumnDesc.setDelimiterColumnName(delimiter(tableColumnDesc.getColumnName()));
+    static Field findField(Class<?> beanClass, String fieldName) {
+        for (Class<?> c = beanClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getName().equals(fieldName)) {
+                    return field;
+                }
             }
-
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-
-        return tableColumnDesc;
+        return null;
     }
 
-
-    private static String delimiter(String name) {
+    /**
+     * 给表名、列名加上分隔符
+     *
+     * @param name
+     * @param databaseDelimiter 分隔符
+     * @return
+     */
+    public static String delimiter(String name, String databaseDelimiter) {
         if (name == null)
             return null;
-        return DATABASE_DELIMITER + name + DATABASE_DELIMITER;
+        return databaseDelimiter + name + databaseDelimiter;
     }
 
-    private static String renameByStyle(String name) {
-        if (name == null || DATABASE_COLUMN_NAME_STYLE == null) {
+    /**
+     * 按照命名规则将属性名、类名转换为列名、表名
+     *
+     * @param name
+     * @param databaseColumnNameStyle 命名规则
+     * @return
+     */
+    public static String renameByStyle(String name, DatabaseColumnNameStyle databaseColumnNameStyle) {
+        if (name == null || databaseColumnNameStyle == null) {
             return name;
         }
-        switch (DATABASE_COLUMN_NAME_STYLE) {
+        switch (databaseColumnNameStyle) {
             case NORMAL:
                 return name;
             /*case UPPERCASE:
@@ -337,7 +244,43 @@ public class Reflections {
         return sb.toString();
     }
 
-    private static String getInsertSQL(TableDesc tableDesc) {
+    /**
+     * 外键字段的参数值：#{属性名.外键关联的目标对象的属性名}
+     *
+     * @param tableDesc
+     * @param tableColumnDesc
+     * @return
+     */
+    private static String getForeignValue(TableDesc tableDesc, TableColumnDesc tableColumnDesc) {
+        // 编译期生成的TableDesc没有PropertyDescriptor，已经在编译时校验过外键。
+        // 这里只检查外键对象有没有该属性，不去解析外键对象的TableDesc，避免互相引用的实体类在解析时互相等待
+        if (tableColumnDesc.getPropertyDescriptor() != null
+                && !hasProperty(tableColumnDesc.getPropertyDescriptor().getPropertyType(), tableColumnDesc.getForeignBeanFieldName())) {
+            throw new RuntimeException(tableDesc.getBeanClassName() + ".getForeignValue() run error!");
+        }
+        return "#{" + tableColumnDesc.getFieldName() + "." + tableColumnDesc.getForeignBeanFieldName() + "}";
+    }
+
+    private static boolean hasProperty(Class<?> beanClass, String propertyName) {
+        try {
+            for (PropertyDescriptor p : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+                if (p.getName().equals(propertyName) && !POJO_FIELD_EXCLUDE.contains(propertyName)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IntrospectionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 生成insert语句
+     *
+     * @param tableDesc
+     * @return
+     */
+    public static String getInsertSQL(TableDesc tableDesc) {
 
         SQL sql = new SQL();
         sql.INSERT_INTO(tableDesc.getDelimiterTableName());
@@ -356,17 +299,7 @@ public class Reflections {
                     throw new RuntimeException(tableDesc.getBeanClassName() + ".getInsertSQL() run error!");
                 }
             } else if (tableColumnDesc.getForeignBeanClass() != null) {
-                TableDesc joinTableDesc = getTableDesc(tableColumnDesc.getPropertyDescriptor().getPropertyType());
-                if (joinTableDesc != null) {
-                    TableColumnDesc joinTableColumnDesc = joinTableDesc.getColumns().get(tableColumnDesc.getForeignBeanFieldName());
-                    if (joinTableColumnDesc != null) {
-                        value = "#{" + tableColumnDesc.getFieldName() + "." + joinTableColumnDesc.getFieldName() + "}";
-                    } else {
-                        throw new RuntimeException(tableDesc.getBeanClassName() + ".getInsertSQL() run error!");
-                    }
-                } else {
-                    throw new RuntimeException(tableDesc.getBeanClassName() + ".getInsertSQL() run error!");
-                }
+                value = getForeignValue(tableDesc, tableColumnDesc);
             } else {
                 value = "#{" + tableColumnDesc.getFieldName() + "}";
             }
@@ -376,7 +309,13 @@ public class Reflections {
         return sql.toString();
     }
 
-    private static String getUpdateSQL(TableDesc tableDesc) {
+    /**
+     * 生成update语句（不包含where条件）
+     *
+     * @param tableDesc
+     * @return
+     */
+    public static String getUpdateSQL(TableDesc tableDesc) {
         SQL sql = new SQL();
         sql.UPDATE(tableDesc.getDelimiterTableName());
         for (TableColumnDesc tableColumnDesc : tableDesc.getColumns().values()) {
@@ -385,17 +324,7 @@ public class Reflections {
             if (tableColumnDesc.isPrimaryKey()) {
                 continue;
             } else if (tableColumnDesc.getForeignBeanClass() != null) {
-                TableDesc joinTableDesc = getTableDesc(tableColumnDesc.getPropertyDescriptor().getPropertyType());
-                if (joinTableDesc != null) {
-                    TableColumnDesc joinTableColumnDesc = joinTableDesc.getColumns().get(tableColumnDesc.getForeignBeanFieldName());
-                    if (joinTableColumnDesc != null) {
-                        value = "#{" + tableColumnDesc.getFieldName() + "." + joinTableColumnDesc.getFieldName() + "}";
-                    } else {
-                        throw new RuntimeException(tableDesc.getBeanClassName() + ".getInsertSQL() run error!");
-                    }
-                } else {
-                    throw new RuntimeException(tableDesc.getBeanClassName() + ".getInsertSQL() run error!");
-                }
+                value = getForeignValue(tableDesc, tableColumnDesc);
             } else {
                 value = "#{" + tableColumnDesc.getFieldName() + "}";
             }
@@ -409,7 +338,13 @@ public class Reflections {
         return sql.toString();
     }
 
-    private static String getDeleteSQL(TableDesc tableDesc) {
+    /**
+     * 生成delete语句（不包含where条件）
+     *
+     * @param tableDesc
+     * @return
+     */
+    public static String getDeleteSQL(TableDesc tableDesc) {
 
         SQL sql = new SQL();
         sql.DELETE_FROM(tableDesc.getDelimiterTableName());
@@ -420,7 +355,13 @@ public class Reflections {
         return sql.toString();
     }
 
-    private static String getSelectSQL(TableDesc tableDesc) {
+    /**
+     * 生成select语句（不包含where条件）
+     *
+     * @param tableDesc
+     * @return
+     */
+    public static String getSelectSQL(TableDesc tableDesc) {
         SQL sql = new SQL();
         for (TableColumnDesc tableColumnDesc : tableDesc.getColumns().values()) {
             sql.SELECT(tableColumnDesc.getDelimiterColumnName() + "AS" + tableColumnDesc.getFieldName());
@@ -0,0 +1,20 @@
+package org.xiech.mybatis.boost.core;
+
+import java.util.List;
+
+/**
+ * 包含多行实体数据的Criteria（多行insert等），用于执行后回写生成的主键
+ *
+ * @param <T> 实体类
+ * @author xiech
+ * @date 2020-08-26 10:20
+ */
+public interface RowsCriterion<T> {
+
+    /**
+     * 当前语句里面的行，按照sql里面的顺序
+     *
+     * @return 没有时返回空的列表
+     */
+    List<T> getRows();
+}
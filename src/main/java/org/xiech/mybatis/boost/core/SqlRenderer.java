@@ -0,0 +1,283 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.core.constant.SqlClause;
+import org.xiech.mybatis.boost.core.constant.SqlDialect;
+
+/**
+ * 将Criteria记录的sql片段渲染为sql字符串，输出与org.apache.ibatis.jdbc.SQL完全一致。
+ * 片段按子句串成链表（只使用int数组，不创建List），先统计出最终的长度，再一次性写入预分配好的StringBuilder
+ *
+ * @author xiech
+ * @date 2020-08-21 14:30
+ */
+final class SqlRenderer {
+    private static final String AND = ") \nAND (";
+    private static final String OR = ") \nOR (";
+    /**
+     * OFFSET_FETCH分页没有偏移量时的OFFSET
+     */
+    static final String ZERO_OFFSET = "0";
+
+    private static final int TABLES = 0;
+    private static final int SELECT = 1;
+    private static final int JOIN = 2;
+    private static final int OUTER_JOIN = 3;
+    private static final int LEFT_OUTER_JOIN = 4;
+    private static final int RIGHT_OUTER_JOIN = 5;
+    private static final int SET = 6;
+    private static final int COLUMNS = 7;
+    private static final int VALUES = 8;
+    private static final int WHERE = 9;
+    private static final int GROUP_BY = 10;
+    private static final int ORDER_BY = 11;
+    private static final int LIMIT = 12;
+    private static final int OFFSET = 13;
+    private static final int UPSERT = 14;
+    private static final int UPDATE_FROM = 15;
+    private static final int BUCKETS = 16;
+    /**
+     * 每个子句的关键字、括号、连接符的长度上限，用于预估长度
+     */
+    private static final int CLAUSE_OVERHEAD = 24;
+    private static final int PART_OVERHEAD = 20;
+
+    private final SqlClause[] clauses;
+    private final String[] texts;
+    private final int count;
+    private final SqlDialect dialect;
+    private final int[] next;
+    private final int[] heads = new int[BUCKETS];
+    private final int[] tails = new int[BUCKETS];
+    private final int[] sizes = new int[BUCKETS];
+    private SqlClause statementType;
+    private StringBuilder out;
+
+    private SqlRenderer(SqlClause[] clauses, String[] texts, int count, SqlDialect dialect) {
+        this.clauses = clauses;
+        this.texts = texts;
+        this.count = count;
+        this.dialect = dialect;
+        this.next = new int[count];
+    }
+
+    /**
+     * 渲染sql
+     *
+     * @param clauses 每个片段所属的子句
+     * @param texts   每个片段的文本（AND、OR为null）
+     * @param count   片段的数量
+     * @param dialect 生成分页的方言，没有LIMIT、OFFSET片段时不使用
+     * @return 没有SELECT、INSERT_INTO、UPDATE、DELETE_FROM、MERGE_INTO时返回空字符串
+     */
+    static String render(SqlClause[] clauses, String[] texts, int count, SqlDialect dialect) {
+        return new SqlRenderer(clauses, texts, count, dialect).render();
+    }
+
+    private String render() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.heads[i] = -1;
+        }
+        int length = 0;
+        for (int i = 0; i < this.count; i++) {
+            int bucket = bucket(i);
+            if (bucket < 0) {
+                continue;
+            }
+            this.next[i] = -1;
+            if (this.heads[bucket] < 0) {
+                this.heads[bucket] = i;
+                length += CLAUSE_OVERHEAD;
+            } else {
+                this.next[this.tails[bucket]] = i;
+            }
+            this.tails[bucket] = i;
+            this.sizes[bucket]++;
+            length += text(i).length() + PART_OVERHEAD;
+        }
+        if (this.statementType == null) {
+            return "";
+        }
+
+        this.out = new StringBuilder(length);
+        switch (this.statementType) {
+            case INSERT_INTO:
+                clause("INSERT INTO", TABLES, "", "", "");
+                clause("", COLUMNS, "(", ")", ", ");
+                clause("VALUES", VALUES, "(", ")", ", ");
+                upsert();
+                break;
+            case MERGE_INTO:
+                clause("MERGE INTO", TABLES, "", "", "");
+                break;
+            case UPDATE:
+                clause("UPDATE", TABLES, "", "", "");
+                joins();
+                clause("SET", SET, "", "", ", ");
+                clause("FROM", UPDATE_FROM, "", "", ", ");
+                clause("WHERE", WHERE, "(", ")", " AND ");
+                break;
+            case DELETE_FROM:
+                clause("DELETE FROM", TABLES, "", "", "");
+                clause("WHERE", WHERE, "(", ")", " AND ");
+                break;
+            default:
+                clause("SELECT", SELECT, "", "", ", ");
+                clause("FROM", TABLES, "", "", ", ");
+                joins();
+                clause("WHERE", WHERE, "(", ")", " AND ");
+                clause("GROUP BY", GROUP_BY, "", "", ", ");
+                clause("ORDER BY", ORDER_BY, "", "", ", ");
+                page();
+        }
+        return this.out.toString();
+    }
+
+    /**
+     * 片段所属的子句分组，同时记录语句的类型（以最后一个为准）；
+     * 与SQL一致，第一个WHERE之前的AND、OR会被忽略
+     *
+     * @param index
+     * @return 忽略的片段返回-1
+     */
+    private int bucket(int index) {
+        SqlClause clause = this.clauses[index];
+        switch (clause) {
+            case SELECT:
+                this.statementType = clause;
+                return SELECT;
+            case INSERT_INTO:
+            case UPDATE:
+            case DELETE_FROM:
+            case MERGE_INTO:
+                this.statementType = clause;
+                return TABLES;
+            case FROM:
+                return TABLES;
+            case JOIN:
+                return JOIN;
+            case OUTER_JOIN:
+                return OUTER_JOIN;
+            case LEFT_OUTER_JOIN:
+                return LEFT_OUTER_JOIN;
+            case RIGHT_OUTER_JOIN:
+                return RIGHT_OUTER_JOIN;
+            case SET:
+                return SET;
+            case INTO_COLUMNS:
+                return COLUMNS;
+            case INTO_VALUES:
+                return VALUES;
+            case WHERE:
+                return WHERE;
+            case AND:
+            case OR:
+                return this.heads[WHERE] < 0 ? -1 : WHERE;
+            case GROUP_BY:
+                return GROUP_BY;
+            case ORDER_BY:
+                return ORDER_BY;
+            case LIMIT:
+                return LIMIT;
+            case OFFSET:
+                return OFFSET;
+            case UPSERT:
+                return UPSERT;
+            case UPDATE_FROM:
+                return UPDATE_FROM;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * 分页，LIMIT_OFFSET、OFFSET_FETCH与SQL.LIMIT、SQL.OFFSET、SQL.FETCH_FIRST_ROWS_ONLY、SQL.OFFSET_ROWS一致，以最后一个为准，
+     * OFFSET_FETCH总是有OFFSET；
+     * ROWNUM时整个sql作为子查询，LIMIT片段的值是结束的行号
+     */
+    private void page() {
+        String limit = this.sizes[LIMIT] > 0 ? text(this.tails[LIMIT]) : null;
+        String offset = this.sizes[OFFSET] > 0 ? text(this.tails[OFFSET]) : null;
+        if (limit == null && offset == null) {
+            return;
+        }
+        switch (this.dialect.getPaging()) {
+            case OFFSET_FETCH:
+                // SQL Server的FETCH前面必须有OFFSET，没有偏移量时为OFFSET 0 ROWS
+                this.out.append(" OFFSET ").append(offset == null ? ZERO_OFFSET : offset).append(" ROWS");
+                if (limit != null) {
+                    this.out.append(" FETCH FIRST ").append(limit).append(" ROWS ONLY");
+                }
+                break;
+            case ROWNUM:
+                if (offset == null) {
+                    this.out.insert(0, "SELECT * FROM (\n").append("\n) WHERE ROWNUM <= ").append(limit);
+                } else if (limit == null) {
+                    this.out.insert(0, "SELECT * FROM (SELECT p_.*, ROWNUM rn_ FROM (\n").append("\n) p_) WHERE rn_ > ").append(offset);
+                } else {
+                    this.out.insert(0, "SELECT * FROM (SELECT p_.*, ROWNUM rn_ FROM (\n")
+                            .append("\n) p_ WHERE ROWNUM <= ").append(limit).append(") WHERE rn_ > ").append(offset);
+                }
+                break;
+            default:
+                if (limit != null) {
+                    this.out.append(" LIMIT ").append(limit);
+                }
+                if (offset != null) {
+                    this.out.append(" OFFSET ").append(offset);
+                }
+        }
+    }
+
+    /**
+     * 处理冲突的子句，以最后一个为准
+     */
+    private void upsert() {
+        if (this.sizes[UPSERT] > 0) {
+            this.out.append('\n').append(text(this.tails[UPSERT]));
+        }
+    }
+
+    private void joins() {
+        clause("JOIN", JOIN, "", "", "\nJOIN ");
+        clause("OUTER JOIN", OUTER_JOIN, "", "", "\nOUTER JOIN ");
+        clause("LEFT OUTER JOIN", LEFT_OUTER_JOIN, "", "", "\nLEFT OUTER JOIN ");
+        clause("RIGHT OUTER JOIN", RIGHT_OUTER_JOIN, "", "", "\nRIGHT OUTER JOIN ");
+    }
+
+    private void clause(String keyword, int bucket, String open, String close, String conjunction) {
+        if (this.sizes[bucket] == 0) {
+            return;
+        }
+        if (this.out.length() > 0) {
+            this.out.append('\n');
+        }
+        this.out.append(keyword).append(' ').append(open);
+        boolean first = true;
+        boolean lastConjunction = false;
+        for (int i = this.heads[bucket]; i >= 0; i = this.next[i]) {
+            boolean isConjunction = isConjunction(i);
+            if (!first && !isConjunction && !lastConjunction) {
+                this.out.append(conjunction);
+            }
+            this.out.append(text(i));
+            first = false;
+            lastConjunction = isConjunction;
+        }
+        this.out.append(close);
+    }
+
+    private boolean isConjunction(int index) {
+        return this.clauses[index] == SqlClause.AND || this.clauses[index] == SqlClause.OR;
+    }
+
+    private String text(int index) {
+        switch (this.clauses[index]) {
+            case AND:
+                return AND;
+            case OR:
+                return OR;
+            default:
+                return String.valueOf(this.texts[index]);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.bean.TableDesc;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Criteria的sql形状缓存：同一个实体类上面相同的调用链（操作及列的顺序一致，只有参数值不同）生成的sql是相同的，
+ * 第二次使用时直接返回缓存的sql，只需要收集参数。
+ * 缓存的数量有上限，超过上限时随机淘汰一部分
+ *
+ * @author xiech
+ * @date 2020-08-20 10:15
+ */
+public class SqlShapeCache {
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final Map<Key, String> cache = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile int maxSize;
+
+    public SqlShapeCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public SqlShapeCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 查找缓存的sql
+     *
+     * @param tableDesc 主表，不同的MetadataContext、ClassLoader的TableDesc不同
+     * @param shape     调用链的形状
+     * @return 没有缓存时返回null
+     */
+    public String get(TableDesc tableDesc, String shape) {
+        String sql = this.cache.get(new Key(tableDesc, shape));
+        if (sql == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        return sql;
+    }
+
+    public void put(TableDesc tableDesc, String shape, String sql) {
+        int maxSize = this.maxSize;
+        if (maxSize <= 0) {
+            return;
+        }
+        if (this.cache.size() >= maxSize) {
+            // 淘汰1/4，避免每次put都需要淘汰
+            Iterator<Key> iterator = this.cache.keySet().iterator();
+            for (int i = maxSize / 4 + 1; i > 0 && iterator.hasNext(); i--) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        this.cache.put(new Key(tableDesc, shape), sql);
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 设置缓存的数量上限，小于等于0时不缓存
+     *
+     * @param maxSize
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void clear() {
+        this.cache.clear();
+        this.hits.reset();
+        this.misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "SqlShapeCache(size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHits() + ", misses=" + getMisses() + ")";
+    }
+
+    /**
+     * TableDesc和TableColumnDesc互相引用，不能使用TableDesc.hashCode()，按照对象地址比较
+     */
+    private static final class Key {
+        private final TableDesc tableDesc;
+        private final String shape;
+        private final int hash;
+
+        Key(TableDesc tableDesc, String shape) {
+            this.tableDesc = tableDesc;
+            this.shape = shape;
+            this.hash = System.identityHashCode(tableDesc) * 31 + shape.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.tableDesc == other.tableDesc && this.shape.equals(other.shape);
+        }
+    }
+}
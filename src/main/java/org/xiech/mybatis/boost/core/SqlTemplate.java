@@ -0,0 +1,171 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.core.constant.SqlConstant;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编译后的带有形参的sql片段，例如：u.name = {0} and u.age = {1}。
+ * 编译时扫描一次，拆分为文本和形参两部分，按模板字符串缓存；绑定时直接拼接#{params.paramN}，不再使用正则表达式
+ *
+ * @author xiech
+ * @date 2020-08-22 10:40
+ */
+public final class SqlTemplate {
+    /**
+     * 缓存的模板数量上限，超过时清空（exists等自定义的sql片段可能是动态拼接的）
+     */
+    private static final int MAX_CACHE_SIZE = 2048;
+    private static final Map<String, SqlTemplate> CACHE = new ConcurrentHashMap<>();
+    /**
+     * 每个占位符#{params.paramN}除去N以外的长度，加上N的长度用于预估绑定后的长度
+     */
+    private static final int PLACEHOLDER_LENGTH = SqlConstant.HASH_PARAMS.length() + SqlConstant.PARAM.length() + SqlConstant.DELIM_END.length() + 4;
+
+    private final String template;
+    /**
+     * 形参之间的文本，比形参多一个
+     */
+    private final String[] literals;
+    /**
+     * 形参的索引，超出int范围时为-1
+     */
+    private final int[] slots;
+    /**
+     * 形参在模板里面的开始位置
+     */
+    private final int[] slotStarts;
+
+    private SqlTemplate(String template, String[] literals, int[] slots, int[] slotStarts) {
+        this.template = template;
+        this.literals = literals;
+        this.slots = slots;
+        this.slotStarts = slotStarts;
+    }
+
+    /**
+     * 编译sql片段，相同的模板只编译一次
+     *
+     * @param template 带有形参的sql片段，形参使用'{参数的索引，从0开始}'格式
+     * @return
+     */
+    public static SqlTemplate compile(String template) {
+        SqlTemplate sqlTemplate = CACHE.get(template);
+        if (sqlTemplate == null) {
+            sqlTemplate = parse(template);
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(template, sqlTemplate);
+        }
+        return sqlTemplate;
+    }
+
+    private static SqlTemplate parse(String template) {
+        int count = 0;
+        for (int i = template.indexOf('{'); i >= 0; i = template.indexOf('{', i + 1)) {
+            if (slotEnd(template, i) > 0) {
+                count++;
+            }
+        }
+        String[] literals = new String[count + 1];
+        int[] slots = new int[count];
+        int[] slotStarts = new int[count];
+        int literalStart = 0;
+        int n = 0;
+        for (int i = template.indexOf('{'); i >= 0 && n < count; i = template.indexOf('{', i + 1)) {
+            int end = slotEnd(template, i);
+            if (end < 0) {
+                continue;
+            }
+            literals[n] = template.substring(literalStart, i);
+            slots[n] = parseIndex(template, i + 1, end);
+            slotStarts[n] = i;
+            literalStart = end + 1;
+            i = end;
+            n++;
+        }
+        literals[count] = template.substring(literalStart);
+        return new SqlTemplate(template, literals, slots, slotStarts);
+    }
+
+    /**
+     * '{'之后至少一个数字并以'}'结束时才是形参
+     *
+     * @param template
+     * @param start    '{'的位置
+     * @return '}'的位置，不是形参时返回-1
+     */
+    private static int slotEnd(String template, int start) {
+        int i = start + 1;
+        while (i < template.length() && template.charAt(i) >= '0' && template.charAt(i) <= '9') {
+            i++;
+        }
+        return i > start + 1 && i < template.length() && template.charAt(i) == '}' ? i : -1;
+    }
+
+    private static int parseIndex(String template, int start, int end) {
+        long index = 0;
+        for (int i = start; i < end; i++) {
+            index = index * 10 + (template.charAt(i) - '0');
+            if (index > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) index;
+    }
+
+    /**
+     * 形参的个数（按出现次数计算）
+     *
+     * @return
+     */
+    public int getSlotCount() {
+        return this.slots.length;
+    }
+
+    /**
+     * 将形参{n}替换为第firstIndex + n个sql参数的占位符#{params.param(firstIndex + n)}
+     *
+     * @param firstIndex 第一个参数的索引
+     * @param paramCount 参数的个数，形参超出参数个数时，从该形参开始保留原文不再替换
+     * @return
+     */
+    public String bind(int firstIndex, int paramCount) {
+        if (this.slots.length == 0) {
+            return this.template;
+        }
+        StringBuilder out = new StringBuilder(this.template.length() + this.slots.length * PLACEHOLDER_LENGTH);
+        bind(out, firstIndex, paramCount);
+        return out.toString();
+    }
+
+    /**
+     * 与bind(firstIndex, paramCount)相同，直接写入out
+     *
+     * @param out
+     * @param firstIndex 第一个参数的索引
+     * @param paramCount 参数的个数
+     */
+    public void bind(StringBuilder out, int firstIndex, int paramCount) {
+        for (int i = 0; i < this.slots.length; i++) {
+            int slot = this.slots[i];
+            if (slot < 0 || slot >= paramCount) {
+                out.append(this.literals[i]).append(this.template, this.slotStarts[i], this.template.length());
+                return;
+            }
+            out.append(this.literals[i])
+                    .append(SqlConstant.HASH_PARAMS)
+                    .append(SqlConstant.PARAM)
+                    .append(firstIndex + slot)
+                    .append(SqlConstant.DELIM_END);
+        }
+        out.append(this.literals[this.slots.length]);
+    }
+
+    @Override
+    public String toString() {
+        return this.template;
+    }
+}
@@ -0,0 +1,35 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.bean.TableDesc;
+
+/**
+ * 预生成的TableDesc注册表，一般由mybatis-boost-processor在编译期生成，并通过ServiceLoader加载
+ *
+ * @author xiech
+ * @date 2020-08-10 10:12
+ */
+public interface TableDescProvider {
+
+    /**
+     * 生成时所使用的字段命名规则，与当前的配置不一致时不会使用该注册表
+     *
+     * @return
+     */
+    Reflections.DatabaseColumnNameStyle getDatabaseColumnNameStyle();
+
+    /**
+     * 生成时所使用的分隔符，与当前的配置不一致时不会使用该注册表
+     *
+     * @return
+     */
+    String getDatabaseDelimiter();
+
+    /**
+     * 返回实体类对应的TableDesc（包含已生成好的insert/update/select/delete语句），没有生成时返回null。
+     * 不同ClassLoader加载的同名类不是同一个实体类，也返回null
+     *
+     * @param beanClass 实体类的class
+     * @return
+     */
+    TableDesc getTableDesc(Class<?> beanClass);
+}
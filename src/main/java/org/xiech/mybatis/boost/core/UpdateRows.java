@@ -0,0 +1,193 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
+import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.core.constant.SqlDialect;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按主键批量更新多行，每一行的值不同：一条语句更新一批行，语法由SqlDialect.getBulkUpdate()决定。
+ * CASE_WHEN时每一行的主键作为两个参数（CASE和IN各一个），FROM_VALUES时作为一个参数。
+ * 同一批里面主键重复时只有一行生效
+ *
+ * @author xiech
+ * @date 2020-08-28 10:30
+ */
+final class UpdateRows {
+    private static final String ROWS = "updateRows:";
+    /**
+     * VALUES的别名和列名，带有下划线，避免与表的列名冲突
+     */
+    private static final String SOURCE = "v_";
+    private static final String KEY = "k_";
+    private static final String COLUMN = "c";
+    private static final String SUFFIX = "_";
+
+    private List<TableColumnDesc> columns;
+    private SqlDialect.BulkUpdate bulkUpdate;
+    private String shapeKey;
+
+    void clear() {
+        this.columns = null;
+        this.bulkUpdate = null;
+        this.shapeKey = null;
+    }
+
+    /**
+     * 添加多行数据，参数超过MetadataContext.getMaxBindParams()时按行拆分
+     *
+     * @param criteria
+     * @param rows     实体，主键不能为null
+     * @param columns  更新的列（属性名、列名），为空时更新除主键以外的所有列
+     */
+    void values(AbstractCriteria<?, ?> criteria, List<?> rows, List<String> columns) {
+        String name = criteria.getBeanClass().getName();
+        if (rows == null || rows.isEmpty()) {
+            throw new CriteriaException(name + ": rows can`t be empty");
+        }
+        TableDesc tableDesc = criteria.getTableDesc();
+        if (tableDesc.getPrimaryKey() == null) {
+            throw new CriteriaException(name + ": updating rows needs a primary key");
+        }
+        if (criteria.hasClause(SqlClause.OR)) {
+            // 主键条件必须与所有的where条件AND连接，有or()时会连接到其中一个分支上面，更新不在这一批里面的行
+            throw new CriteriaException(name + ": or() can`t be used with values(rows)");
+        }
+        List<TableColumnDesc> updateColumns = new ArrayList<>();
+        if (columns.isEmpty()) {
+            for (TableColumnDesc column : tableDesc.getColumns().values()) {
+                if (!InsertRows.isPrimaryKey(tableDesc, column)) {
+                    updateColumns.add(column);
+                }
+            }
+        } else {
+            for (String column : columns) {
+                TableColumnDesc tableColumnDesc = tableDesc.findColumn(column);
+                if (tableColumnDesc == null) {
+                    throw new CriteriaException(name + ": column \"" + column + "\" not found");
+                }
+                if (InsertRows.isPrimaryKey(tableDesc, tableColumnDesc)) {
+                    throw new CriteriaException(name + ": primary key \"" + column + "\" can`t be updated by rows");
+                }
+                updateColumns.add(tableColumnDesc);
+            }
+        }
+        if (updateColumns.isEmpty()) {
+            throw new CriteriaException(name + ": no columns to update");
+        }
+        this.columns = updateColumns;
+        this.bulkUpdate = criteria.getDialect().getBulkUpdate();
+        StringBuilder shapeKey = new StringBuilder(ROWS).append(this.bulkUpdate);
+        for (TableColumnDesc column : updateColumns) {
+            shapeKey.append(',').append(column.getFieldName());
+        }
+        this.shapeKey = shapeKey.append(':').toString();
+        int paramsPerRow = updateColumns.size() + (this.bulkUpdate == SqlDialect.BulkUpdate.CASE_WHEN ? 2 : 1);
+        criteria.addRows(rows, paramsPerRow);
+    }
+
+    /**
+     * 添加一批行的SET、WHERE片段（FROM_VALUES时还有FROM片段）
+     *
+     * @param criteria
+     * @param rows     这一批的行
+     */
+    void addRowSegments(AbstractCriteria<?, ?> criteria, List<?> rows) {
+        TableDesc tableDesc = criteria.getTableDesc();
+        List<TableColumnDesc> columns = this.columns;
+        TableColumnDesc primaryKey = tableDesc.getPrimaryKey();
+        int rowCount = rows.size();
+        int stride = columns.size() + 1;
+        // 每一行：主键、更新的列
+        Object[] params = new Object[rowCount * stride];
+        Object[] keys = new Object[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            Object key = primaryKey.getPropertyAccessor().get(rows.get(row));
+            if (key == null) {
+                throw new CriteriaException(criteria.getBeanClass().getName() + ": primary key of row " + row + " is null");
+            }
+            keys[row] = key;
+            params[row * stride] = key;
+            for (int i = 0; i < columns.size(); i++) {
+                params[row * stride + 1 + i] = InsertRows.value(rows.get(row), columns.get(i));
+            }
+        }
+        String key = primaryKey.getDelimiterColumnName();
+        if (this.bulkUpdate == SqlDialect.BulkUpdate.FROM_VALUES) {
+            criteria.addSegment(SqlClause.SET, this.shapeKey + rowCount, () -> fromValuesSet(columns));
+            criteria.addSegment(SqlClause.UPDATE_FROM, null, () -> fromValues(columns, rowCount), params);
+            criteria.addSegment(SqlClause.WHERE, null, () -> key + SqlConstant.EQ + SOURCE + SqlConstant.DOT + KEY);
+        } else {
+            criteria.addSegment(SqlClause.SET, this.shapeKey + rowCount, () -> caseWhenSet(key, columns, rowCount), params);
+            criteria.addSegment(SqlClause.WHERE, null, () -> keyIn(key, rowCount), keys);
+        }
+    }
+
+    /**
+     * a = CASE id WHEN {0} THEN {1} WHEN {3} THEN {4} ELSE a END, b = CASE id WHEN {0} THEN {2} WHEN {3} THEN {5} ELSE b END
+     */
+    private static String caseWhenSet(String key, List<TableColumnDesc> columns, int rowCount) {
+        int stride = columns.size() + 1;
+        StringBuilder sql = new StringBuilder(columns.size() * rowCount * 24);
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i > 0 ? SqlConstant.COMMA : "").append(columns.get(i).getDelimiterColumnName()).append(SqlConstant.EQ)
+                    .append("CASE ").append(key);
+            for (int row = 0; row < rowCount; row++) {
+                sql.append(" WHEN ").append(SqlConstant.DELIM_START).append(row * stride).append(SqlConstant.DELIM_END)
+                        .append(" THEN ").append(SqlConstant.DELIM_START).append(row * stride + 1 + i).append(SqlConstant.DELIM_END);
+            }
+            // 没有匹配的行保持原值，避免被更新为null
+            sql.append(" ELSE ").append(columns.get(i).getDelimiterColumnName()).append(" END");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * id IN ({0}, {1})
+     */
+    private static String keyIn(String key, int rowCount) {
+        StringBuilder sql = new StringBuilder(key).append(" IN (");
+        for (int row = 0; row < rowCount; row++) {
+            sql.append(row > 0 ? SqlConstant.COMMA : "").append(SqlConstant.DELIM_START).append(row).append(SqlConstant.DELIM_END);
+        }
+        return sql.append(SqlConstant.BRACKET_END).toString();
+    }
+
+    /**
+     * a = v_.c0_, b = v_.c1_
+     */
+    private static String fromValuesSet(List<TableColumnDesc> columns) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i > 0 ? SqlConstant.COMMA : "").append(columns.get(i).getDelimiterColumnName()).append(SqlConstant.EQ)
+                    .append(SOURCE).append(SqlConstant.DOT).append(COLUMN).append(i).append(SUFFIX);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * (VALUES ({0}, {1}, {2})\n, ({3}, {4}, {5})) v_ (k_, c0_, c1_)
+     */
+    private static String fromValues(List<TableColumnDesc> columns, int rowCount) {
+        int stride = columns.size() + 1;
+        StringBuilder sql = new StringBuilder(rowCount * stride * 8).append("(VALUES (");
+        for (int row = 0; row < rowCount; row++) {
+            if (row > 0) {
+                sql.append(")\n, (");
+            }
+            for (int i = 0; i < stride; i++) {
+                sql.append(i > 0 ? SqlConstant.COMMA : "").append(SqlConstant.DELIM_START).append(row * stride + i).append(SqlConstant.DELIM_END);
+            }
+        }
+        sql.append(")) ").append(SOURCE).append(" (").append(KEY);
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(SqlConstant.COMMA).append(COLUMN).append(i).append(SUFFIX);
+        }
+        return sql.append(SqlConstant.BRACKET_END).toString();
+    }
+}
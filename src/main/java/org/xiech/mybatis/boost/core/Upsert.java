@@ -0,0 +1,302 @@
+package org.xiech.mybatis.boost.core;
+
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.constant.SqlClause;
+import org.xiech.mybatis.boost.core.constant.SqlConstant;
+import org.xiech.mybatis.boost.core.constant.SqlDialect;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 插入或更新：插入的列与多行insert相同（InsertRows），按照冲突列判断行是否已经存在，存在时更新其他列。
+ * 冲突列默认是@Column(unique = true)的列，没有时使用主键，必须是插入的参数列（自增主键和序列、UUID、METHOD生成的主键不能作为冲突列）；
+ * 更新的列默认是除冲突列、主键以外的所有插入的列。语法由SqlDialect.getUpsert()决定，
+ * Oracle等不支持VALUES行构造器的方言，MERGE的数据源使用SELECT ... FROM DUAL UNION ALL ...
+ *
+ * @author xiech
+ * @date 2020-08-27 15:30
+ */
+final class Upsert {
+    private static final String ROWS = "upsert:";
+    private static final String TARGET = "t";
+    private static final String SOURCE = "s";
+    private static final String UNION_ALL = "\nUNION ALL ";
+
+    private List<TableColumnDesc> conflictColumns = new ArrayList<>();
+    private List<TableColumnDesc> updateColumns;
+    /**
+     * 以下由values()确定
+     */
+    private List<TableColumnDesc> columns;
+    private SqlDialect dialect;
+    private String shapeKey;
+
+    /**
+     * 指定冲突列，必须在values()之前调用
+     *
+     * @param criteria
+     * @param columns  属性名、列名
+     */
+    void onConflict(AbstractCriteria<?, ?> criteria, List<String> columns) {
+        checkNoRows(criteria);
+        this.conflictColumns = findColumns(criteria, columns);
+    }
+
+    /**
+     * 指定冲突时更新的列，为空时冲突的行不更新，必须在values()之前调用
+     *
+     * @param criteria
+     * @param columns  属性名、列名
+     */
+    void update(AbstractCriteria<?, ?> criteria, List<String> columns) {
+        checkNoRows(criteria);
+        this.updateColumns = findColumns(criteria, columns);
+    }
+
+    void clear() {
+        this.conflictColumns = new ArrayList<>();
+        this.updateColumns = null;
+        this.columns = null;
+        this.dialect = null;
+        this.shapeKey = null;
+    }
+
+    /**
+     * 添加插入的列和多行数据，参数超过MetadataContext.getMaxBindParams()时按行拆分
+     *
+     * @param criteria
+     * @param rows     实体
+     */
+    void values(AbstractCriteria<?, ?> criteria, List<?> rows) {
+        String name = criteria.getBeanClass().getName();
+        if (rows == null || rows.isEmpty()) {
+            throw new CriteriaException(name + ": rows can`t be empty");
+        }
+        checkNoRows(criteria);
+        TableDesc tableDesc = criteria.getTableDesc();
+        List<TableColumnDesc> columns = InsertRows.columns(tableDesc);
+        List<TableColumnDesc> conflictColumns = this.conflictColumns.isEmpty() ? defaultConflictColumns(tableDesc, columns) : this.conflictColumns;
+        if (conflictColumns.isEmpty()) {
+            throw new CriteriaException(name + ": upsert needs a conflict target, an inserted primary key or @Column(unique = true) columns");
+        }
+        for (TableColumnDesc column : conflictColumns) {
+            if (!contains(columns, column) || InsertRows.generatedValue(column) != null) {
+                throw new CriteriaException(name + ": conflict column \"" + column.getFieldName() + "\" isn`t an inserted value");
+            }
+        }
+        List<TableColumnDesc> updateColumns = new ArrayList<>();
+        if (this.updateColumns != null) {
+            for (TableColumnDesc column : this.updateColumns) {
+                if (!contains(columns, column) || contains(conflictColumns, column)) {
+                    throw new CriteriaException(name + ": update column \"" + column.getFieldName() + "\" isn`t an inserted value or is a conflict column");
+                }
+                updateColumns.add(column);
+            }
+        } else {
+            for (TableColumnDesc column : columns) {
+                if (!contains(conflictColumns, column) && !InsertRows.isPrimaryKey(tableDesc, column)) {
+                    updateColumns.add(column);
+                }
+            }
+        }
+        this.columns = columns;
+        this.conflictColumns = conflictColumns;
+        this.updateColumns = updateColumns;
+        this.dialect = criteria.getDialect();
+        this.shapeKey = ROWS + this.dialect.name() + fieldNames(conflictColumns) + ':' + fieldNames(updateColumns) + ':';
+        if (this.dialect.getUpsert() != SqlDialect.Upsert.MERGE) {
+            String tableName = tableDesc.getDelimiterTableName();
+            criteria.addSegment(SqlClause.INSERT_INTO, null, () -> tableName);
+            for (TableColumnDesc column : columns) {
+                criteria.addSegment(SqlClause.INTO_COLUMNS, column.getFieldName(), column::getDelimiterColumnName);
+            }
+        }
+        criteria.addRows(rows, InsertRows.paramCount(columns));
+    }
+
+    /**
+     * 添加一批行的片段：INSERT的VALUES和处理冲突的子句，或者整个MERGE语句
+     *
+     * @param criteria
+     * @param rows     这一批的行
+     */
+    void addRowSegments(AbstractCriteria<?, ?> criteria, List<?> rows) {
+        TableDesc tableDesc = criteria.getTableDesc();
+        List<TableColumnDesc> columns = this.columns;
+        List<TableColumnDesc> conflictColumns = this.conflictColumns;
+        List<TableColumnDesc> updateColumns = this.updateColumns;
+        SqlDialect dialect = this.dialect;
+        int rowCount = rows.size();
+        Object[] params = InsertRows.params(columns, rows);
+        if (dialect.getUpsert() == SqlDialect.Upsert.MERGE) {
+            criteria.addSegment(SqlClause.MERGE_INTO, this.shapeKey + rowCount,
+                    () -> merge(tableDesc, dialect, columns, conflictColumns, updateColumns, rowCount), params);
+        } else {
+            criteria.addSegment(SqlClause.INTO_VALUES, this.shapeKey + rowCount, () -> InsertRows.template(columns, rowCount), params);
+            criteria.addSegment(SqlClause.UPSERT, null, () -> conflict(dialect, conflictColumns, updateColumns));
+        }
+    }
+
+    /**
+     * ON DUPLICATE KEY UPDATE a = VALUES(a)、ON CONFLICT (k) DO UPDATE SET a = EXCLUDED.a；
+     * 没有更新的列时，MySQL把第一个冲突列更新为自身，ON CONFLICT使用DO NOTHING
+     */
+    private static String conflict(SqlDialect dialect, List<TableColumnDesc> conflictColumns, List<TableColumnDesc> updateColumns) {
+        StringBuilder sql = new StringBuilder();
+        if (dialect.getUpsert() == SqlDialect.Upsert.ON_DUPLICATE_KEY) {
+            sql.append("ON DUPLICATE KEY UPDATE ");
+            if (updateColumns.isEmpty()) {
+                String column = conflictColumns.get(0).getDelimiterColumnName();
+                return sql.append(column).append(SqlConstant.EQ).append(column).toString();
+            }
+            for (int i = 0; i < updateColumns.size(); i++) {
+                String column = updateColumns.get(i).getDelimiterColumnName();
+                sql.append(i > 0 ? SqlConstant.COMMA : "").append(column).append(SqlConstant.EQ)
+                        .append("VALUES(").append(column).append(SqlConstant.BRACKET_END);
+            }
+            return sql.toString();
+        }
+        sql.append("ON CONFLICT ").append(SqlConstant.BRACKET_START).append(columnNames(conflictColumns)).append(") ");
+        if (updateColumns.isEmpty()) {
+            return sql.append("DO NOTHING").toString();
+        }
+        sql.append("DO UPDATE SET ");
+        for (int i = 0; i < updateColumns.size(); i++) {
+            String column = updateColumns.get(i).getDelimiterColumnName();
+            sql.append(i > 0 ? SqlConstant.COMMA : "").append(column).append(SqlConstant.EQ).append("EXCLUDED.").append(column);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * MERGE INTO之后的部分：
+     * table t
+     * USING (VALUES ({0}, {1})\n, ({2}, {3})) s (a, b)
+     * ON (t.k = s.k)
+     * WHEN MATCHED THEN UPDATE SET b = s.b
+     * WHEN NOT MATCHED THEN INSERT (a, b) VALUES (s.a, s.b)
+     */
+    private static String merge(TableDesc tableDesc, SqlDialect dialect, List<TableColumnDesc> columns,
+                                List<TableColumnDesc> conflictColumns, List<TableColumnDesc> updateColumns, int rowCount) {
+        List<TableColumnDesc> sourceColumns = new ArrayList<>(columns.size());
+        for (TableColumnDesc column : columns) {
+            if (InsertRows.generatedValue(column) == null) {
+                sourceColumns.add(column);
+            }
+        }
+        StringBuilder sql = new StringBuilder(tableDesc.getDelimiterTableName()).append(' ').append(TARGET).append("\nUSING (");
+        if (dialect.isMultiRowValues()) {
+            sql.append("VALUES (").append(InsertRows.template(sourceColumns, rowCount)).append(")) ").append(SOURCE)
+                    .append(" (").append(columnNames(sourceColumns)).append(SqlConstant.BRACKET_END);
+        } else {
+            int index = 0;
+            for (int row = 0; row < rowCount; row++) {
+                sql.append(row > 0 ? UNION_ALL : "").append("SELECT ");
+                for (int i = 0; i < sourceColumns.size(); i++) {
+                    sql.append(i > 0 ? SqlConstant.COMMA : "").append(SqlConstant.DELIM_START).append(index++).append(SqlConstant.DELIM_END)
+                            .append(' ').append(sourceColumns.get(i).getDelimiterColumnName());
+                }
+                sql.append(" FROM DUAL");
+            }
+            sql.append(") ").append(SOURCE);
+        }
+        sql.append("\nON (");
+        for (int i = 0; i < conflictColumns.size(); i++) {
+            String column = conflictColumns.get(i).getDelimiterColumnName();
+            sql.append(i > 0 ? SqlConstant.AND : "").append(TARGET).append(SqlConstant.DOT).append(column).append(SqlConstant.EQ)
+                    .append(SOURCE).append(SqlConstant.DOT).append(column);
+        }
+        sql.append(SqlConstant.BRACKET_END);
+        if (!updateColumns.isEmpty()) {
+            sql.append("\nWHEN MATCHED THEN UPDATE SET ");
+            for (int i = 0; i < updateColumns.size(); i++) {
+                String column = updateColumns.get(i).getDelimiterColumnName();
+                sql.append(i > 0 ? SqlConstant.COMMA : "").append(column).append(SqlConstant.EQ).append(SOURCE).append(SqlConstant.DOT).append(column);
+            }
+        }
+        sql.append("\nWHEN NOT MATCHED THEN INSERT (").append(columnNames(columns)).append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            TableColumnDesc column = columns.get(i);
+            String generatedValue = InsertRows.generatedValue(column);
+            sql.append(i > 0 ? SqlConstant.COMMA : "");
+            if (generatedValue != null) {
+                sql.append(generatedValue);
+            } else {
+                sql.append(SOURCE).append(SqlConstant.DOT).append(column.getDelimiterColumnName());
+            }
+        }
+        sql.append(SqlConstant.BRACKET_END);
+        if (dialect == SqlDialect.SQLSERVER) {
+            // SQL Server的MERGE必须以分号结束
+            sql.append(';');
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 默认的冲突列：插入的唯一列，没有时使用主键
+     */
+    private static List<TableColumnDesc> defaultConflictColumns(TableDesc tableDesc, List<TableColumnDesc> columns) {
+        List<TableColumnDesc> conflictColumns = new ArrayList<>();
+        for (TableColumnDesc column : columns) {
+            if (column.isUnique() && !InsertRows.isPrimaryKey(tableDesc, column)) {
+                conflictColumns.add(column);
+            }
+        }
+        TableColumnDesc primaryKey = tableDesc.getPrimaryKey();
+        if (conflictColumns.isEmpty() && primaryKey != null && contains(columns, primaryKey)
+                && InsertRows.generatedValue(primaryKey) == null) {
+            conflictColumns.add(primaryKey);
+        }
+        return conflictColumns;
+    }
+
+    private static List<TableColumnDesc> findColumns(AbstractCriteria<?, ?> criteria, List<String> columns) {
+        List<TableColumnDesc> tableColumnDescs = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            TableColumnDesc tableColumnDesc = criteria.getTableDesc().findColumn(column);
+            if (tableColumnDesc == null) {
+                throw new CriteriaException(criteria.getBeanClass().getName() + ": column \"" + column + "\" not found");
+            }
+            tableColumnDescs.add(tableColumnDesc);
+        }
+        return tableColumnDescs;
+    }
+
+    private static void checkNoRows(AbstractCriteria<?, ?> criteria) {
+        if (!criteria.getRowList().isEmpty()) {
+            throw new CriteriaException(criteria.getBeanClass().getName() + ": values(rows) has been called");
+        }
+    }
+
+    /**
+     * TableColumnDesc的equals会比较整个TableDesc，按引用比较
+     */
+    private static boolean contains(List<TableColumnDesc> columns, TableColumnDesc column) {
+        for (TableColumnDesc tableColumnDesc : columns) {
+            if (tableColumnDesc == column) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String columnNames(List<TableColumnDesc> columns) {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            names.append(i > 0 ? SqlConstant.COMMA : "").append(columns.get(i).getDelimiterColumnName());
+        }
+        return names.toString();
+    }
+
+    private static String fieldNames(List<TableColumnDesc> columns) {
+        StringBuilder names = new StringBuilder();
+        for (TableColumnDesc column : columns) {
+            names.append(',').append(column.getFieldName());
+        }
+        return names.toString();
+    }
+}
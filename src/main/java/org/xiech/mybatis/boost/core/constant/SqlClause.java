@@ -0,0 +1,38 @@
+package org.xiech.mybatis.boost.core.constant;
+
+/**
+ * Criteria记录的sql片段所属的子句，与org.apache.ibatis.jdbc.SQL的方法一一对应
+ */
+public enum SqlClause {
+    SELECT,
+    INSERT_INTO,
+    UPDATE,
+    DELETE_FROM,
+    FROM,
+    JOIN,
+    LEFT_OUTER_JOIN,
+    RIGHT_OUTER_JOIN,
+    OUTER_JOIN,
+    SET,
+    INTO_COLUMNS,
+    INTO_VALUES,
+    WHERE,
+    AND,
+    OR,
+    GROUP_BY,
+    ORDER_BY,
+    LIMIT,
+    OFFSET,
+    /**
+     * INSERT INTO之后处理冲突的子句：ON DUPLICATE KEY UPDATE ...、ON CONFLICT ...
+     */
+    UPSERT,
+    /**
+     * MERGE INTO，片段是表名之后的整个语句
+     */
+    MERGE_INTO,
+    /**
+     * UPDATE ... SET ... FROM，SET之后关联的表
+     */
+    UPDATE_FROM;
+}
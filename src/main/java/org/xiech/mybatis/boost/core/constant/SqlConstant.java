@@ -23,11 +23,17 @@ public interface SqlConstant {
     public static final String LIKE = " LIKE ";
     public static final String IN = " IN ";
     public static final String NOT_IN = " NOT IN ";
+    public static final String NOT_BETWEEN = " NOT BETWEEN ";
     public static final String EXISTS = " EXISTS ";
     public static final String NOT_EXISTS = " NOT EXISTS ";
     public static final String DESC = " DESC";
     public static final String ASC = " ASC";
     public static final String AS = " AS";
+    public static final String ON = " ON ";
+    public static final String ALWAYS_FALSE = "1 = 0";
+    public static final String COMMA = ", ";
+    public static final String BRACKET_START = "(";
+    public static final String BRACKET_END = ")";
 
 
     public static final String PERCENT = "%";
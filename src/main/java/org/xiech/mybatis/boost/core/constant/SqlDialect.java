@@ -0,0 +1,104 @@
+package org.xiech.mybatis.boost.core.constant;
+
+/**
+ * 数据库方言，决定分页等非标准语法的生成方式
+ */
+public enum SqlDialect {
+    MYSQL(Paging.LIMIT_OFFSET, true, Upsert.ON_DUPLICATE_KEY, BulkUpdate.CASE_WHEN),
+    POSTGRESQL(Paging.LIMIT_OFFSET, true, Upsert.ON_CONFLICT, BulkUpdate.FROM_VALUES),
+    H2(Paging.LIMIT_OFFSET, true, Upsert.MERGE, BulkUpdate.CASE_WHEN),
+    SQLITE(Paging.LIMIT_OFFSET, true, Upsert.ON_CONFLICT, BulkUpdate.CASE_WHEN),
+    /**
+     * Oracle 12c之前的版本，使用ROWNUM分页
+     */
+    ORACLE(Paging.ROWNUM, false, Upsert.MERGE, BulkUpdate.CASE_WHEN),
+    ORACLE12C(Paging.OFFSET_FETCH, false, Upsert.MERGE, BulkUpdate.CASE_WHEN),
+    /**
+     * SQL Server 2012及之后的版本，OFFSET ... FETCH必须有ORDER BY
+     */
+    SQLSERVER(Paging.OFFSET_FETCH, true, Upsert.MERGE, BulkUpdate.CASE_WHEN),
+    DB2(Paging.OFFSET_FETCH, true, Upsert.MERGE, BulkUpdate.CASE_WHEN);
+
+    private final Paging paging;
+    private final boolean multiRowValues;
+    private final Upsert upsert;
+    private final BulkUpdate bulkUpdate;
+
+    SqlDialect(Paging paging, boolean multiRowValues, Upsert upsert, BulkUpdate bulkUpdate) {
+        this.paging = paging;
+        this.multiRowValues = multiRowValues;
+        this.upsert = upsert;
+        this.bulkUpdate = bulkUpdate;
+    }
+
+    public Paging getPaging() {
+        return paging;
+    }
+
+    /**
+     * 是否支持INSERT INTO ... VALUES (...), (...)
+     *
+     * @return
+     */
+    public boolean isMultiRowValues() {
+        return multiRowValues;
+    }
+
+    public Upsert getUpsert() {
+        return upsert;
+    }
+
+    public BulkUpdate getBulkUpdate() {
+        return bulkUpdate;
+    }
+
+    /**
+     * 分页语法
+     */
+    public enum Paging {
+        /**
+         * ... LIMIT #{limit} OFFSET #{offset}
+         */
+        LIMIT_OFFSET,
+        /**
+         * ... OFFSET #{offset} ROWS FETCH FIRST #{limit} ROWS ONLY
+         */
+        OFFSET_FETCH,
+        /**
+         * SELECT * FROM (SELECT p_.*, ROWNUM rn_ FROM (...) p_ WHERE ROWNUM <= #{offset + limit}) WHERE rn_ > #{offset}
+         */
+        ROWNUM
+    }
+
+    /**
+     * 插入或更新的语法
+     */
+    public enum Upsert {
+        /**
+         * INSERT INTO ... VALUES (...) ON DUPLICATE KEY UPDATE a = VALUES(a)
+         */
+        ON_DUPLICATE_KEY,
+        /**
+         * INSERT INTO ... VALUES (...) ON CONFLICT (k) DO UPDATE SET a = EXCLUDED.a
+         */
+        ON_CONFLICT,
+        /**
+         * MERGE INTO table t USING (...) s ON (t.k = s.k) WHEN MATCHED THEN UPDATE ... WHEN NOT MATCHED THEN INSERT ...
+         */
+        MERGE
+    }
+
+    /**
+     * 按主键批量更新多行的语法
+     */
+    public enum BulkUpdate {
+        /**
+         * UPDATE table SET a = CASE id WHEN {0} THEN {1} ... END WHERE id IN ({0}, ...)
+         */
+        CASE_WHEN,
+        /**
+         * UPDATE table SET a = v_.c0_ FROM (VALUES ({0}, {1}), ...) v_ (k_, c0_) WHERE id = v_.k_
+         */
+        FROM_VALUES
+    }
+}
@@ -0,0 +1,20 @@
+package org.xiech.mybatis.boost.core.constant;
+
+/**
+ * in、not in条件的值列表的传参方式
+ */
+public enum SqlInMode {
+    /**
+     * 整个集合作为一个参数：column IN #{params.paramN}
+     */
+    COLLECTION,
+    /**
+     * 每个值一个参数：column IN (#{params.param0}, #{params.param1}, ...)，sql随列表的长度变化
+     */
+    EXPAND,
+    /**
+     * 与EXPAND相同，但是参数的个数补齐到1、2、4、8...1024（超过1024时补齐到1024的倍数），补齐的位置重复最后一个值，
+     * 不同的sql的数量只与列表长度的对数相关，数据库、mybatis的语句缓存不会被大量相似的sql占满
+     */
+    BUCKET;
+}
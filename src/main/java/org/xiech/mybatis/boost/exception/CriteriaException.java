@@ -8,4 +8,8 @@ public class CriteriaException extends IllegalArgumentException {
     public CriteriaException(String message) {
         super(message);
     }
+
+    public CriteriaException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -0,0 +1,247 @@
+package org.xiech.mybatis.boost.plugin;
+
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.xiech.mybatis.boost.core.AbstractCriteria;
+import org.xiech.mybatis.boost.core.RowsCriterion;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 执行拆分后的Criteria的插件：in条件超过MetadataContext.getInChunkSize()、多行insert的参数超过MetadataContext.getMaxBindParams()时，
+ * 每一批执行一次，查询按批次的顺序合并结果，更新累加影响的行数，mapper的调用方式不变。
+ * 多行insert的语句使用useGeneratedKeys时，改为使用CriteriaKeyGenerator把生成的主键回写到每一行。
+ * <p>
+ * 每一批是独立的查询，所以order by、limit、聚合函数只在每一批里面生效，or条件可能导致结果重复。
+ * 默认在当前的Executor上面依次执行（同一个事务）；指定SqlSessionFactory和线程池时，查询并行执行，
+ * 每一批使用单独的SqlSession，不在当前事务里面
+ *
+ * @author xiech
+ * @date 2020-08-24 10:30
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class ChunkInterceptor implements Interceptor {
+    private static final String UPDATE = "update";
+    private static final String DELIMITER = ",";
+
+    /**
+     * 使用CriteriaKeyGenerator的MappedStatement，按原来的MappedStatement缓存
+     */
+    private final Map<MappedStatement, MappedStatement> keyStatements = new ConcurrentHashMap<>();
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final ExecutorService executorService;
+
+    /**
+     * 在当前的Executor上面依次执行
+     */
+    public ChunkInterceptor() {
+        this(null, null);
+    }
+
+    /**
+     * 查询并行执行，并行度由线程池决定；更新仍然在当前的Executor上面依次执行
+     *
+     * @param sqlSessionFactory 每一批查询打开一个SqlSession
+     * @param executorService   执行查询的线程池
+     */
+    public ChunkInterceptor(SqlSessionFactory sqlSessionFactory, ExecutorService executorService) {
+        if ((sqlSessionFactory == null) != (executorService == null)) {
+            throw new CriteriaException("sqlSessionFactory and executorService must be both set or both null");
+        }
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        Object parameter = args[1];
+        AbstractCriteria<?, ?> criteria = findCriteria(parameter);
+        if (criteria == null) {
+            return invocation.proceed();
+        }
+        int count = criteria.getChunkCount();
+        Executor executor = (Executor) invocation.getTarget();
+        if (UPDATE.equals(invocation.getMethod().getName())) {
+            MappedStatement statement = keyStatement(ms, criteria);
+            if (count == 1 && statement == ms) {
+                return invocation.proceed();
+            }
+            int rows = 0;
+            for (int i = 0; i < count; i++) {
+                int updated = executor.update(statement, replace(parameter, criteria, criteria.chunk(i)));
+                // BatchExecutor只是加入批次，没有影响的行数
+                rows = updated == BatchExecutor.BATCH_UPDATE_RETURN_VALUE ? updated : rows + updated;
+            }
+            return rows;
+        }
+        if (count == 1) {
+            return invocation.proceed();
+        }
+        RowBounds rowBounds = (RowBounds) args[2];
+        ResultHandler<?> resultHandler = (ResultHandler<?>) args[3];
+        if (this.executorService != null && resultHandler == Executor.NO_RESULT_HANDLER) {
+            return parallelQuery(ms, parameter, rowBounds, criteria, count);
+        }
+        List<Object> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.addAll(executor.query(ms, replace(parameter, criteria, criteria.chunk(i)), rowBounds, resultHandler));
+        }
+        return results;
+    }
+
+    private List<Object> parallelQuery(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                       AbstractCriteria<?, ?> criteria, int count) throws Throwable {
+        List<Future<List<Object>>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Object chunkParameter = replace(parameter, criteria, criteria.chunk(i));
+            futures.add(this.executorService.submit(() -> {
+                try (SqlSession session = this.sqlSessionFactory.openSession()) {
+                    return session.selectList(ms.getId(), chunkParameter, rowBounds);
+                }
+            }));
+        }
+        List<Object> results = new ArrayList<>();
+        try {
+            for (Future<List<Object>> future : futures) {
+                results.addAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            for (Future<List<Object>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 多行insert（values(rows)）的语句使用useGeneratedKeys时，复制一个使用CriteriaKeyGenerator的MappedStatement；
+     * 单行的insert仍然使用原来的Jdbc3KeyGenerator
+     *
+     * @param ms
+     * @param criteria
+     * @return 不需要回写主键时返回原来的MappedStatement
+     */
+    private MappedStatement keyStatement(MappedStatement ms, AbstractCriteria<?, ?> criteria) {
+        if (!(criteria instanceof RowsCriterion) || ((RowsCriterion<?>) criteria).getRows().isEmpty()
+                || !(ms.getKeyGenerator() instanceof Jdbc3KeyGenerator) || ms.getKeyGenerator() instanceof CriteriaKeyGenerator) {
+            return ms;
+        }
+        return this.keyStatements.computeIfAbsent(ms, key -> new MappedStatement.Builder(key.getConfiguration(), key.getId(),
+                key.getSqlSource(), key.getSqlCommandType())
+                .resource(key.getResource())
+                .parameterMap(key.getParameterMap())
+                .resultMaps(key.getResultMaps())
+                .fetchSize(key.getFetchSize())
+                .timeout(key.getTimeout())
+                .statementType(key.getStatementType())
+                .resultSetType(key.getResultSetType())
+                .cache(key.getCache())
+                .flushCacheRequired(key.isFlushCacheRequired())
+                .useCache(key.isUseCache())
+                .resultOrdered(key.isResultOrdered())
+                .keyGenerator(CriteriaKeyGenerator.INSTANCE)
+                .keyProperty(join(key.getKeyProperties()))
+                .keyColumn(join(key.getKeyColumns()))
+                .databaseId(key.getDatabaseId())
+                .lang(key.getLang())
+                .resultSets(join(key.getResultSets()))
+                .build());
+    }
+
+    private static String join(String[] values) {
+        return values == null ? null : String.join(DELIMITER, values);
+    }
+
+    /**
+     * 参数本身是Criteria，或者mapper方法的参数里面有Criteria（ParamMap）；有多个时优先返回拆分的Criteria
+     *
+     * @param parameter
+     * @return 没有Criteria时返回null
+     */
+    private static AbstractCriteria<?, ?> findCriteria(Object parameter) {
+        if (parameter instanceof AbstractCriteria) {
+            return (AbstractCriteria<?, ?>) parameter;
+        }
+        AbstractCriteria<?, ?> found = null;
+        if (parameter instanceof Map) {
+            for (Object value : ((Map<?, ?>) parameter).values()) {
+                if (value instanceof AbstractCriteria) {
+                    AbstractCriteria<?, ?> criteria = (AbstractCriteria<?, ?>) value;
+                    if (criteria.getChunkCount() > 1) {
+                        return criteria;
+                    }
+                    if (found == null) {
+                        found = criteria;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 参数里面的RowsCriterion
+     *
+     * @param parameter
+     * @return 没有时返回null
+     */
+    static RowsCriterion<?> findRowsCriterion(Object parameter) {
+        if (parameter instanceof RowsCriterion) {
+            return (RowsCriterion<?>) parameter;
+        }
+        if (parameter instanceof Map) {
+            for (Object value : ((Map<?, ?>) parameter).values()) {
+                if (value instanceof RowsCriterion) {
+                    return (RowsCriterion<?>) value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把参数里面的Criteria替换为某一批的Criteria，ParamMap复制一份，不修改原来的参数
+     *
+     * @param parameter
+     * @param criteria
+     * @param chunk
+     * @return
+     */
+    private static Object replace(Object parameter, AbstractCriteria<?, ?> criteria, AbstractCriteria<?, ?> chunk) {
+        if (parameter == criteria) {
+            return chunk;
+        }
+        Map<String, Object> map = parameter instanceof MapperMethod.ParamMap ? new MapperMethod.ParamMap<>() : new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) parameter).entrySet()) {
+            map.put(String.valueOf(entry.getKey()), entry.getValue() == criteria ? chunk : entry.getValue());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,106 @@
+package org.xiech.mybatis.boost.plugin;
+
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.type.TypeHandler;
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.core.AbstractCriteria;
+import org.xiech.mybatis.boost.core.RowsCriterion;
+import org.xiech.mybatis.boost.util.reflect.PropertyAccessor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 多行insert回写自增主键：按照sql里面行的顺序，把getGeneratedKeys()的第一列（或者keyColumn指定的列）写入每一行的主键属性。
+ * 继承Jdbc3KeyGenerator，mybatis才会使用RETURN_GENERATED_KEYS创建PreparedStatement；参数不是RowsCriterion或者没有values(rows)时与Jdbc3KeyGenerator相同。
+ * 在BatchExecutor里面同一个PreparedStatement的多个Criteria依次从同一个ResultSet读取主键
+ *
+ * @author xiech
+ * @date 2020-08-26 14:10
+ */
+public class CriteriaKeyGenerator extends Jdbc3KeyGenerator {
+    public static final CriteriaKeyGenerator INSTANCE = new CriteriaKeyGenerator();
+
+    /**
+     * BatchExecutor执行批次之后，对同一个Statement里面的每个参数依次调用processAfter，
+     * 所有参数的主键在同一个ResultSet里面，按Statement记录读取的位置；Statement关闭时ResultSet随之关闭
+     */
+    private final Map<Statement, ResultSet> batchKeys = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Override
+    public void processBatch(MappedStatement ms, Statement stmt, Object parameter) {
+        RowsCriterion<?> criteria = findRows(parameter);
+        if (criteria == null) {
+            super.processBatch(ms, stmt, parameter);
+            return;
+        }
+        try (ResultSet rs = stmt.getGeneratedKeys()) {
+            assignKeys(ms, rs, criteria);
+            if (rs.next()) {
+                throw new ExecutorException("Too many keys are generated. There are only " + criteria.getRows().size() + " rows.");
+            }
+        } catch (SQLException e) {
+            throw new ExecutorException("Error getting generated key or setting result to rows. Cause: " + e, e);
+        }
+    }
+
+    @Override
+    public void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+        RowsCriterion<?> criteria = findRows(parameter);
+        if (!(executor instanceof BatchExecutor) || criteria == null) {
+            processBatch(ms, stmt, parameter);
+            return;
+        }
+        try {
+            ResultSet rs = this.batchKeys.get(stmt);
+            if (rs == null) {
+                rs = stmt.getGeneratedKeys();
+                this.batchKeys.put(stmt, rs);
+            }
+            assignKeys(ms, rs, criteria);
+        } catch (SQLException e) {
+            throw new ExecutorException("Error getting generated key or setting result to rows. Cause: " + e, e);
+        }
+    }
+
+    /**
+     * 参数里面带有多行数据的RowsCriterion，单行的insert（set()）按照Jdbc3KeyGenerator处理
+     *
+     * @param parameter
+     * @return 没有时返回null
+     */
+    private static RowsCriterion<?> findRows(Object parameter) {
+        RowsCriterion<?> criteria = ChunkInterceptor.findRowsCriterion(parameter);
+        return criteria == null || criteria.getRows().isEmpty() ? null : criteria;
+    }
+
+    /**
+     * 从ResultSet里面读取与行数相同的主键，依次写入每一行
+     */
+    private static void assignKeys(MappedStatement ms, ResultSet rs, RowsCriterion<?> criteria) throws SQLException {
+        List<?> rows = criteria.getRows();
+        TableColumnDesc primaryKey = ((AbstractCriteria<?, ?>) criteria).getTableDesc().getPrimaryKey();
+        if (rows.isEmpty() || primaryKey == null) {
+            return;
+        }
+        PropertyAccessor accessor = primaryKey.getPropertyAccessor();
+        TypeHandler<?> typeHandler = ms.getConfiguration().getTypeHandlerRegistry().getTypeHandler(accessor.getPropertyType());
+        String[] keyColumns = ms.getKeyColumns();
+        for (Object row : rows) {
+            if (!rs.next()) {
+                return;
+            }
+            Object key = keyColumns == null || keyColumns.length == 0 ? typeHandler.getResult(rs, 1) : typeHandler.getResult(rs, keyColumns[0]);
+            accessor.set(row, key);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.xiech.mybatis.boost.session;
+
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.SqlSession;
+import org.xiech.mybatis.boost.core.AbstractCriteria;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量执行Insert/Update的Criteria：基于ExecutorType.BATCH的SqlSession，连续执行的相同形状的Criteria生成相同的sql，
+ * mybatis把它们放在同一个PreparedStatement里面addBatch；加入的语句数量或者参数的估算字节数达到阈值时自动flush，
+ * 每次flush的BatchResult（每个PreparedStatement每个参数的影响行数）按顺序保存在getResults()里面。
+ * <p>
+ * 不会调整语句的顺序，形状交替出现时每次切换都会创建新的PreparedStatement，同一形状的Criteria应该连续加入。
+ * 事务由SqlSession决定（spring的SqlSessionTemplate同样适用），commit之前先调用flush()，否则最后一批的影响行数不会记录。
+ * 拆分的Criteria（ChunkInterceptor）每一批算一个语句。不是线程安全的
+ * <pre>
+ * try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+ *     CriteriaBatch batch = new CriteriaBatch(session);
+ *     for (User user : users) {
+ *         batch.insert("org.xiech.mapper.UserMapper.insert", new InsertCriteria&lt;User&gt;(User.class).set("name", user.getName()));
+ *     }
+ *     batch.flush();
+ *     session.commit();
+ * }
+ * </pre>
+ *
+ * @author xiech
+ * @date 2020-08-27 10:20
+ */
+public class CriteriaBatch {
+    public static final int DEFAULT_FLUSH_STATEMENTS = 1000;
+    public static final long DEFAULT_FLUSH_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * 无法估算的参数按固定的字节数计算
+     */
+    private static final int DEFAULT_VALUE_BYTES = 16;
+
+    private final SqlSession sqlSession;
+    private final int flushStatements;
+    private final long flushBytes;
+    private final List<BatchResult> results = new ArrayList<>();
+    private int pendingStatements;
+    private long pendingBytes;
+
+    public CriteriaBatch(SqlSession sqlSession) {
+        this(sqlSession, DEFAULT_FLUSH_STATEMENTS, DEFAULT_FLUSH_BYTES);
+    }
+
+    /**
+     * @param sqlSession      ExecutorType.BATCH的SqlSession
+     * @param flushStatements 加入多少个语句之后flush
+     * @param flushBytes      参数的估算字节数达到多少之后flush
+     */
+    public CriteriaBatch(SqlSession sqlSession, int flushStatements, long flushBytes) {
+        if (sqlSession == null) {
+            throw new CriteriaException("sqlSession is null");
+        }
+        if (flushStatements <= 0 || flushBytes <= 0) {
+            throw new CriteriaException("flushStatements and flushBytes must be positive");
+        }
+        this.sqlSession = sqlSession;
+        this.flushStatements = flushStatements;
+        this.flushBytes = flushBytes;
+    }
+
+    /**
+     * 加入一个insert语句
+     *
+     * @param statement mapper方法的id，例如UserMapper.class.getName() + ".insert"
+     * @param criteria  作为mapper方法的唯一参数
+     * @return
+     */
+    public CriteriaBatch insert(String statement, AbstractCriteria<?, ?> criteria) {
+        return add(this.sqlSession.insert(statement, criteria), criteria);
+    }
+
+    /**
+     * 加入一个update语句
+     *
+     * @param statement mapper方法的id
+     * @param criteria  作为mapper方法的唯一参数
+     * @return
+     */
+    public CriteriaBatch update(String statement, AbstractCriteria<?, ?> criteria) {
+        return add(this.sqlSession.update(statement, criteria), criteria);
+    }
+
+    /**
+     * 执行已经加入的语句
+     *
+     * @return 本次执行的BatchResult，没有待执行的语句时为空
+     */
+    public List<BatchResult> flush() {
+        if (this.pendingStatements == 0) {
+            return Collections.emptyList();
+        }
+        List<BatchResult> flushed = this.sqlSession.flushStatements();
+        this.results.addAll(flushed);
+        this.pendingStatements = 0;
+        this.pendingBytes = 0;
+        return flushed;
+    }
+
+    /**
+     * 已经执行的BatchResult，按执行的顺序
+     *
+     * @return
+     */
+    public List<BatchResult> getResults() {
+        return Collections.unmodifiableList(this.results);
+    }
+
+    /**
+     * 已经执行的语句影响的总行数，驱动返回SUCCESS_NO_INFO的语句不计算在内
+     *
+     * @return
+     */
+    public long getUpdateCount() {
+        long count = 0;
+        for (BatchResult result : this.results) {
+            for (int updateCount : result.getUpdateCounts()) {
+                if (updateCount > 0) {
+                    count += updateCount;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 还没有执行的语句数量
+     *
+     * @return
+     */
+    public int getPendingStatements() {
+        return pendingStatements;
+    }
+
+    private CriteriaBatch add(int updated, AbstractCriteria<?, ?> criteria) {
+        if (updated != BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+            // 语句已经直接执行了
+            throw new CriteriaException("sqlSession must be opened with ExecutorType.BATCH");
+        }
+        int count = criteria.getChunkCount();
+        this.pendingStatements += count;
+        // 拆分时当前Criteria的参数是第一批的，每一批的参数个数相近
+        this.pendingBytes += estimate(criteria.getParams().values()) * count;
+        if (this.pendingStatements >= this.flushStatements || this.pendingBytes >= this.flushBytes) {
+            flush();
+        }
+        return this;
+    }
+
+    /**
+     * 估算参数的字节数
+     */
+    private static long estimate(Object value) {
+        if (value == null) {
+            return 1;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() * 2L;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Date || value instanceof Temporal) {
+            return 8;
+        }
+        if (value instanceof Collection) {
+            long bytes = 0;
+            for (Object element : (Collection<?>) value) {
+                bytes += estimate(element);
+            }
+            return bytes;
+        }
+        if (value instanceof Map) {
+            return estimate(((Map<?, ?>) value).values());
+        }
+        return DEFAULT_VALUE_BYTES;
+    }
+}
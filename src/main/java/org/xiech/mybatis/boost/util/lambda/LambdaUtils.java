@@ -1,17 +1,14 @@
 package org.xiech.mybatis.boost.util.lambda;
 
 
+import org.xiech.mybatis.boost.exception.CriteriaException;
 import org.xiech.mybatis.boost.util.lambda.explain.ExplainFieldNameResult;
 import org.xiech.mybatis.boost.util.lambda.explain.SerializeFunction;
 
 import java.beans.Introspector;
 import java.lang.invoke.SerializedLambda;
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Lambda表达式的工具类
@@ -20,17 +17,23 @@ import java.util.regex.Pattern;
  * @date 2020-07-15 00:56:25
  **/
 public class LambdaUtils {
-    private static final Pattern GET_PATTERN = Pattern.compile("^get[A-Z].*");
-    private static final Pattern IS_PATTERN = Pattern.compile("^is[A-Z].*");
+    private static final String GET = "get";
+    private static final String IS = "is";
     private static final String WRITE_REPLACE = "writeReplace";
 
     /**
-     * SerializeFunction解析属性名的缓存，使用弱引用对象存储
+     * SerializeFunction解析属性名的缓存，直接挂在lambda生成的class上面（每个lambda表达式对应一个class），随着class一起被回收。
+     * 解析需要lambda的实例，所以ClassValue里面只存放一个引用，第一次解析成功时再设置
      */
-    private static final Map<String, WeakReference<ExplainFieldNameResult>> FIELD_NAME_CACHE = new ConcurrentHashMap<>();
+    private static final ClassValue<AtomicReference<ExplainFieldNameResult>> FIELD_NAME_CACHE = new ClassValue<AtomicReference<ExplainFieldNameResult>>() {
+        @Override
+        protected AtomicReference<ExplainFieldNameResult> computeValue(Class<?> type) {
+            return new AtomicReference<>();
+        }
+    };
 
     /**
-     * 通过Bean::getField()这种无参有返回值的Lambda表达式来获取JavaBean的属性名，获取失败时返回null。
+     * 通过Bean::getField()这种无参有返回值的Lambda表达式来获取JavaBean的属性名，获取失败时抛出CriteriaException。
      *
      * @param function 无参有返回值的Lambda表达式，类似Bean::getField()
      * @return
@@ -42,42 +45,60 @@ public class LambdaUtils {
     }
 
     /**
-     * 通过Bean::getField()这种无参有返回值的Lambda表达式来获取JavaBean的属性名，获取失败时返回null。
+     * 通过Bean::getField()这种无参有返回值的Lambda表达式来获取JavaBean的属性名，获取失败时抛出CriteriaException，失败不缓存。
      *
      * @param function 无参有返回值的Lambda表达式，类似Bean::getField()
      * @return
      */
     public static <T, R> ExplainFieldNameResult explainFieldNameResult(SerializeFunction<T, R> function) {
-        Class<? extends SerializeFunction> clazz = function.getClass();
-        String canonicalName = clazz.getCanonicalName();
-        return Optional.ofNullable(FIELD_NAME_CACHE.get(canonicalName))
-                .map(WeakReference::get)
-                .orElseGet(() -> {
-                    ExplainFieldNameResult result = null;
-                    try {
-                        Method method = clazz.getDeclaredMethod(WRITE_REPLACE);
-                        method.setAccessible(true);
-                        SerializedLambda serializedLambda = (SerializedLambda) method.invoke(function);
-                        String getter = serializedLambda.getImplMethodName();
-                        if (GET_PATTERN.matcher(getter).matches()) {
-                            getter = getter.substring(3);
-                        } else if (IS_PATTERN.matcher(getter).matches()) {
-                            getter = getter.substring(2);
-                        }
+        AtomicReference<ExplainFieldNameResult> reference = FIELD_NAME_CACHE.get(function.getClass());
+        ExplainFieldNameResult result = reference.get();
+        if (result == null) {
+            // 并发解析时结果相同，只保留第一个
+            reference.compareAndSet(null, explain(function));
+            result = reference.get();
+        }
+        return result;
+    }
+
+    private static <T, R> ExplainFieldNameResult explain(SerializeFunction<T, R> function) {
+        Class<?> clazz = function.getClass();
+        try {
+            Method method = clazz.getDeclaredMethod(WRITE_REPLACE);
+            method.setAccessible(true);
+            SerializedLambda serializedLambda = (SerializedLambda) method.invoke(function);
+            String getter = serializedLambda.getImplMethodName();
+            if (isPrefix(getter, GET)) {
+                getter = getter.substring(GET.length());
+            } else if (isPrefix(getter, IS)) {
+                getter = getter.substring(IS.length());
+            }
 
-                        int start = 2;
-                        int end = serializedLambda.getInstantiatedMethodType().indexOf(";)");
-                        String beanClassName = serializedLambda.getInstantiatedMethodType().substring(start, end).replaceAll("/", ".");
+            // (Lorg/xiech/User;)Ljava/lang/Object;
+            String instantiatedMethodType = serializedLambda.getInstantiatedMethodType();
+            int start = 2;
+            int end = instantiatedMethodType.indexOf(";)");
+            String beanClassName = instantiatedMethodType.substring(start, end).replace('/', '.');
 
-                        String fieldName = Introspector.decapitalize(getter);
+            String fieldName = Introspector.decapitalize(getter);
+            // 使用lambda所在的ClassLoader加载实体类，不同ClassLoader加载的同名类不会混用
+            Class<?> beanClass = Class.forName(beanClassName, false, clazz.getClassLoader());
+            return new ExplainFieldNameResult(fieldName, beanClassName, beanClass);
+        } catch (Exception e) {
+            throw new CriteriaException(clazz.getName() + ": explain lambda field name error", e);
+        }
+    }
 
-                        result = new ExplainFieldNameResult(fieldName, beanClassName);
-                        FIELD_NAME_CACHE.put(canonicalName, new WeakReference<ExplainFieldNameResult>(result));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    return result;
-                });
+    /**
+     * 方法名是否是 前缀+大写字母 开头，例如getName、isEnabled
+     *
+     * @param methodName
+     * @param prefix
+     * @return
+     */
+    private static boolean isPrefix(String methodName, String prefix) {
+        return methodName.length() > prefix.length() && methodName.startsWith(prefix)
+                && Character.isUpperCase(methodName.charAt(prefix.length()));
     }
 
-}
\ No newline at end of file
+}
@@ -1,9 +1,10 @@
 package org.xiech.mybatis.boost.util.lambda.explain;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
 
 /**
  * @author xiech
@@ -12,8 +13,20 @@ import lombok.ToString;
 @Data
 @ToString
 @NoArgsConstructor
-@AllArgsConstructor
 public class ExplainFieldNameResult {
     private String fieldName;
     private String beanClassName;
+    private Class<?> beanClass;
+    /**
+     * 最近一次解析到的列，由Criteria在第一次使用时设置；不同MetadataContext的TableDesc不同，使用前需要检查所属的TableDesc
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile TableColumnDesc tableColumnDesc;
+
+    public ExplainFieldNameResult(String fieldName, String beanClassName, Class<?> beanClass) {
+        this.fieldName = fieldName;
+        this.beanClassName = beanClassName;
+        this.beanClass = beanClass;
+    }
 }
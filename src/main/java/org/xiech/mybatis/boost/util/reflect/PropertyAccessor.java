@@ -0,0 +1,88 @@
+package org.xiech.mybatis.boost.util.reflect;
+
+/**
+ * 实体类属性的读写器，由PropertyAccessorFactory生成，避免Method.invoke的反射调用。
+ * int、long类型的属性可以使用getInt/setInt、getLong/setLong读写，不会产生装箱。
+ *
+ * @author xiech
+ * @date 2020-08-14 10:05
+ */
+public interface PropertyAccessor {
+
+    /**
+     * 属性的类型
+     *
+     * @return
+     */
+    Class<?> getPropertyType();
+
+    /**
+     * 是否有getter方法
+     *
+     * @return
+     */
+    boolean isReadable();
+
+    /**
+     * 是否有setter方法
+     *
+     * @return
+     */
+    boolean isWritable();
+
+    /**
+     * 读取属性值，基本类型会装箱
+     *
+     * @param bean 实体类对象
+     * @return
+     */
+    Object get(Object bean);
+
+    /**
+     * 设置属性值，基本类型的属性不能传null
+     *
+     * @param bean  实体类对象
+     * @param value 属性值
+     */
+    void set(Object bean, Object value);
+
+    /**
+     * 读取int类型的属性值，其他数值类型会转换为int
+     *
+     * @param bean 实体类对象
+     * @return
+     */
+    default int getInt(Object bean) {
+        return ((Number) get(bean)).intValue();
+    }
+
+    /**
+     * 设置int类型的属性值
+     *
+     * @param bean  实体类对象
+     * @param value 属性值
+     */
+    default void setInt(Object bean, int value) {
+        set(bean, value);
+    }
+
+    /**
+     * 读取long类型的属性值，其他数值类型会转换为long
+     *
+     * @param bean 实体类对象
+     * @return
+     */
+    default long getLong(Object bean) {
+        return ((Number) get(bean)).longValue();
+    }
+
+    /**
+     * 设置long类型的属性值
+     *
+     * @param bean  实体类对象
+     * @param value 属性值
+     */
+    default void setLong(Object bean, long value) {
+        set(bean, value);
+    }
+}
@@ -0,0 +1,298 @@
+package org.xiech.mybatis.boost.util.reflect;
+
+import java.beans.Introspector;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 通过LambdaMetafactory为getter/setter方法生成PropertyAccessor，生成后的调用与直接调用getter/setter方法基本一致；
+ * 实体类不可访问（非public）或者不能被当前ClassLoader看到时，使用反射实现
+ *
+ * @author xiech
+ * @date 2020-08-14 10:20
+ */
+public class PropertyAccessorFactory {
+    private static final String GET = "get";
+    private static final String IS = "is";
+    private static final String SET = "set";
+
+    private static final MethodType FUNCTION_TYPE = MethodType.methodType(Function.class);
+    private static final MethodType BI_CONSUMER_TYPE = MethodType.methodType(BiConsumer.class);
+    private static final MethodType TO_INT_FUNCTION_TYPE = MethodType.methodType(ToIntFunction.class);
+    private static final MethodType OBJ_INT_CONSUMER_TYPE = MethodType.methodType(ObjIntConsumer.class);
+    private static final MethodType TO_LONG_FUNCTION_TYPE = MethodType.methodType(ToLongFunction.class);
+    private static final MethodType OBJ_LONG_CONSUMER_TYPE = MethodType.methodType(ObjLongConsumer.class);
+
+    /**
+     * 按照属性名查找getter/setter方法并生成PropertyAccessor
+     *
+     * @param beanClass    实体类
+     * @param propertyName 属性名
+     * @return
+     */
+    public static PropertyAccessor create(Class<?> beanClass, String propertyName) {
+        String suffix = capitalize(propertyName);
+        Method readMethod = findMethod(beanClass, GET + suffix);
+        if (readMethod == null) {
+            readMethod = findMethod(beanClass, IS + suffix);
+            if (readMethod != null && readMethod.getReturnType() != boolean.class) {
+                readMethod = null;
+            }
+        }
+        Class<?> propertyType = readMethod != null ? readMethod.getReturnType() : null;
+        Method writeMethod = null;
+        for (Method method : beanClass.getMethods()) {
+            if (method.getName().equals(SET + suffix) && method.getParameterCount() == 1 && method.getReturnType() == void.class
+                    && !Modifier.isStatic(method.getModifiers())
+                    && (propertyType == null || method.getParameterTypes()[0] == propertyType)) {
+                writeMethod = method;
+                break;
+            }
+        }
+        return create(beanClass, readMethod, writeMethod);
+    }
+
+    /**
+     * 通过getter/setter方法生成PropertyAccessor
+     *
+     * @param beanClass   实体类
+     * @param readMethod  getter方法，可以为null
+     * @param writeMethod setter方法，可以为null
+     * @return
+     */
+    public static PropertyAccessor create(Class<?> beanClass, Method readMethod, Method writeMethod) {
+        Class<?> propertyType = readMethod != null ? readMethod.getReturnType()
+                : writeMethod != null ? writeMethod.getParameterTypes()[0] : Object.class;
+        if (isAccessible(readMethod) && isAccessible(writeMethod)) {
+            try {
+                return new LambdaPropertyAccessor(propertyType, readMethod, writeMethod);
+            } catch (Throwable e) {
+                // 生成失败时使用反射
+            }
+        }
+        return new ReflectPropertyAccessor(propertyType, readMethod, writeMethod);
+    }
+
+    /**
+     * 方法所在的类必须是public的，并且当前ClassLoader可以看到该类，否则生成的lambda在调用时会找不到类
+     *
+     * @param method
+     * @return
+     */
+    private static boolean isAccessible(Method method) {
+        if (method == null) {
+            return true;
+        }
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(declaringClass.getModifiers()) || !Modifier.isPublic(method.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(declaringClass.getName(), false, PropertyAccessorFactory.class.getClassLoader()) == declaringClass;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static Method findMethod(Class<?> beanClass, String name) {
+        try {
+            Method method = beanClass.getMethod(name);
+            return method.getReturnType() == void.class || Modifier.isStatic(method.getModifiers()) ? null : method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Introspector.decapitalize的逆操作：前两个字母都是大写的属性名（例如URL）保持不变
+     *
+     * @param propertyName
+     * @return
+     */
+    private static String capitalize(String propertyName) {
+        if (propertyName.isEmpty() || !Introspector.decapitalize(propertyName).equals(propertyName)
+                || (propertyName.length() > 1 && Character.isUpperCase(propertyName.charAt(1)))) {
+            return propertyName;
+        }
+        return Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+    }
+
+    /**
+     * 通过LambdaMetafactory生成的读写器，int、long类型的属性额外生成不装箱的读写方法
+     */
+    @SuppressWarnings("unchecked")
+    private static class LambdaPropertyAccessor implements PropertyAccessor {
+        private final Class<?> propertyType;
+        private final Function<Object, Object> getter;
+        private final BiConsumer<Object, Object> setter;
+        private final ToIntFunction<Object> intGetter;
+        private final ObjIntConsumer<Object> intSetter;
+        private final ToLongFunction<Object> longGetter;
+        private final ObjLongConsumer<Object> longSetter;
+
+        LambdaPropertyAccessor(Class<?> propertyType, Method readMethod, Method writeMethod) throws Throwable {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle readHandle = readMethod == null ? null : lookup.unreflect(readMethod);
+            MethodHandle writeHandle = writeMethod == null ? null : lookup.unreflect(writeMethod);
+            this.propertyType = propertyType;
+            this.getter = readHandle == null ? null : (Function<Object, Object>) lambda(lookup, "apply", FUNCTION_TYPE,
+                    MethodType.methodType(Object.class, Object.class), readHandle, readHandle.type().wrap());
+            this.setter = writeHandle == null ? null : (BiConsumer<Object, Object>) lambda(lookup, "accept", BI_CONSUMER_TYPE,
+                    MethodType.methodType(void.class, Object.class, Object.class), writeHandle, writeHandle.type().wrap().changeReturnType(void.class));
+            this.intGetter = readHandle == null || propertyType != int.class ? null : (ToIntFunction<Object>) lambda(lookup, "applyAsInt",
+                    TO_INT_FUNCTION_TYPE, MethodType.methodType(int.class, Object.class), readHandle, readHandle.type());
+            this.intSetter = writeHandle == null || propertyType != int.class ? null : (ObjIntConsumer<Object>) lambda(lookup, "accept",
+                    OBJ_INT_CONSUMER_TYPE, MethodType.methodType(void.class, Object.class, int.class), writeHandle, writeHandle.type());
+            this.longGetter = readHandle == null || propertyType != long.class ? null : (ToLongFunction<Object>) lambda(lookup, "applyAsLong",
+                    TO_LONG_FUNCTION_TYPE, MethodType.methodType(long.class, Object.class), readHandle, readHandle.type());
+            this.longSetter = writeHandle == null || propertyType != long.class ? null : (ObjLongConsumer<Object>) lambda(lookup, "accept",
+                    OBJ_LONG_CONSUMER_TYPE, MethodType.methodType(void.class, Object.class, long.class), writeHandle, writeHandle.type());
+        }
+
+        private static Object lambda(MethodHandles.Lookup lookup, String methodName, MethodType factoryType,
+                                     MethodType samMethodType, MethodHandle implMethod, MethodType instantiatedMethodType) throws Throwable {
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, methodName, factoryType, samMethodType, implMethod, instantiatedMethodType);
+            return callSite.getTarget().invoke();
+        }
+
+        @Override
+        public Class<?> getPropertyType() {
+            return propertyType;
+        }
+
+        @Override
+        public boolean isReadable() {
+            return getter != null;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return setter != null;
+        }
+
+        @Override
+        public Object get(Object bean) {
+            return getter.apply(bean);
+        }
+
+        @Override
+        public void set(Object bean, Object value) {
+            setter.accept(bean, value);
+        }
+
+        @Override
+        public int getInt(Object bean) {
+            return intGetter != null ? intGetter.applyAsInt(bean) : PropertyAccessor.super.getInt(bean);
+        }
+
+        @Override
+        public void setInt(Object bean, int value) {
+            if (intSetter != null) {
+                intSetter.accept(bean, value);
+            } else {
+                PropertyAccessor.super.setInt(bean, value);
+            }
+        }
+
+        @Override
+        public long getLong(Object bean) {
+            return longGetter != null ? longGetter.applyAsLong(bean) : PropertyAccessor.super.getLong(bean);
+        }
+
+        @Override
+        public void setLong(Object bean, long value) {
+            if (longSetter != null) {
+                longSetter.accept(bean, value);
+            } else {
+                PropertyAccessor.super.setLong(bean, value);
+            }
+        }
+    }
+
+    /**
+     * 使用反射实现的读写器
+     */
+    private static class ReflectPropertyAccessor implements PropertyAccessor {
+        private final Class<?> propertyType;
+        private final Method readMethod;
+        private final Method writeMethod;
+
+        ReflectPropertyAccessor(Class<?> propertyType, Method readMethod, Method writeMethod) {
+            this.propertyType = propertyType;
+            this.readMethod = readMethod;
+            this.writeMethod = writeMethod;
+            makeAccessible(readMethod);
+            makeAccessible(writeMethod);
+        }
+
+        /**
+         * 与isAccessible(Method)一样按修饰符判断，public类的public方法不需要setAccessible（Method.isAccessible()已经过时）
+         *
+         * @param method
+         */
+        private static void makeAccessible(Method method) {
+            if (method != null && (!Modifier.isPublic(method.getDeclaringClass().getModifiers()) || !Modifier.isPublic(method.getModifiers()))) {
+                method.setAccessible(true);
+            }
+        }
+
+        @Override
+        public Class<?> getPropertyType() {
+            return propertyType;
+        }
+
+        @Override
+        public boolean isReadable() {
+            return readMethod != null;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writeMethod != null;
+        }
+
+        @Override
+        public Object get(Object bean) {
+            try {
+                return readMethod.invoke(bean);
+            } catch (InvocationTargetException e) {
+                throw sneaky(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void set(Object bean, Object value) {
+            try {
+                writeMethod.invoke(bean, value);
+            } catch (InvocationTargetException e) {
+                throw sneaky(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static RuntimeException sneaky(Throwable e) {
+            if (e instanceof RuntimeException) {
+                return (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            return new IllegalStateException(e);
+        }
+    }
+}
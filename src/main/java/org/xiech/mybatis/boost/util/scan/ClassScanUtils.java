@@ -0,0 +1,83 @@
+package org.xiech.mybatis.boost.util.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 扫描包下面的class的工具类，支持目录和jar包
+ *
+ * @author xiech
+ * @date 2020-08-11 14:20
+ */
+public class ClassScanUtils {
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String FILE_PROTOCOL = "file";
+    private static final String JAR_PROTOCOL = "jar";
+
+    /**
+     * 扫描包（包含子包）下面的所有class name，不会加载class，忽略内部类以外的非class文件
+     *
+     * @param classLoader 加载资源的ClassLoader
+     * @param packageName 包名，例如：org.xiech.entity
+     * @return 按照名称排序的class name
+     * @throws IOException
+     */
+    public static Set<String> scanClassNames(ClassLoader classLoader, String packageName) throws IOException {
+        Set<String> classNames = new TreeSet<>();
+        String packagePath = packageName.replace('.', '/');
+        Enumeration<URL> resources = classLoader.getResources(packagePath);
+        while (resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            if (FILE_PROTOCOL.equals(url.getProtocol())) {
+                scanDirectory(toFile(url), packageName, classNames);
+            } else if (JAR_PROTOCOL.equals(url.getProtocol())) {
+                JarURLConnection connection = (JarURLConnection) url.openConnection();
+                connection.setUseCaches(false);
+                try (JarFile jarFile = connection.getJarFile()) {
+                    scanJar(jarFile, packagePath + "/", classNames);
+                }
+            }
+        }
+        return classNames;
+    }
+
+    private static void scanDirectory(File directory, String packageName, Set<String> classNames) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                scanDirectory(file, packageName + "." + file.getName(), classNames);
+            } else if (file.getName().endsWith(CLASS_SUFFIX)) {
+                classNames.add(packageName + "." + file.getName().substring(0, file.getName().length() - CLASS_SUFFIX.length()));
+            }
+        }
+    }
+
+    private static void scanJar(JarFile jarFile, String packagePath, Set<String> classNames) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(packagePath) && name.endsWith(CLASS_SUFFIX)) {
+                classNames.add(name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'));
+            }
+        }
+    }
+
+    private static File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return new File(url.getFile());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.xiech.test;
+
+import lombok.Data;
+import org.xiech.mybatis.boost.annotation.GenerationType;
+import org.xiech.mybatis.boost.annotation.Id;
+
+/**
+ * UUID主键的实体类
+ *
+ * @author xiech
+ * @date 2020-08-28 10:20
+ */
+@Data
+public class Account {
+    @Id(generationType = GenerationType.UUID)
+    private String id;
+    private String name;
+}
@@ -1,8 +1,60 @@
 package org.xiech.test;
 
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Assert;
 import org.junit.Test;
+import org.xiech.mybatis.boost.bean.MetaColumn;
+import org.xiech.mybatis.boost.core.AbstractCriteria;
+import org.xiech.mybatis.boost.core.BindSlot;
 import org.xiech.mybatis.boost.core.Criteria;
+import org.xiech.mybatis.boost.core.CriteriaPool;
+import org.xiech.mybatis.boost.core.InsertCriteria;
 import org.xiech.mybatis.boost.core.LambdaCriteria;
+import org.xiech.mybatis.boost.core.LambdaUpdateCriteria;
+import org.xiech.mybatis.boost.core.LambdaUpsertCriteria;
+import org.xiech.mybatis.boost.core.MetadataContext;
+import org.xiech.mybatis.boost.core.PreparedCriteria;
+import org.xiech.mybatis.boost.core.Reflections;
+import org.xiech.mybatis.boost.core.SqlShapeCache;
+import org.xiech.mybatis.boost.core.SqlTemplate;
+import org.xiech.mybatis.boost.core.UpdateCriteria;
+import org.xiech.mybatis.boost.core.UpsertCriteria;
+import org.xiech.mybatis.boost.core.constant.SqlDialect;
+import org.xiech.mybatis.boost.core.constant.SqlInMode;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+import org.xiech.mybatis.boost.plugin.ChunkInterceptor;
+import org.xiech.mybatis.boost.plugin.CriteriaKeyGenerator;
+import org.xiech.mybatis.boost.session.CriteriaBatch;
+import org.xiech.mybatis.boost.util.lambda.LambdaUtils;
+import org.xiech.mybatis.boost.util.lambda.explain.ExplainFieldNameResult;
+import org.xiech.mybatis.boost.util.lambda.explain.SerializeFunction;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * @author xiech
@@ -64,6 +116,663 @@ public class CriteriaTest {
 
     }
 
+    @Test
+    public void testLambdaFunc() {
+        LambdaCriteria<User> sql = new LambdaCriteria<User>(User.class).select(User::getId, User::getName)
+                .eq(User::getName, "xiech").in(User::getId, Arrays.asList(1, 2)).orderByDesc(User::getAge);
+        Assert.assertTrue(sql.toString().contains("t.name = #{params.param0}"));
+        Assert.assertTrue(sql.toString().contains("t.age DESC"));
+
+        // 解析结果缓存在lambda的class上面，并且带有解析到的列
+        SerializeFunction<User, String> name = User::getName;
+        ExplainFieldNameResult result = LambdaUtils.explainFieldNameResult(name);
+        Assert.assertSame(result, LambdaUtils.explainFieldNameResult(name));
+        // 列名在生成sql时才解析
+        new LambdaCriteria<User>(User.class).eq(name, "xiech").getSql();
+        Assert.assertSame(Reflections.getTableDesc(User.class).findColumn("name"), result.getTableColumnDesc());
+
+        // 不是lambda表达式时解析失败，抛出异常并且不缓存失败的结果
+        SerializeFunction<User, String> function = new SerializeFunction<User, String>() {
+            @Override
+            public String apply(User user) {
+                return user.getName();
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            try {
+                LambdaUtils.explainFieldNameResult(function);
+                Assert.fail();
+            } catch (CriteriaException e) {
+                Assert.assertTrue(e.getCause() instanceof NoSuchMethodException);
+            }
+        }
+    }
+
+    @Test
+    public void testMetaColumnFunc() {
+        // 一般由mybatis-boost-processor生成在User_里面
+        MetaColumn<User, Integer> id = new MetaColumn<>(User.class, "id");
+        MetaColumn<User, String> name = new MetaColumn<>(User.class, "name");
+        LambdaCriteria<User> sql = new LambdaCriteria<User>(User.class).select(id, name)
+                .eq(name, "xiech").like("xie", name).orderByAsc(id);
+        String expected = new LambdaCriteria<User>(User.class).select(User::getId, User::getName)
+                .eq(User::getName, "xiech").like("xie", User::getName).orderByAsc(User::getId).toString();
+        String actual = sql.toString();
+        Assert.assertEquals(expected, actual);
+        // 形状与lambda的写法相同，命中缓存时不会解析列名，getSql()总是重新生成
+        sql.getSql();
+        Assert.assertSame(Reflections.getTableDesc(User.class).findColumn("name"), name.getTableColumnDesc());
+
+        LambdaUpdateCriteria<User> update = new LambdaUpdateCriteria<User>(User.class).set(name, "xiech").eq(id, 1);
+        Assert.assertEquals(new LambdaUpdateCriteria<User>(User.class).set(User::getName, "xiech").eq(User::getId, 1).toString(), update.toString());
+    }
+
+    @Test
+    public void testNotBetweenAndLike() {
+        MetaColumn<User, Integer> age = new MetaColumn<>(User.class, "age");
+        Criteria<User> criteria = new Criteria<User>(User.class).select("name").notBetween("age", 18, 30)
+                .likeLeft("xie", "name").likeRight("ch", "name");
+        Assert.assertTrue(criteria.toString().endsWith("WHERE (t.age NOT BETWEEN #{params.param0} AND #{params.param1} "
+                + "AND t.name LIKE #{params.param2} AND t.name LIKE #{params.param3})"));
+        Assert.assertEquals(Arrays.asList(18, 30, "%xie", "ch%"), new ArrayList<>(criteria.getParams().values()));
+
+        LambdaCriteria<User> lambda = new LambdaCriteria<User>(User.class).select(User::getName).notBetween(User::getAge, 18, 30)
+                .likeLeft("xie", User::getName).likeRight("ch", User::getName);
+        Assert.assertEquals(criteria.toString(), lambda.toString());
+        Assert.assertEquals(new ArrayList<>(criteria.getParams().values()), new ArrayList<>(lambda.getParams().values()));
+        Assert.assertEquals(criteria.toString(), new LambdaCriteria<User>(User.class).select(User::getName).notBetween(age, 18, 30)
+                .likeLeft("xie", User::getName).likeRight("ch", User::getName).toString());
+        // 缺少开始值或结束值时不生成not between条件
+        Assert.assertFalse(new LambdaCriteria<User>(User.class).select(User::getName).notBetween(age, 18, null).toString().contains("BETWEEN"));
+    }
+
+    @Test
+    public void testShapeCache() {
+        MetadataContext context = new MetadataContext();
+        SqlShapeCache shapeCache = context.getShapeCache();
+        String first = new Criteria<User>(context, User.class).select("id", "name")
+                .eq("name", "xiech").in("id", Arrays.asList(1, 2)).orderByDesc("age").toString();
+        Criteria<User> criteria = new Criteria<User>(context, User.class).select("id", "name")
+                .eq("name", "boost").in("id", Arrays.asList(3, 4, 5)).orderByDesc("age");
+        String second = criteria.toString();
+        // 只有参数值不同，第二次直接使用缓存的sql
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, shapeCache.getMisses());
+        Assert.assertEquals(1, shapeCache.getHits());
+        Assert.assertEquals("boost", criteria.getParams().get("param0"));
+        Assert.assertEquals(second, criteria.getSql().toString());
+
+        // 未修改时重复调用不再查找缓存
+        Assert.assertSame(second, criteria.toString());
+        Assert.assertEquals(1, shapeCache.getHits());
+        criteria.eq("age", 18);
+        Assert.assertNotEquals(second, criteria.toString());
+        Assert.assertEquals(2, shapeCache.getMisses());
+
+        // 列不同则是另外一个形状
+        new Criteria<User>(context, User.class).select("id", "name").eq("id", 1).toString();
+        Assert.assertEquals(3, shapeCache.getMisses());
+        Assert.assertEquals(3, shapeCache.size());
+
+        String insert = new InsertCriteria<User>(context, User.class).set("name", "xiech").set("age", 18).toString();
+        Assert.assertTrue(insert.contains("(name, age)"));
+        Assert.assertTrue(insert.contains("(#{params.param0}, #{params.param1})"));
+    }
+
+    @Test
+    public void testSqlRenderer() {
+        MetadataContext context = new MetadataContext();
+        // 不缓存，每次toString()都重新渲染
+        context.getShapeCache().setMaxSize(0);
+        List<AbstractCriteria<User, ?>> criterias = Arrays.asList(
+                new Criteria<User>(context, User.class).select("id", "name").leftJoin(User.class, null, "id", "id")
+                        .eq("name", "xiech").and(i -> i.eq("id", 2).or().eq("id", 3)).groupBy("name").orderByDesc("age"),
+                new Criteria<User>(context, User.class).select("id").eq("id", 1).eq("id", 2).and().or().eq("id", 3).or(),
+                new Criteria<User>(context, User.class).and().eq("id", 1),
+                new InsertCriteria<User>(context, User.class).set("name", "xiech").set("age", 18),
+                new UpdateCriteria<User>(context, User.class).set("name", "xiech").set("age", 18).eq("id", 1).or().eq("id", 2));
+        for (AbstractCriteria<User, ?> criteria : criterias) {
+            Assert.assertEquals(criteria.getSql().toString(), criteria.toString());
+        }
+
+        // 缓存已关闭，每次都经过渲染，相同形状的Criteria渲染出相同的sql
+        Supplier<Criteria<User>> criteria = () -> new Criteria<User>(context, User.class).select("id", "name")
+                .leftJoin(User.class, null, "id", "id").eq("name", "xiech").groupBy("name").orderByDesc("age");
+        String sql = criteria.get().toString();
+        for (int i = 0; i < 3; i++) {
+            Criteria<User> rendered = criteria.get();
+            Assert.assertEquals(sql, rendered.toString());
+            Assert.assertEquals(rendered.getSql().toString(), rendered.toString());
+            Assert.assertEquals(Collections.singletonList("xiech"), new ArrayList<>(rendered.getParams().values()));
+        }
+        Assert.assertEquals(0, context.getShapeCache().getHits());
+    }
+
+    @Test
+    public void testSqlTemplate() {
+        SqlTemplate template = SqlTemplate.compile("u.name = {0} and u.age = {1} and u.id in ({a}, {})");
+        Assert.assertSame(template, SqlTemplate.compile("u.name = {0} and u.age = {1} and u.id in ({a}, {})"));
+        Assert.assertEquals(2, template.getSlotCount());
+        Assert.assertEquals("u.name = #{params.param3} and u.age = #{params.param4} and u.id in ({a}, {})", template.bind(3, 2));
+        // 形参超出参数个数时，与之前的正则替换一样保留原文
+        Assert.assertEquals("u.name = #{params.param0} and u.age = {1} and u.id in ({a}, {})", template.bind(0, 1));
+
+        String sql = new Criteria<User>(User.class).select("id").eq("id", 1)
+                .exists("(select 1 from role r where r.id = {0} and r.name = {1})", 2, "admin").toString();
+        Assert.assertTrue(sql.contains("r.id = #{params.param1} and r.name = #{params.param2}"));
+    }
+
+    @Test
+    public void testCriteriaParams() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ids.add(i);
+        }
+        Criteria<User> criteria = new Criteria<User>(User.class).select("id").eq("name", "xiech").in("id", ids);
+        for (int i = 0; i < 500; i++) {
+            criteria.eq("id", i);
+        }
+        Map<String, Object> params = criteria.getParams();
+        Assert.assertEquals(502, params.size());
+        Assert.assertEquals("xiech", params.get("param0"));
+        Assert.assertSame(ids, params.get("param1"));
+        Assert.assertEquals(499, params.get("param501"));
+        Assert.assertNull(params.get("param502"));
+        Assert.assertFalse(params.containsKey("param01"));
+        Assert.assertEquals("param501", new ArrayList<>(params.keySet()).get(501));
+        try {
+            params.put("param0", "boost");
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // 只读
+        }
+
+        criteria.clear();
+        Assert.assertTrue(params.isEmpty());
+    }
+
+    @Test
+    public void testPreparedCriteria() throws Exception {
+        PreparedCriteria prepared = new Criteria<User>(User.class).select("id", "name")
+                .eq("name", BindSlot.of("name")).in("id", BindSlot.of("ids")).ge("age", 18).prepare();
+        Assert.assertTrue(prepared.getNames().containsAll(Arrays.asList("name", "ids")));
+
+        // 多个线程共享同一个PreparedCriteria
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<PreparedCriteria.Bound>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String name = "user" + i;
+                List<Integer> ids = Arrays.asList(i, i + 1);
+                futures.add(executor.submit(() -> {
+                    Map<String, Object> values = new HashMap<>();
+                    values.put("name", name);
+                    values.put("ids", ids);
+                    return prepared.bind(values);
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                PreparedCriteria.Bound bound = futures.get(i).get();
+                Assert.assertSame(prepared.getSql(), bound.getSql());
+                Assert.assertEquals("user" + i, bound.getParams().get("param0"));
+                Assert.assertEquals(Arrays.asList(i, i + 1), bound.getParams().get("param1"));
+                Assert.assertEquals(18, bound.getParams().get("param2"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PreparedCriteria positional = new LambdaCriteria<User>(User.class).select(User::getId)
+                .eq(User::getName, BindSlot.of(0)).le(User::getAge, BindSlot.of(1)).prepare();
+        PreparedCriteria.Bound bound = positional.bind("xiech", 30);
+        Assert.assertEquals("xiech", bound.getParams().get("param0"));
+        Assert.assertEquals(30, bound.getParams().get("param1"));
+        try {
+            positional.bind("xiech");
+            Assert.fail();
+        } catch (CriteriaException e) {
+            // 缺少参数
+        }
+    }
+
+    @Test
+    public void testCriteriaPool() {
+        Criteria<User> first;
+        try (CriteriaPool.Lease<Criteria<User>> lease = CriteriaPool.criteria(User.class)) {
+            first = lease.get();
+            String sql = first.select("id").eq("name", "xiech").toString();
+            // 嵌套借用时是另外一个实例
+            try (CriteriaPool.Lease<Criteria<User>> nested = CriteriaPool.criteria(User.class)) {
+                Assert.assertNotSame(first, nested.get());
+                Assert.assertEquals(sql, nested.get().select("id").eq("name", "boost").toString());
+            }
+        }
+        CriteriaPool.Lease<Criteria<User>> stale = CriteriaPool.criteria(User.class);
+        // 归还后clear()，下次借用的是同一个实例
+        Assert.assertSame(first, stale.get());
+        Assert.assertTrue(stale.get().getParams().isEmpty());
+        stale.close();
+        try {
+            stale.get();
+            Assert.fail();
+        } catch (CriteriaException e) {
+            // 已归还
+        }
+        try (CriteriaPool.Lease<Criteria<User>> lease = CriteriaPool.criteria(User.class)) {
+            // 再次借用的是新的Lease，已归还的Lease不能再使用
+            Assert.assertNotSame(stale, lease);
+            Assert.assertSame(first, lease.get());
+            try {
+                stale.get();
+                Assert.fail();
+            } catch (CriteriaException e) {
+                // 已归还
+            }
+            // 已归还的Lease再次close()不影响当前的借用
+            stale.close();
+            try (CriteriaPool.Lease<Criteria<User>> nested = CriteriaPool.criteria(User.class)) {
+                Assert.assertNotSame(first, nested.get());
+            }
+        }
+
+        // 反复借用的是同一个实例，与每次新建生成相同的sql（形状缓存里面的同一个字符串）
+        String sql = new Criteria<User>(User.class).select("id", "name").eq("name", "xiech").orderByDesc("age").toString();
+        for (int i = 0; i < 3; i++) {
+            try (CriteriaPool.Lease<Criteria<User>> lease = CriteriaPool.criteria(User.class)) {
+                Assert.assertSame(first, lease.get());
+                Assert.assertSame(sql, lease.get().select("id", "name").eq("name", "xiech").orderByDesc("age").toString());
+                Assert.assertEquals(Collections.singletonList("xiech"), new ArrayList<>(lease.get().getParams().values()));
+            }
+        }
+        CriteriaPool.clear();
+    }
+
+    @Test
+    public void testInMode() {
+        MetadataContext context = new MetadataContext();
+        context.setInMode(SqlInMode.BUCKET);
+        Criteria<User> criteria = new Criteria<User>(context, User.class).select("id").in("id", Arrays.asList(1, 2, 3));
+        String sql = criteria.toString();
+        Assert.assertTrue(sql.contains("t.id IN (#{params.param0}, #{params.param1}, #{params.param2}, #{params.param3})"));
+        Assert.assertEquals(3, criteria.getParams().get("param3"));
+        // 5~8个值是同一个sql
+        Assert.assertSame(new Criteria<User>(context, User.class).select("id").in("id", Arrays.asList(1, 2, 3, 4, 5)).toString(),
+                new Criteria<User>(context, User.class).select("id").in("id", Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8)).toString());
+        Set<String> sqls = new HashSet<>();
+        for (int size = 1; size <= 1024; size++) {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                ids.add(i);
+            }
+            sqls.add(new LambdaCriteria<User>(context, User.class).select(User::getId).notIn(User::getId, ids).toString());
+        }
+        Assert.assertEquals(11, sqls.size());
+
+        // 单独设置的优先
+        sql = new Criteria<User>(context, User.class).inMode(SqlInMode.EXPAND).select("id").in("id", Arrays.asList(1, 2, 3)).toString();
+        Assert.assertTrue(sql.contains("t.id IN (#{params.param0}, #{params.param1}, #{params.param2})"));
+        sql = new Criteria<User>(context, User.class).inMode(SqlInMode.COLLECTION).select("id").in("id", Arrays.asList(1, 2, 3)).toString();
+        Assert.assertTrue(sql.contains("t.id IN #{params.param0}"));
+        sql = new Criteria<User>(context, User.class).select("id").in("id", Collections.emptyList()).notIn("id", Collections.emptyList()).toString();
+        Assert.assertTrue(sql.endsWith("WHERE (1 = 0)"));
+
+        // 同一个MetadataContext里面，COLLECTION与只有一个值的EXPAND、BUCKET参数个数相同，不能共用缓存的sql
+        sql = new Criteria<User>(context, User.class).inMode(SqlInMode.COLLECTION).select("id").in("id", Collections.singletonList(1)).toString();
+        Assert.assertTrue(sql.endsWith("t.id IN #{params.param0})"));
+        sql = new Criteria<User>(context, User.class).inMode(SqlInMode.EXPAND).select("id").in("id", Collections.singletonList(1)).toString();
+        Assert.assertTrue(sql.endsWith("t.id IN (#{params.param0}))"));
+        sql = new Criteria<User>(context, User.class).inMode(SqlInMode.BUCKET).select("id").in("id", Collections.singletonList(1)).toString();
+        Assert.assertTrue(sql.endsWith("t.id IN (#{params.param0}))"));
+
+        // clear()之后恢复使用MetadataContext的设置
+        Criteria<User> cleared = new Criteria<User>(context, User.class).inMode(SqlInMode.COLLECTION).select("id").in("id", Arrays.asList(1, 2));
+        Assert.assertEquals(SqlInMode.BUCKET, cleared.clear().getInMode());
+    }
+
+    @Test
+    public void testInChunk() throws Exception {
+        MetadataContext context = new MetadataContext();
+        context.setInMode(SqlInMode.EXPAND);
+        context.setInChunkSize(3);
+        // 去重后7个值，拆分为3批，最后一批重复最后一个值补齐
+        Criteria<User> criteria = new Criteria<User>(context, User.class).select("id").eq("name", "a")
+                .in("id", Arrays.asList(1, 2, 3, 3, 4, 5, 6, 7));
+        // 拆分后不能直接生成sql，避免只执行第一批
+        try {
+            criteria.toString();
+            Assert.fail();
+        } catch (CriteriaException e) {
+            // 需要按批次执行
+        }
+        String sql = criteria.chunk(0).toString();
+        Assert.assertEquals(3, criteria.getChunkCount());
+        Assert.assertTrue(sql.contains("t.id IN (#{params.param1}, #{params.param2}, #{params.param3})"));
+        Criteria<User> last = criteria.chunk(2);
+        Assert.assertSame(sql, last.toString());
+        Assert.assertEquals(Arrays.asList("a", 7, 7, 7), new ArrayList<>(last.getParams().values()));
+        Assert.assertEquals(Arrays.asList("a", 1, 2, 3), new ArrayList<>(criteria.getParams().values()));
+        // not in不拆分
+        Assert.assertEquals(1, new Criteria<User>(context, User.class).select("id").notIn("id", Arrays.asList(1, 2, 3, 4)).getChunkCount());
+
+        // 插件依次执行每一批，按顺序合并结果
+        Executor executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(), new Class<?>[]{Executor.class},
+                (proxy, method, args) -> new ArrayList<>(((Criteria<?>) ((Map<?, ?>) args[1]).get("criteria")).getParams().values()));
+        Executor plugin = (Executor) new ChunkInterceptor().plugin(executor);
+        MappedStatement ms = new MappedStatement.Builder(new Configuration(), "select", parameterObject -> null, SqlCommandType.SELECT).build();
+        MapperMethod.ParamMap<Object> parameter = new MapperMethod.ParamMap<>();
+        parameter.put("criteria", criteria);
+        List<Object> results = plugin.query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(Arrays.asList("a", 1, 2, 3, "a", 4, 5, 6, "a", 7, 7, 7), results);
+    }
+
+    @Test
+    public void testPageAfter() {
+        MetadataContext context = new MetadataContext();
+        LambdaCriteria<User> first = new LambdaCriteria<User>(context, User.class).select(User::getId).orderByDesc(User::getAge).pageAfter(null, 20);
+        Assert.assertTrue(first.toString().endsWith("ORDER BY t.age DESC, t.id DESC LIMIT #{params.param0}"));
+
+        User last = new User();
+        last.setId(42);
+        last.setAge(18);
+        String token = first.nextPageToken(last);
+        LambdaCriteria<User> next = new LambdaCriteria<User>(context, User.class).select(User::getId).orderByDesc(User::getAge).pageAfter(token, 20);
+        Assert.assertTrue(next.toString().contains("WHERE ((t.age < #{params.param0} OR (t.age = #{params.param0} AND t.id < #{params.param1})))"));
+        Assert.assertEquals(Arrays.asList(18, 42, 20), new ArrayList<>(next.getParams().values()));
+        Assert.assertEquals(next.toString(), next.getSql().toString());
+
+        // SQL Server的FETCH前面必须有OFFSET
+        LambdaCriteria<User> sqlServer = new LambdaCriteria<User>(context, User.class).dialect(SqlDialect.SQLSERVER)
+                .select(User::getId).orderByDesc(User::getAge).pageAfter(token, 20);
+        Assert.assertTrue(sqlServer.toString().endsWith("ORDER BY t.age DESC, t.id DESC OFFSET 0 ROWS FETCH FIRST #{params.param2} ROWS ONLY"));
+        Assert.assertEquals(Arrays.asList(18, 42, 20), new ArrayList<>(sqlServer.getParams().values()));
+        Assert.assertEquals(sqlServer.toString(), sqlServer.getSql().toString());
+
+        // 方向相同时可以使用行值比较；令牌不能用于其他排序的查询
+        context.setKeysetRowValue(true);
+        String sql = new Criteria<User>(context, User.class).select("id").orderByDesc("age").pageAfter(token, 20).toString();
+        Assert.assertTrue(sql.contains("WHERE ((t.age, t.id) < (#{params.param0}, #{params.param1}))"));
+        try {
+            new Criteria<User>(context, User.class).select("id").orderByAsc("age").pageAfter(token, 20);
+            Assert.fail();
+        } catch (CriteriaException e) {
+            // 排序不一致
+        }
+    }
+
+    @Test
+    public void testPage() {
+        MetadataContext context = new MetadataContext();
+        Criteria<User> criteria = new Criteria<User>(context, User.class).select("id", "name").leftJoin(User.class, "u", "id", "id")
+                .eq("name", "xiech").orderByDesc("age").page(3, 20);
+        Assert.assertTrue(criteria.toString().endsWith("ORDER BY t.age DESC LIMIT #{params.param1} OFFSET #{params.param2}"));
+        Assert.assertEquals(Arrays.asList("xiech", 20, 40L), new ArrayList<>(criteria.getParams().values()));
+        Assert.assertEquals(criteria.getSql().toString(), criteria.toString());
+        // 一对一的左连接没有被引用时去掉
+        String countSql = criteria.getCountSql();
+        Assert.assertEquals("SELECT COUNT(*)\nFROM user t\nWHERE (t.name = #{params.param0})", countSql);
+        Assert.assertSame(countSql, new Criteria<User>(context, User.class).select("id", "name").leftJoin(User.class, "u", "id", "id")
+                .eq("name", "a").orderByDesc("age").page(1, 10).getCountSql());
+        countSql = new Criteria<User>(context, User.class).select("name").leftJoin(User.class, "u", "id", "id")
+                .eq("u.name", "xiech").groupBy("name").getCountSql();
+        Assert.assertTrue(countSql.startsWith("SELECT COUNT(*) FROM (\nSELECT t.name\nFROM user t\nLEFT OUTER JOIN user u ON u.id = t.id"));
+
+        String sql = new Criteria<User>(context, User.class).dialect(SqlDialect.SQLSERVER).select("id").orderByAsc("id").page(2, 10).toString();
+        Assert.assertTrue(sql.endsWith("ORDER BY t.id ASC OFFSET #{params.param1} ROWS FETCH FIRST #{params.param0} ROWS ONLY"));
+        Criteria<User> oracle = new Criteria<User>(context, User.class).dialect(SqlDialect.ORACLE).select("id").orderByAsc("id").page(2, 10);
+        Assert.assertTrue(oracle.toString().startsWith("SELECT * FROM (SELECT p_.*, ROWNUM rn_ FROM (\nSELECT t.id"));
+        Assert.assertEquals(Arrays.asList(20L, 10L), new ArrayList<>(oracle.getParams().values()));
+        // clear()之后恢复使用MetadataContext的方言
+        Assert.assertEquals(SqlDialect.MYSQL, oracle.clear().getDialect());
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void testJoinOtherColumn() {
+        MetadataContext context = new MetadataContext();
+        // 连接的列在连接的实体类里面查找
+        Class joined = Ticket.class;
+        String sql = new Criteria<User>(context, User.class).select("id").leftJoin(joined, "k", "name", "title").toString();
+        Assert.assertEquals("SELECT t.id\nFROM user t\nLEFT OUTER JOIN ticket k ON k.title = t.name", sql);
+        SerializeFunction title = (SerializeFunction<Ticket, String>) Ticket::getTitle;
+        Assert.assertEquals(sql, new LambdaCriteria<User>(context, User.class).select(User::getId)
+                .leftJoin(joined, "k", (SerializeFunction) (SerializeFunction<User, String>) User::getName, title).toString());
+        // 连接的实体类的主键是一对一的连接，没有被引用时去掉
+        String countSql = new Criteria<User>(context, User.class).select("id").leftJoin(joined, "k", "name", "id").getCountSql();
+        Assert.assertEquals("SELECT COUNT(*)\nFROM user t", countSql);
+    }
+
+    @Test
+    public void testInsertValues() throws Exception {
+        MetadataContext context = new MetadataContext();
+        context.setMaxBindParams(6);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setName("user" + i);
+            user.setAge(i);
+            users.add(user);
+        }
+        // 每行3个参数（没有@Id的默认主键id与Reflections.getInsertSQL一样插入），每批2行
+        InsertCriteria<User> criteria = new InsertCriteria<User>(context, User.class).values(users);
+        Assert.assertEquals(3, criteria.getChunkCount());
+        try {
+            criteria.toString();
+            Assert.fail();
+        } catch (CriteriaException e) {
+            // 拆分后不能直接生成sql
+        }
+        InsertCriteria<User> first = criteria.chunk(0);
+        Assert.assertEquals(first.getSql().toString(), first.toString());
+        Assert.assertTrue(first.toString().endsWith("(id, age, name)\nVALUES (#{params.param0}, #{params.param1}, #{params.param2})\n"
+                + ", (#{params.param3}, #{params.param4}, #{params.param5})"));
+        Assert.assertEquals(users.subList(4, 5), criteria.chunk(2).getRows());
+        Assert.assertEquals(3, criteria.chunk(2).getParams().size());
+
+        // 插件执行每一批，并使用CriteriaKeyGenerator回写自增主键
+        int[] nextKey = {100};
+        Executor executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(), new Class<?>[]{Executor.class}, (proxy, method, args) -> {
+            MappedStatement ms = (MappedStatement) args[0];
+            Assert.assertTrue(ms.getKeyGenerator() instanceof CriteriaKeyGenerator);
+            InsertCriteria<?> chunk = (InsertCriteria<?>) args[1];
+            ms.getKeyGenerator().processAfter(null, ms, generatedKeys(chunk.getRows().size(), nextKey), chunk);
+            return chunk.getRows().size();
+        });
+        MappedStatement ms = new MappedStatement.Builder(new Configuration(), "insert", parameterObject -> null, SqlCommandType.INSERT)
+                .keyGenerator(Jdbc3KeyGenerator.INSTANCE).keyProperty("id").build();
+        Assert.assertEquals(5, ((Executor) new ChunkInterceptor().plugin(executor)).update(ms, criteria));
+        for (int i = 0; i < users.size(); i++) {
+            Assert.assertEquals(100 + i, users.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testInsertGeneratedKey() throws Exception {
+        MetadataContext context = new MetadataContext();
+        MappedStatement ms = new MappedStatement.Builder(new Configuration(), "insert", parameterObject -> null, SqlCommandType.INSERT)
+                .keyGenerator(Jdbc3KeyGenerator.INSTANCE).keyProperty("user.id").build();
+        // 单行insert不替换KeyGenerator
+        List<MappedStatement> executed = new ArrayList<>();
+        Executor executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(), new Class<?>[]{Executor.class}, (proxy, method, args) -> {
+            executed.add((MappedStatement) args[0]);
+            return 1;
+        });
+        InsertCriteria<User> criteria = new InsertCriteria<User>(context, User.class).set("name", "xiech");
+        Assert.assertEquals(1, ((Executor) new ChunkInterceptor().plugin(executor)).update(ms, criteria));
+        Assert.assertSame(ms, executed.get(0));
+
+        // 没有values(rows)时与Jdbc3KeyGenerator相同，按照keyProperty回写主键
+        User user = new User();
+        MapperMethod.ParamMap<Object> parameter = new MapperMethod.ParamMap<>();
+        parameter.put("criteria", criteria);
+        parameter.put("user", user);
+        CriteriaKeyGenerator.INSTANCE.processBatch(ms, generatedKeys(1, new int[]{100}), parameter);
+        Assert.assertEquals(100, user.getId());
+    }
+
+    @Test
+    public void testInsertGeneratedValues() {
+        MetadataContext context = new MetadataContext();
+        Account account = new Account();
+        account.setName("xiech");
+        Ticket ticket = new Ticket();
+        ticket.setTitle("title");
+
+        // UUID、METHOD主键与Reflections.getInsertSQL一样使用表达式，不是参数
+        Assert.assertTrue(context.getTableDesc(Account.class).getInsertSQL().endsWith("VALUES (#{@static@UUID}, #{name})"));
+        InsertCriteria<Account> accounts = new InsertCriteria<Account>(context, Account.class).values(Arrays.asList(account, account));
+        Assert.assertTrue(accounts.toString().endsWith("(id, name)\nVALUES (#{@static@UUID}, #{params.param0})\n, (#{@static@UUID}, #{params.param1})"));
+        Assert.assertEquals(Arrays.asList("xiech", "xiech"), new ArrayList<>(accounts.getParams().values()));
+
+        Assert.assertTrue(context.getTableDesc(Ticket.class).getInsertSQL().endsWith("VALUES (#{@static@ticketNo}, #{title})"));
+        InsertCriteria<Ticket> tickets = new InsertCriteria<Ticket>(context, Ticket.class).values(Collections.singletonList(ticket));
+        Assert.assertTrue(tickets.toString().endsWith("(id, title)\nVALUES (#{@static@ticketNo}, #{params.param0})"));
+        Assert.assertEquals(Collections.singletonList("title"), new ArrayList<>(tickets.getParams().values()));
+
+        // upsert插入的列相同，生成的主键不能作为冲突列
+        String sql = new UpsertCriteria<Account>(context, Account.class).dialect(SqlDialect.POSTGRESQL).onConflict("name")
+                .value(account).toString();
+        Assert.assertTrue(sql.contains("VALUES (#{@static@UUID}, #{params.param0})\nON CONFLICT (name) DO NOTHING"));
+        try {
+            new UpsertCriteria<Account>(context, Account.class).value(account);
+            Assert.fail();
+        } catch (CriteriaException e) {
+            // 没有冲突列
+        }
+        sql = new UpsertCriteria<Ticket>(context, Ticket.class).dialect(SqlDialect.ORACLE).onConflict("title").value(ticket).toString();
+        Assert.assertTrue(sql.endsWith("WHEN NOT MATCHED THEN INSERT (id, title) VALUES (#{@static@ticketNo}, s.title)"));
+    }
+
+    @Test
+    public void testUpsert() {
+        MetadataContext context = new MetadataContext();
+        User user = new User();
+        user.setName("xiech");
+        user.setAge(18);
+        // 没有唯一列时使用默认的主键id作为冲突列
+        String sql = new UpsertCriteria<User>(context, User.class).value(user).toString();
+        Assert.assertTrue(sql.endsWith("ON DUPLICATE KEY UPDATE age = VALUES(age), name = VALUES(name)"));
+        sql = new UpsertCriteria<User>(context, User.class).onConflict("name").value(user).toString();
+        Assert.assertEquals("INSERT INTO user\n (id, age, name)\nVALUES (#{params.param0}, #{params.param1}, #{params.param2})\n"
+                + "ON DUPLICATE KEY UPDATE age = VALUES(age)", sql);
+        sql = new LambdaUpsertCriteria<User>(context, User.class).dialect(SqlDialect.POSTGRESQL).onConflict(User::getName)
+                .values(Arrays.asList(user, user)).toString();
+        Assert.assertTrue(sql.endsWith(", (#{params.param3}, #{params.param4}, #{params.param5})\nON CONFLICT (name) DO UPDATE SET age = EXCLUDED.age"));
+
+        context.setMaxBindParams(3);
+        UpsertCriteria<User> merge = new UpsertCriteria<User>(context, User.class).dialect(SqlDialect.ORACLE).onConflict("name")
+                .update().values(Arrays.asList(user, user));
+        Assert.assertEquals(2, merge.getChunkCount());
+        sql = merge.chunk(1).toString();
+        Assert.assertEquals("MERGE INTO user t\nUSING (SELECT #{params.param0} id, #{params.param1} age, #{params.param2} name FROM DUAL) s\n"
+                + "ON (t.name = s.name)\nWHEN NOT MATCHED THEN INSERT (id, age, name) VALUES (s.id, s.age, s.name)", sql);
+        sql = new UpsertCriteria<User>(context, User.class).dialect(SqlDialect.SQLSERVER).onConflict("name").value(user).toString();
+        Assert.assertTrue(sql.contains("USING (VALUES (#{params.param0}, #{params.param1}, #{params.param2})) s (id, age, name)"));
+        Assert.assertTrue(sql.contains("WHEN MATCHED THEN UPDATE SET age = s.age"));
+    }
+
+    @Test
+    public void testUpdateValues() {
+        MetadataContext context = new MetadataContext();
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            User user = new User();
+            user.setId(i);
+            user.setName("user" + i);
+            user.setAge(20 + i);
+            users.add(user);
+        }
+        UpdateCriteria<User> criteria = new UpdateCriteria<User>(context, User.class).values(users.subList(0, 2), "name", "age");
+        Assert.assertEquals("UPDATE user\nSET name = CASE id WHEN #{params.param0} THEN #{params.param1} WHEN #{params.param3} THEN #{params.param4} ELSE name END, "
+                + "age = CASE id WHEN #{params.param0} THEN #{params.param2} WHEN #{params.param3} THEN #{params.param5} ELSE age END\n"
+                + "WHERE (id IN (#{params.param6}, #{params.param7}))", criteria.toString());
+        Assert.assertEquals(Arrays.asList(1, "user1", 21, 2, "user2", 22, 1, 2), new ArrayList<>(criteria.getParams().values()));
+        // 主键条件不能连接到or()上面
+        try {
+            new UpdateCriteria<User>(context, User.class).eq("age", 1).or().values(users, "name");
+            Assert.fail();
+        } catch (CriteriaException e) {
+            // or()
+        }
+        Assert.assertTrue(new UpdateCriteria<User>(context, User.class).eq("age", 1).values(users, "name").toString()
+                .endsWith("WHERE (age = #{params.param0} AND id IN (#{params.param7}, #{params.param8}, #{params.param9}))"));
+
+        // FROM_VALUES每行2个参数（主键、name），每批2行
+        context.setMaxBindParams(4);
+        LambdaUpdateCriteria<User> lambda = new LambdaUpdateCriteria<User>(context, User.class).dialect(SqlDialect.POSTGRESQL)
+                .values(users, User::getName);
+        Assert.assertEquals(2, lambda.getChunkCount());
+        String sql = lambda.chunk(1).toString();
+        Assert.assertEquals("UPDATE user\nSET name = v_.c0_\nFROM (VALUES (#{params.param0}, #{params.param1})) v_ (k_, c0_)\n"
+                + "WHERE (id = v_.k_)", sql);
+        Assert.assertEquals(Arrays.asList(3, "user3"), new ArrayList<>(lambda.chunk(1).getParams().values()));
+    }
+
+    @Test
+    public void testCriteriaBatch() {
+        // 模拟BatchExecutor：连续相同的sql放在同一个BatchResult里面
+        List<BatchResult> pending = new ArrayList<>();
+        SqlSession session = (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(), new Class<?>[]{SqlSession.class}, (proxy, method, args) -> {
+            if ("flushStatements".equals(method.getName())) {
+                List<BatchResult> flushed = new ArrayList<>(pending);
+                pending.clear();
+                for (BatchResult result : flushed) {
+                    int[] counts = new int[result.getParameterObjects().size()];
+                    Arrays.fill(counts, 1);
+                    result.setUpdateCounts(counts);
+                }
+                return flushed;
+            }
+            String sql = args[1].toString();
+            if (pending.isEmpty() || !pending.get(pending.size() - 1).getSql().equals(sql)) {
+                pending.add(new BatchResult(null, sql, args[1]));
+            } else {
+                pending.get(pending.size() - 1).addParameterObject(args[1]);
+            }
+            return BatchExecutor.BATCH_UPDATE_RETURN_VALUE;
+        });
+        CriteriaBatch batch = new CriteriaBatch(session, 3, 1024);
+        for (int i = 0; i < 4; i++) {
+            batch.insert("insert", new InsertCriteria<User>(User.class).set("name", "user" + i));
+        }
+        batch.update("update", new UpdateCriteria<User>(User.class).set("age", 1).eq("id", 1));
+        Assert.assertEquals(2, batch.getPendingStatements());
+        // 参数超过字节数的阈值时立即执行
+        char[] name = new char[600];
+        batch.insert("insert", new InsertCriteria<User>(User.class).set("name", new String(name)));
+        Assert.assertEquals(0, batch.getPendingStatements());
+        List<BatchResult> results = batch.getResults();
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(3, results.get(0).getParameterObjects().size());
+        Assert.assertEquals(1, results.get(1).getParameterObjects().size());
+        Assert.assertEquals(6, batch.getUpdateCount());
+        Assert.assertTrue(batch.flush().isEmpty());
+    }
+
+    /**
+     * getGeneratedKeys()返回count个从nextKey开始的主键
+     */
+    private static Statement generatedKeys(int count, int[] nextKey) {
+        int[] remaining = {count};
+        ResultSet keys = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                    return remaining[0]-- > 0;
+                case "getInt":
+                    return nextKey[0]++;
+                case "wasNull":
+                    return false;
+                case "getMetaData":
+                    // Jdbc3KeyGenerator按照列的类型选择TypeHandler
+                    return Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                            (metaProxy, metaMethod, metaArgs) -> "getColumnCount".equals(metaMethod.getName()) ? 1
+                                    : "getColumnType".equals(metaMethod.getName()) ? Types.INTEGER : null);
+                default:
+                    return null;
+            }
+        });
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class}, (proxy, method, args) -> keys);
+    }
+
     public static void main(String[] args) {
         Criteria sql = new Criteria<User>(User.class).select("id").eq("id", 1).and(i -> i.eq("id", 2).or().eq("id", 3).eq("id", 4)).eq("id", 5);
         System.out.println(sql);
@@ -0,0 +1,172 @@
+package org.xiech.test;
+
+import lombok.Data;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.core.Reflections;
+import org.xiech.mybatis.boost.core.TableDescProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并发解析同一个实体类：所有线程必须拿到同一个TableDesc实例（没有重复解析），并且不会读到SQL还没有生成的TableDesc
+ *
+ * @author xiech
+ * @date 2020-08-12 10:20
+ */
+public class ReflectionsConcurrencyTest {
+    private static final int THREADS = 16;
+
+    @Test
+    public void testConcurrentResolve() throws Exception {
+        Class<?>[] beanClasses = {Entity0.class, Entity1.class, Entity2.class, Entity3.class,
+                Entity4.class, Entity5.class, Entity6.class, Entity7.class};
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Class<?> beanClass : beanClasses) {
+                int builds = CountingTableDescProvider.count(beanClass);
+                CyclicBarrier barrier = new CyclicBarrier(THREADS);
+                List<Future<TableDesc>> futures = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        TableDesc tableDesc = Reflections.getTableDesc(beanClass);
+                        // 读到的TableDesc必须是完整的
+                        Assert.assertNotNull(tableDesc.getInsertSQL());
+                        Assert.assertNotNull(tableDesc.getUpdateSQL());
+                        Assert.assertNotNull(tableDesc.getSelectSQL());
+                        Assert.assertNotNull(tableDesc.getDeleteSQL());
+                        Assert.assertEquals(4, tableDesc.getColumns().size());
+                        return tableDesc;
+                    }));
+                }
+                TableDesc first = futures.get(0).get();
+                for (Future<TableDesc> future : futures) {
+                    Assert.assertSame(beanClass.getName(), first, future.get());
+                }
+                // 只解析了一次
+                Assert.assertEquals(beanClass.getName(), builds + 1, CountingTableDescProvider.count(beanClass));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPublishedColumnsReadOnly() {
+        Reflections.getTableDesc(User.class).getColumns().clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPublishedTableDescReadOnly() {
+        Reflections.getTableDesc(User.class).setTableName("role");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPublishedTableColumnDescReadOnly() {
+        Reflections.getTableDesc(User.class).findColumn("name").setColumnName("role");
+    }
+
+    /**
+     * 通过ServiceLoader注册（src/test/resources），每次解析TableDesc时都会查找注册表，用于统计解析的次数；
+     * 总是返回null，仍然通过反射解析
+     */
+    public static class CountingTableDescProvider implements TableDescProvider {
+        private static final Map<Class<?>, AtomicInteger> COUNTS = new ConcurrentHashMap<>();
+
+        static int count(Class<?> beanClass) {
+            AtomicInteger count = COUNTS.get(beanClass);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public Reflections.DatabaseColumnNameStyle getDatabaseColumnNameStyle() {
+            // 与默认的上下文一致，否则不会被查找
+            return Reflections.getDefaultContext().getDatabaseColumnNameStyle();
+        }
+
+        @Override
+        public String getDatabaseDelimiter() {
+            return Reflections.getDefaultContext().getDatabaseDelimiter();
+        }
+
+        @Override
+        public TableDesc getTableDesc(Class<?> beanClass) {
+            COUNTS.computeIfAbsent(beanClass, key -> new AtomicInteger()).incrementAndGet();
+            return null;
+        }
+    }
+
+    @Data
+    public static class Entity0 {
+        private long id;
+        private String name;
+        private String remark;
+        private int status;
+    }
+
+    @Data
+    public static class Entity1 {
+        private long id;
+        private String name;
+        private String remark;
+        private int status;
+    }
+
+    @Data
+    public static class Entity2 {
+        private long id;
+        private String name;
+        private String remark;
+        private int status;
+    }
+
+    @Data
+    public static class Entity3 {
+        private long id;
+        private String name;
+        private String remark;
+        private int status;
+    }
+
+    @Data
+    public static class Entity4 {
+        private long id;
+        private String name;
+        private String remark;
+        private int status;
+    }
+
+    @Data
+    public static class Entity5 {
+        private long id;
+        private String name;
+        private String remark;
+        private int status;
+    }
+
+    @Data
+    public static class Entity6 {
+        private long id;
+        private String name;
+        private String remark;
+        private int status;
+    }
+
+    @Data
+    public static class Entity7 {
+        private long id;
+        private String name;
+        private String remark;
+        private int status;
+    }
+}
@@ -0,0 +1,231 @@
+package org.xiech.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xiech.mybatis.boost.bean.TableColumnDesc;
+import org.xiech.mybatis.boost.bean.TableDesc;
+import org.xiech.mybatis.boost.bean.WarmUpReport;
+import org.xiech.mybatis.boost.core.Criteria;
+import org.xiech.mybatis.boost.core.MetadataContext;
+import org.xiech.mybatis.boost.core.MetadataSnapshot;
+import org.xiech.mybatis.boost.core.Reflections;
+import org.xiech.mybatis.boost.core.TableDescProvider;
+import org.xiech.mybatis.boost.exception.CriteriaException;
+import org.xiech.mybatis.boost.util.reflect.PropertyAccessor;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ServiceLoader;
+
+/**
+ * @author xiech
+ * @date 2020-08-11 15:10
+ */
+public class ReflectionsTest {
+
+    @Test
+    public void testWarmUp() throws Exception {
+        WarmUpReport report = Reflections.warmUp(Arrays.asList(User.class, Role.class));
+        Assert.assertTrue(report.isSuccess());
+        Assert.assertEquals(2, report.getEntries().size());
+
+        // 扫描包下面加了@Table注解的实体类
+        report = Reflections.warmUp("org.xiech.test");
+        Assert.assertTrue(report.isSuccess());
+        Assert.assertTrue(report.getEntries().stream().anyMatch(x -> x.getBeanClassName().equals(Role.class.getName())));
+
+        // 默认使用线程的上下文ClassLoader扫描，也可以指定ClassLoader
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        try (URLClassLoader empty = new URLClassLoader(new URL[0], null)) {
+            thread.setContextClassLoader(empty);
+            MetadataContext context = new MetadataContext();
+            Assert.assertTrue(context.warmUp("org.xiech.test").getEntries().isEmpty());
+            report = context.warmUp(Role.class.getClassLoader(), "org.xiech.test");
+            Assert.assertTrue(report.isSuccess());
+            Assert.assertTrue(report.getEntries().stream().anyMatch(x -> x.getBeanClassName().equals(Role.class.getName())));
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    @Test
+    public void testClassLoaderIsolation() throws Exception {
+        // 使用新的ClassLoader加载同名的User类，两者的TableDesc互不影响
+        URL location = User.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{location}, null)) {
+            Class<?> otherUserClass = classLoader.loadClass(User.class.getName());
+            Assert.assertNotSame(User.class, otherUserClass);
+
+            TableDesc tableDesc = Reflections.getTableDesc(User.class);
+            TableDesc otherTableDesc = Reflections.getTableDesc(otherUserClass);
+            Assert.assertNotSame(tableDesc, otherTableDesc);
+            Assert.assertSame(otherTableDesc, Reflections.getTableDesc(otherUserClass));
+            Assert.assertEquals(tableDesc.getSelectSQL(), otherTableDesc.getSelectSQL());
+        }
+    }
+
+    @Test
+    public void testFindColumn() {
+        TableDesc tableDesc = Reflections.getTableDesc(WideEntity.class);
+        Assert.assertEquals(81, tableDesc.getColumnArray().length);
+        TableColumnDesc column = tableDesc.findColumn("column79");
+        Assert.assertSame(column, tableDesc.findColumn("column79"));
+        Assert.assertSame(column, tableDesc.findColumn("COLUMN79"));
+        Assert.assertSame(column, tableDesc.getColumn(column.getOrdinal()));
+        Assert.assertNull(tableDesc.findColumn("column80"));
+
+        // 对比原来的线性查找
+        int times = 1_000_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            String c = "column" + (i % 80);
+            tableDesc.getColumns().values().stream()
+                    .filter(x -> x.getFieldName().equals(c) || x.getColumnName().equals(c))
+                    .findFirst().orElse(null);
+        }
+        long scanNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            tableDesc.findColumn("column" + (i % 80));
+        }
+        long indexNanos = System.nanoTime() - start;
+        Assert.assertTrue("stream scan: " + scanNanos / times + "ns/op, index: " + indexNanos / times + "ns/op", indexNanos < scanNanos);
+    }
+
+    @Test
+    public void testPropertyAccessor() throws Exception {
+        TableDesc tableDesc = Reflections.getTableDesc(User.class);
+        PropertyAccessor id = tableDesc.findColumn("id").getPropertyAccessor();
+        PropertyAccessor name = tableDesc.findColumn("name").getPropertyAccessor();
+        PropertyAccessor age = tableDesc.findColumn("age").getPropertyAccessor();
+        Assert.assertSame(id, tableDesc.findColumn("id").getPropertyAccessor());
+        Assert.assertEquals(int.class, id.getPropertyType());
+
+        User user = new User();
+        id.setInt(user, 10);
+        name.set(user, "xiech");
+        age.set(user, 18);
+        Assert.assertEquals(10, user.getId());
+        Assert.assertEquals(10, id.getInt(user));
+        Assert.assertEquals(10L, id.getLong(user));
+        Assert.assertEquals("xiech", name.get(user));
+        Assert.assertEquals(18, age.get(user));
+
+        // 对比PropertyDescriptor反射调用
+        int times = 1_000_000;
+        Method readMethod = User.class.getMethod("getId");
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            sum += (Integer) readMethod.invoke(user);
+        }
+        long reflectNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            sum += id.getInt(user);
+        }
+        long accessorNanos = System.nanoTime() - start;
+        Assert.assertEquals(2L * times * 10, sum);
+        Assert.assertTrue("reflect: " + reflectNanos / times + "ns/op, accessor: " + accessorNanos / times + "ns/op", accessorNanos < reflectNanos);
+    }
+
+    @Test
+    public void testMetadataContext() {
+        MetadataContext mysql = new MetadataContext(Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE, "`");
+        MetadataContext oracle = new MetadataContext(Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_UPPERCASE, "\"");
+        TableDesc mysqlTableDesc = mysql.getTableDesc(User.class);
+        TableDesc oracleTableDesc = oracle.getTableDesc(User.class);
+        Assert.assertSame(mysqlTableDesc, mysql.getTableDesc(User.class));
+        Assert.assertEquals("`user`", mysqlTableDesc.getDelimiterTableName());
+        Assert.assertEquals("\"USER\"", oracleTableDesc.getDelimiterTableName());
+        Assert.assertNotSame(Reflections.getTableDesc(User.class), mysqlTableDesc);
+
+        Criteria<User> criteria = new Criteria<>(oracle, User.class);
+        criteria.select("id", "name").eq("name", "xiech");
+        Assert.assertSame(oracle, criteria.getMetadataContext());
+        Assert.assertTrue(criteria.getSql().toString().contains("\"NAME\""));
+    }
+
+    @Test
+    public void testGeneratedTableDesc() {
+        // mybatis-boost-processor在编译测试代码时为加了@Table的实体类生成注册表
+        TableDesc generated = null;
+        for (TableDescProvider provider : ServiceLoader.load(TableDescProvider.class)) {
+            if (generated == null && provider.getDatabaseColumnNameStyle() == Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE
+                    && provider.getDatabaseDelimiter().isEmpty()) {
+                generated = provider.getTableDesc(User.class);
+            }
+        }
+        Assert.assertNotNull(generated);
+
+        // 命名规则、分隔符一致时使用注册表，没有经过反射解析
+        MetadataContext context = new MetadataContext();
+        TableDesc tableDesc = context.getTableDesc(User.class);
+        Assert.assertNull(tableDesc.getBeanInfo());
+        Assert.assertEquals(generated.getSelectSQL(), tableDesc.getSelectSQL());
+        Assert.assertEquals(generated.getInsertSQL(), tableDesc.getInsertSQL());
+
+        // 分隔符不一致时通过反射解析，结果与注册表一致
+        TableDesc reflected = new MetadataContext(Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE, "`").getTableDesc(User.class);
+        Assert.assertNotNull(reflected.getBeanInfo());
+        Assert.assertEquals(reflected.getColumns().keySet(), tableDesc.getColumns().keySet());
+        Assert.assertSame(tableDesc.getColumn(reflected.getPrimaryKey().getOrdinal()), tableDesc.getPrimaryKey());
+
+        // 注册表里面没有PropertyDescriptor，按照属性名生成读写器（包含父类的属性）
+        TableColumnDesc name = tableDesc.findColumn("name");
+        TableColumnDesc age = tableDesc.findColumn("age");
+        Assert.assertNull(name.getPropertyDescriptor());
+        Assert.assertNull(age.getPropertyDescriptor());
+        User user = new User();
+        name.getPropertyAccessor().set(user, "xiech");
+        age.getPropertyAccessor().setInt(user, 18);
+        Assert.assertEquals("xiech", user.getName());
+        Assert.assertEquals(18, age.getPropertyAccessor().getInt(user));
+        Assert.assertEquals(String.class, name.getPropertyAccessor().getPropertyType());
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        MetadataContext training = new MetadataContext(Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE, "`");
+        Assert.assertTrue(training.warmUp(Arrays.asList(User.class, Role.class, WideEntity.class)).isSuccess());
+        Path path = Files.createTempFile("mybatis-boost", ".snapshot");
+        try {
+            MetadataSnapshot.write(training, path);
+            MetadataSnapshot snapshot = MetadataSnapshot.load(path);
+            Assert.assertEquals(3, snapshot.size());
+
+            MetadataContext context = new MetadataContext(Reflections.DatabaseColumnNameStyle.CAMELHUMP_AND_LOWERCASE, "`");
+            context.setSnapshot(snapshot);
+            for (Class<?> beanClass : Arrays.asList(User.class, Role.class, WideEntity.class)) {
+                TableDesc expected = training.getTableDesc(beanClass);
+                TableDesc actual = context.getTableDesc(beanClass);
+                // 从快照中读取的TableDesc没有经过反射解析
+                Assert.assertNull(actual.getBeanInfo());
+                Assert.assertEquals(expected.getDelimiterTableName(), actual.getDelimiterTableName());
+                Assert.assertEquals(expected.getInsertSQL(), actual.getInsertSQL());
+                Assert.assertEquals(expected.getUpdateSQL(), actual.getUpdateSQL());
+                Assert.assertEquals(expected.getSelectSQL(), actual.getSelectSQL());
+                Assert.assertEquals(expected.getDeleteSQL(), actual.getDeleteSQL());
+                Assert.assertEquals(expected.getColumns().keySet(), actual.getColumns().keySet());
+            }
+            User user = new User();
+            context.getTableDesc(User.class).findColumn("id").getPropertyAccessor().setInt(user, 1);
+            Assert.assertEquals(1, user.getId());
+
+            // 命名规则不一致的快照不能使用
+            try {
+                new MetadataContext().setSnapshot(snapshot);
+                Assert.fail();
+            } catch (CriteriaException e) {
+                // 命名规则不一致
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package org.xiech.test;
 
+import org.xiech.mybatis.boost.annotation.Table;
+
 /**
  * @author xiech
  * @date 2020-08-04 10:48
  */
+@Table(name = "role")
 public class Role {
     private int id;
     private String name;
@@ -0,0 +1,18 @@
+package org.xiech.test;
+
+import lombok.Data;
+import org.xiech.mybatis.boost.annotation.GenerationType;
+import org.xiech.mybatis.boost.annotation.Id;
+
+/**
+ * METHOD主键的实体类
+ *
+ * @author xiech
+ * @date 2020-08-28 10:20
+ */
+@Data
+public class Ticket {
+    @Id(generationType = GenerationType.METHOD, generator = "ticketNo")
+    private String id;
+    private String title;
+}
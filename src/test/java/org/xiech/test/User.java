@@ -3,6 +3,7 @@ package org.xiech.test;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.xiech.mybatis.boost.annotation.Table;
 
 /**
  * @author xiech
@@ -11,6 +12,7 @@ import lombok.ToString;
 @Data
 @ToString
 @EqualsAndHashCode(callSuper=false)
+@Table
 public class User extends BaseUser {
     private int id;
     private String name;
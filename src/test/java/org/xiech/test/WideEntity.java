@@ -0,0 +1,94 @@
+package org.xiech.test;
+
+import lombok.Data;
+
+/**
+ * 宽表（80+列）的实体类
+ *
+ * @author xiech
+ * @date 2020-08-13 09:40
+ */
+@Data
+public class WideEntity {
+    private long id;
+    private String column0;
+    private String column1;
+    private String column2;
+    private String column3;
+    private String column4;
+    private String column5;
+    private String column6;
+    private String column7;
+    private String column8;
+    private String column9;
+    private String column10;
+    private String column11;
+    private String column12;
+    private String column13;
+    private String column14;
+    private String column15;
+    private String column16;
+    private String column17;
+    private String column18;
+    private String column19;
+    private String column20;
+    private String column21;
+    private String column22;
+    private String column23;
+    private String column24;
+    private String column25;
+    private String column26;
+    private String column27;
+    private String column28;
+    private String column29;
+    private String column30;
+    private String column31;
+    private String column32;
+    private String column33;
+    private String column34;
+    private String column35;
+    private String column36;
+    private String column37;
+    private String column38;
+    private String column39;
+    private String column40;
+    private String column41;
+    private String column42;
+    private String column43;
+    private String column44;
+    private String column45;
+    private String column46;
+    private String column47;
+    private String column48;
+    private String column49;
+    private String column50;
+    private String column51;
+    private String column52;
+    private String column53;
+    private String column54;
+    private String column55;
+    private String column56;
+    private String column57;
+    private String column58;
+    private String column59;
+    private String column60;
+    private String column61;
+    private String column62;
+    private String column63;
+    private String column64;
+    private String column65;
+    private String column66;
+    private String column67;
+    private String column68;
+    private String column69;
+    private String column70;
+    private String column71;
+    private String column72;
+    private String column73;
+    private String column74;
+    private String column75;
+    private String column76;
+    private String column77;
+    private String column78;
+    private String column79;
+}